@@ -16,19 +16,26 @@
 package com.google.code.configprocessor;
 
 import static com.google.code.configprocessor.util.IOUtils.*;
-import static org.apache.commons.lang.StringUtils.*;
 
 import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.atomic.*;
 
 import org.apache.commons.lang.*;
 import org.apache.tools.ant.*;
+import org.apache.xerces.xni.grammars.*;
+import org.xml.sax.*;
 
+import com.google.code.configprocessor.cache.*;
 import com.google.code.configprocessor.expression.*;
 import com.google.code.configprocessor.io.*;
 import com.google.code.configprocessor.log.*;
-import com.google.code.configprocessor.maven.*;
 import com.google.code.configprocessor.parsing.*;
+import com.google.code.configprocessor.pipeline.*;
+import com.google.code.configprocessor.plan.*;
 import com.google.code.configprocessor.processing.*;
 import com.google.code.configprocessor.processing.properties.*;
 import com.google.code.configprocessor.processing.xml.*;
@@ -37,6 +44,16 @@ public class ConfigProcessor {
 
 	private static final String DEFAULT_ENCODING = "UTF-8";
 
+	/**
+	 * Memory needed to process an XML input, relative to its size: the decoded characters and the DOM.
+	 */
+	private static final int XML_MEMORY_FACTOR = 10;
+
+	/**
+	 * Memory needed to process a properties input, relative to its size: the decoded lines and the result.
+	 */
+	private static final int PROPERTIES_MEMORY_FACTOR = 4;
+
 	private String encoding;
 	private int lineWidth;
 	private int indentSize;
@@ -49,7 +66,28 @@ public class ConfigProcessor {
 	private List<ParserFeature> parserFeatures;
 	private boolean failOnMissingXpath;
 
+	private int prefetchThreads;
+	private long prefetchMaxSize = PrefetchingFileResolver.DEFAULT_MAX_SIZE;
+	private EntityResolver entityResolver;
+	private XMLGrammarPool grammarPool;
+	private PlanCache planCache;
+	private boolean optimizeRules;
+	private boolean skipUnaffectedInputs;
+	private ResultCache resultCache;
+	private ChangeTracker changeTracker;
+	private List<File> buildFiles;
+	private int processingThreads;
+	private int ioThreads = 2;
+	private long processingMemory;
+	private InputScanner inputScanner;
+	private List<String> excludes;
+	private File outputArchive;
+	private File outputBaseArchive;
+	private boolean preserveXmlFormatting;
+
 	private File actualOutputDirectory;
+	private MemoryBudget memoryBudget;
+	private ResultKeyBuilder resultKeys;
 
 	public ConfigProcessor(String encoding,
 						   int indentSize,
@@ -87,14 +125,216 @@ public class ConfigProcessor {
 			encoding = DEFAULT_ENCODING;
 		}
 
+		if (planCache == null) {
+			planCache = new PlanCache(null, getLog());
+		}
+
+		List<String> options = new ArrayList<String>();
+		options.add(String.valueOf(lineWidth));
+		options.add(String.valueOf(indentSize));
+		options.add(String.valueOf(failOnMissingXpath));
+		options.add(String.valueOf(preserveXmlFormatting));
+		options.add(namespaceContexts == null ? null : new TreeMap<String, String>(namespaceContexts).toString());
+		if (parserFeatures != null) {
+			for (ParserFeature feature : parserFeatures) {
+				options.add(feature.getName());
+				options.add(String.valueOf(feature.getValue()));
+			}
+		}
+		resultKeys = new ResultKeyBuilder(encoding, options, getLog());
+
 		getLog().debug("Using output directory [" + actualOutputDirectory + "]");
 		getLog().debug("File encodig is [" + encoding + "]");
 	}
 
+	/**
+	 * Executes all transformations of a build. If prefetching is enabled, every config, input and include
+	 * file is resolved and read before the first transformation is executed, so missing files are reported
+	 * before any output is written.
+	 *
+	 * @param transformations Transformations to execute, in order.
+	 * @param resolverFactory Factory of the expression resolver of each transformation.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 * @throws IOException If files cannot be read or written.
+	 */
+	public void execute(List<Transformation> transformations, ExpressionResolverFactory resolverFactory) throws ConfigProcessorException, IOException {
+		List<ExpressionResolver> resolvers = new ArrayList<ExpressionResolver>(transformations.size());
+		Set<String> patterns = new LinkedHashSet<String>();
+		for (Transformation transformation : transformations) {
+			resolvers.add(resolverFactory.getExpressionResolver(transformation));
+			String input = StringUtils.trimToNull(transformation.getInput());
+			if (input != null && input.contains("*") && !isArchiveInput(transformation)) {
+				patterns.add(input);
+			}
+		}
+		// Files matching every wildcard input are found in a single walk of the base directory
+		getInputScanner().clear();
+		getInputScanner().scan(patterns);
+
+		ExecutionContext context = createExecutionContext();
+		try {
+			execute(context, transformations, resolvers, context.getPrefetcher() == null ? null : prefetch(context, transformations, resolvers));
+			context.finish(true, getLog());
+		} finally {
+			context.finish(false, getLog());
+		}
+	}
+
+	/**
+	 * @return State of a new execution: the file resolver, prefetching files if enabled, the output archive
+	 *         if set and the detector of changes since the previous build.
+	 */
+	protected ExecutionContext createExecutionContext() {
+		FileResolver resolver = fileResolver;
+		PrefetchingFileResolver prefetcher = null;
+		if (prefetchThreads > 0) {
+			prefetcher = new PrefetchingFileResolver(fileResolver, prefetchThreads, prefetchMaxSize);
+			resolver = prefetcher;
+		}
+		ArchiveWriter archiveWriter = null;
+		if (outputArchive != null) {
+			archiveWriter = new ArchiveWriter(outputArchive, outputBaseArchive);
+		}
+		return new ExecutionContext(resolver, prefetcher, archiveWriter, new ChangeDetector(changeTracker, buildFiles, resolver, getInputScanner()));
+	}
+
+	/**
+	 * Executes the transformations in order. Consecutive transformations that read the output of the
+	 * previous one are executed as a chain, reading the input only once and passing the result of each
+	 * transformation to the next one in memory.
+	 *
+	 * @param context State of the execution.
+	 * @param transformations Transformations to execute, in order.
+	 * @param resolvers Expression resolver of each transformation.
+	 * @param plans Compiled plan of each transformation, null to compile them when executed.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 * @throws IOException If files cannot be read or written.
+	 */
+	protected void execute(ExecutionContext context, List<Transformation> transformations, List<ExpressionResolver> resolvers, List<CompiledPlan> plans) throws ConfigProcessorException, IOException {
+		int start = 0;
+		while (start < transformations.size()) {
+			int end = start + 1;
+			while (end < transformations.size() && isChained(transformations.get(end - 1), transformations.get(end))) {
+				end++;
+			}
+
+			if (end - start == 1) {
+				Transformation transformation = transformations.get(start);
+				execute(context, resolvers.get(start), transformation, plans == null ? getPlan(context, transformation) : plans.get(start));
+			} else {
+				List<CompiledPlan> chainPlans = new ArrayList<CompiledPlan>(end - start);
+				for (int i = start; i < end; i++) {
+					chainPlans.add(plans == null ? getPlan(context, transformations.get(i)) : plans.get(i));
+				}
+				executeChain(context, resolvers.subList(start, end), transformations.subList(start, end), chainPlans);
+			}
+			start = end;
+		}
+	}
+
+	/**
+	 * @return If the next transformation reads the single output of the previous one, using the same type.
+	 */
+	protected boolean isChained(Transformation previous, Transformation next) {
+		String previousInput = StringUtils.trimToNull(previous.getInput());
+		String input = StringUtils.trimToNull(next.getInput());
+		if (previousInput == null || input == null || previousInput.contains("*") || input.contains("*")) {
+			return false;
+		}
+		if (isArchiveInput(previous) || isArchiveInput(next)) {
+			// Transformations of the same entry are applied to the result of the previous one by the archive writer
+			return false;
+		}
+		if (StringUtils.isBlank(previous.getOutput())) {
+			if (!input.equals(previousInput)) {
+				return false;
+			}
+		} else if (!new File(actualOutputDirectory, previous.getOutput()).getAbsoluteFile().equals(getFile(input))) {
+			return false;
+		}
+		return getInputType(previous, new File(previousInput)).equals(getInputType(next, new File(input)));
+	}
+
+	/**
+	 * Executes transformations that read the output of the previous one, applying the rules of each one to
+	 * the result of the previous one in memory. Outputs of transformations other than the last one are
+	 * written only if they are not intermediate and not overwritten by a later transformation.
+	 *
+	 * @param context State of the execution.
+	 * @param resolvers Expression resolver of each transformation.
+	 * @param transformations Transformations to execute, in order.
+	 * @param plans Compiled plan of each transformation.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 * @throws IOException If files cannot be read or written.
+	 */
+	protected void executeChain(ExecutionContext context, List<ExpressionResolver> resolvers, List<Transformation> transformations, List<CompiledPlan> plans) throws ConfigProcessorException, IOException {
+		Transformation first = transformations.get(0);
+		Resource inputResource = context.getFileResolver().getResource(first.getInput());
+		File inputFile = inputResource.getFile();
+		if (inputFile == null && StringUtils.isBlank(first.getOutput())) {
+			throw new ConfigProcessorException("Output must be set for input [" + first.getInput() + "] since it is not a file");
+		} else if (inputFile != null && !inputFile.exists()) {
+			throw new ConfigProcessorException("Input file [" + inputFile + "] does not exist");
+		}
+
+		String type = getInputType(first, new File(first.getInput()));
+		List<ActionProcessor> processors = new ArrayList<ActionProcessor>(transformations.size());
+		List<String> configNames = new ArrayList<String>(transformations.size());
+		List<Action> actions = new ArrayList<Action>(transformations.size());
+		List<File> outputs = new ArrayList<File>(transformations.size());
+		File output = inputFile;
+		for (int i = 0; i < transformations.size(); i++) {
+			Transformation transformation = transformations.get(i);
+			processors.add(getActionProcessor(context, resolvers.get(i), type));
+			configNames.add(getConfigIdentifier(transformation));
+			actions.add(getAction(plans.get(i), type));
+			if (!StringUtils.isBlank(transformation.getOutput())) {
+				output = new File(actualOutputDirectory, transformation.getOutput());
+			}
+			outputs.add(output);
+		}
+
+		boolean rulesChanged = false;
+		for (int i = 0; i < transformations.size() && !rulesChanged; i++) {
+			rulesChanged = context.getChangeDetector().isRulesChanged(resolvers.get(i), transformations.get(i).getConfig(), plans.get(i));
+		}
+		if (!rulesChanged && !isInputChanged(context, inputFile, output)) {
+			getLog().info("Skipping file [" + first.getInput() + "], not changed since the previous build");
+			return;
+		}
+
+		for (int i = 0; i < outputs.size(); i++) {
+			File current = outputs.get(i);
+			if (i < outputs.size() - 1 && (transformations.get(i).isIntermediate() || outputs.subList(i + 1, outputs.size()).contains(current))) {
+				outputs.set(i, null);
+			} else if (current != inputFile) {
+				createOutputFile(context, current);
+			}
+		}
+		process(context, processors, first.getInput(), inputResource, outputs, configNames, actions);
+	}
+
 	public void execute(ExpressionResolver resolver, Transformation transformation) throws ConfigProcessorException, IOException {
+		ExecutionContext context = createExecutionContext();
+		try {
+			execute(context, resolver, transformation, getPlan(context, transformation));
+			context.finish(true, getLog());
+		} finally {
+			context.finish(false, getLog());
+		}
+	}
+
+	protected void execute(ExecutionContext context, ExpressionResolver resolver, Transformation transformation, CompiledPlan plan) throws ConfigProcessorException, IOException {
+		if (isArchiveInput(transformation)) {
+			executeArchiveEntries(context, resolver, transformation, plan);
+			return;
+		}
 		String input = transformation.getInput();
-		Action action = getAction(transformation);
 		String configIdentifier = getConfigIdentifier(transformation);
+		// Processors and their advisors are reused for every input of the transformation
+		Map<String, ActionProcessor> processors = new HashMap<String, ActionProcessor>();
+		Map<String, InputPrefilter> prefilters = new HashMap<String, InputPrefilter>();
+		boolean rulesChanged = context.getChangeDetector().isRulesChanged(resolver, transformation.getConfig(), plan);
 
 		if (input != null && input.contains("*")) {
 			// input parameter specifies a wildcard pattern
@@ -103,98 +343,462 @@ public class ConfigProcessor {
 			}
 			getLog().info("Using wildcard pattern based input [" + input + "]");
 			List<File> inputFiles = getMatchingFiles(input);
-			for (File inputFile : inputFiles) {
-				String type = getInputType(transformation, inputFile);
-				File outputFile;
-				if (actualOutputDirectory != null) {
-					// calculate a relative path below the output directory based on the input file
-					outputFile = new File(actualOutputDirectory, baseDir.toURI().relativize(inputFile.toURI()).getPath());
-					createOutputFile(outputFile);
-				} else {
-					outputFile = inputFile;
+			AtomicInteger skipped = new AtomicInteger();
+			int unchanged = 0;
+			Pipeline pipeline = null;
+			ThreadLocal<Map<String, ActionProcessor>> workerProcessors = null;
+			if (processingThreads > 0 && inputFiles.size() > 1) {
+				pipeline = new Pipeline(ioThreads, processingThreads, processingThreads * 2, getMemoryBudget(), getLog());
+				// Processors are not thread-safe, each worker creates its own for this transformation. They
+				// share the resolver: it only evaluates expressions against the project, session and
+				// properties, which are not modified while inputs are processed, and keeps no state.
+				workerProcessors = createWorkerProcessors();
+			}
+			try {
+				for (File inputFile : inputFiles) {
+					String type = getInputType(transformation, inputFile);
+					File outputFile;
+					if (actualOutputDirectory != null) {
+						// calculate a relative path below the output directory based on the input file
+						outputFile = new File(actualOutputDirectory, baseDir.toURI().relativize(inputFile.toURI()).getPath());
+						createOutputFile(context, outputFile);
+					} else {
+						outputFile = inputFile;
+					}
+					if (!rulesChanged && !isInputChanged(context, inputFile, outputFile)) {
+						unchanged++;
+						continue;
+					}
+					InputJob job = new InputJob(this, context, resolver, type, plan, prefilters, inputFile, outputFile, configIdentifier, skipped, workerProcessors);
+					if (pipeline == null) {
+						job.run(processors);
+					} else {
+						if (job.getMemoryEstimate() > getMemoryBudget().getCapacity()) {
+							getLog().debug("Processing file [" + inputFile + "] without other files, estimated memory [" + job.getMemoryEstimate() + "] exceeds [" + getMemoryBudget().getCapacity() + "]");
+						}
+						pipeline.submit(job);
+					}
 				}
-				process(resolver, inputFile.getPath(), inputFile, outputFile, configIdentifier, action, type);
+				if (pipeline != null) {
+					pipeline.await();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ConfigProcessorException("Interrupted processing input [" + input + "]", e);
+			} catch (ConfigProcessorException e) {
+				throw e;
+			} catch (IOException e) {
+				throw e;
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new ConfigProcessorException("Error processing input [" + input + "]", e);
+			} finally {
+				if (pipeline != null) {
+					pipeline.shutdown();
+				}
+			}
+			if (skipUnaffectedInputs) {
+				getLog().info("Skipped [" + skipped + "] of [" + inputFiles.size() + "] files not changed by config [" + configIdentifier + "]");
+			}
+			if (unchanged > 0) {
+				getLog().info("Skipped [" + unchanged + "] of [" + inputFiles.size() + "] files not changed since the previous build");
 			}
 		} else {
-			File inputFile = fileResolver.resolve(transformation.getInput());
-			if (!inputFile.exists()) {
+			Resource inputResource = context.getFileResolver().getResource(transformation.getInput());
+			File inputFile = inputResource.getFile();
+			if (inputFile != null && !inputFile.exists()) {
 				throw new ConfigProcessorException("Input file [" + inputFile + "] does not exist");
 			}
 			// use input file as output file if output is not set
 			File output;
 			if (StringUtils.isBlank(transformation.getOutput())) {
+				if (inputFile == null) {
+					throw new ConfigProcessorException("Output must be set for input [" + transformation.getInput() + "] since it is not a file");
+				}
 				output = inputFile;
 			} else {
 				output = new File(actualOutputDirectory, transformation.getOutput());
-				createOutputFile(output);
+				createOutputFile(context, output);
+			}
+			if (!rulesChanged && !isInputChanged(context, inputFile, output)) {
+				getLog().info("Skipping file [" + transformation.getInput() + "], not changed since the previous build");
+				return;
+			}
+			String type = getInputType(transformation, new File(transformation.getInput()));
+			if (isUnchanged(plan, type, inputResource, prefilters)) {
+				copy(context, transformation.getInput(), inputResource, output, configIdentifier);
+			} else {
+				process(context, resolver, type, processors, plan, transformation.getInput(), inputResource, output, configIdentifier);
 			}
-			String type = getInputType(transformation, inputFile);
-			process(resolver, transformation.getInput(), inputFile, output, configIdentifier, action, type);
 		}
 	}
 
-	protected Action getAction(Transformation transformation) throws ConfigProcessorException, IOException {
+	/**
+	 * @return If the input of the transformation is an entry of an archive, or a pattern of entries, such as
+	 *         <code>app.war!/WEB-INF/*.xml</code>, to be transformed in the archive since no output is set.
+	 */
+	protected boolean isArchiveInput(Transformation transformation) {
+		String input = transformation.getInput();
+		return input != null && !input.startsWith("jar:") && input.contains(ArchiveIndex.ENTRY_SEPARATOR) && StringUtils.isBlank(transformation.getOutput());
+	}
+
+	/**
+	 * Transforms the entries of an archive matching the input of a transformation. Only the central directory
+	 * and the matching entries are read. The transformed entries are written to a copy of the archive whose
+	 * other entries keep their compressed content, below the output directory if there is one or replacing
+	 * the archive otherwise.
+	 *
+	 * @param context State of the execution.
+	 * @param resolver Expression resolver of the transformation.
+	 * @param transformation Transformation to execute.
+	 * @param plan Compiled plan of the transformation.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 * @throws IOException If the archive cannot be read.
+	 */
+	protected void executeArchiveEntries(ExecutionContext context, ExpressionResolver resolver, Transformation transformation, CompiledPlan plan) throws ConfigProcessorException, IOException {
+		String input = transformation.getInput();
+		int index = input.indexOf(ArchiveIndex.ENTRY_SEPARATOR);
+		File archive = context.getFileResolver().resolve(input.substring(0, index)).getAbsoluteFile();
+		String pattern = input.substring(index + ArchiveIndex.ENTRY_SEPARATOR.length());
+		String configIdentifier = getConfigIdentifier(transformation);
+		Map<String, ActionProcessor> processors = new HashMap<String, ActionProcessor>();
+		Map<String, InputPrefilter> prefilters = new HashMap<String, InputPrefilter>();
+
+		RawZipFile source = context.getSourceArchive(archive);
+		ArchiveWriter writer = getArchiveWriter(context, archive);
+		int matched = 0;
+		for (RawZipFile.Entry entry : source.getEntries()) {
+			String name = entry.getName();
+			if (entry.isDirectory() || !(pattern.contains("*") ? InputScanner.matches(pattern, name) : pattern.equals(name))) {
+				continue;
+			}
+			matched++;
+			byte[] content = writer.containsEntry(name) ? writer.getContent(name) : source.read(entry);
+			Resource resource = new ArchiveEntryContent(archive, name, content);
+			String inputName = archive.getPath() + ArchiveIndex.ENTRY_SEPARATOR + name;
+			String type = getInputType(transformation, new File(name));
+			if (isUnchanged(plan, type, resource, prefilters)) {
+				getLog().debug("Skipping entry [" + inputName + "], not changed by config [" + configIdentifier + "]");
+				continue;
+			}
+			File output = new File(writer.getArchive().getPath() + ArchiveIndex.ENTRY_SEPARATOR + name);
+			writer.putEntry(name, transform(context, resolver, type, processors, plan, inputName, resource, output, configIdentifier));
+		}
+		if (matched == 0 && !pattern.contains("*")) {
+			throw new ConfigProcessorException("Entry [" + pattern + "] not found in archive [" + archive + "]");
+		}
+		getLog().info("Matched [" + matched + "] entries of archive [" + archive + "] with [" + pattern + "]");
+	}
+
+	/**
+	 * @param context State of the execution.
+	 * @param archive Archive whose entries are transformed.
+	 * @return Writer of the transformed archive: the output archive if the archive is its base, otherwise a copy
+	 *         of the archive below the output directory or the archive itself.
+	 */
+	protected ArchiveWriter getArchiveWriter(ExecutionContext context, File archive) {
+		if (context.getArchiveWriter() != null && outputBaseArchive != null && outputBaseArchive.getAbsoluteFile().equals(archive)) {
+			return context.getArchiveWriter();
+		}
+		ArchiveWriter writer = context.getArchiveWriter(archive);
+		if (writer == null) {
+			File target = archive;
+			if (actualOutputDirectory != null) {
+				URI relative = baseDir == null ? archive.toURI() : baseDir.getAbsoluteFile().toURI().relativize(archive.toURI());
+				target = new File(actualOutputDirectory, relative.isAbsolute() ? archive.getName() : relative.getPath());
+			}
+			writer = new ArchiveWriter(target, archive);
+			context.putArchiveWriter(archive, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Estimates the memory needed to process an input, including the input itself. XML inputs are parsed
+	 * into a DOM several times bigger than the input, properties inputs are processed line by line.
+	 *
+	 * @param type Type of the input file. Properties or XML.
+	 * @param size Size of the input, in bytes.
+	 * @return Estimated memory, in bytes.
+	 */
+	protected long estimateMemory(String type, long size) {
+		return size * (Transformation.XML_TYPE.equals(type) ? XML_MEMORY_FACTOR : PROPERTIES_MEMORY_FACTOR);
+	}
+
+	/**
+	 * @return Processors of a transformation run by a {@link Pipeline}, by type, created by each worker thread.
+	 */
+	protected ThreadLocal<Map<String, ActionProcessor>> createWorkerProcessors() {
+		return new ThreadLocal<Map<String, ActionProcessor>>() {
+			@Override
+			protected Map<String, ActionProcessor> initialValue() {
+				return new HashMap<String, ActionProcessor>();
+			}
+		};
+	}
+
+	/**
+	 * @return Memory shared by inputs processed concurrently, half of the maximum heap size unless set.
+	 */
+	protected MemoryBudget getMemoryBudget() {
+		if (memoryBudget == null) {
+			memoryBudget = new MemoryBudget(processingMemory > 0 ? processingMemory : Runtime.getRuntime().maxMemory() / 2);
+		}
+		return memoryBudget;
+	}
+
+	/**
+	 * Resolves and reads every config, input and include file referenced by the transformations. Files
+	 * written by a transformation are not prefetched for the transformations that follow it.
+	 *
+	 * @param context State of the execution, prefetching files.
+	 * @param transformations Transformations to execute, in order.
+	 * @param resolvers Expression resolver of each transformation.
+	 * @return Compiled plan of each transformation.
+	 * @throws ConfigProcessorException If a config or input file cannot be resolved or read.
+	 * @throws IOException If a config file cannot be read.
+	 */
+	protected List<CompiledPlan> prefetch(ExecutionContext context, List<Transformation> transformations, List<ExpressionResolver> resolvers) throws ConfigProcessorException, IOException {
+		PrefetchList files = new PrefetchList(baseDir);
+		List<Set<String>> types = new ArrayList<Set<String>>(transformations.size());
+		for (Transformation transformation : transformations) {
+			Set<String> transformationTypes = new HashSet<String>();
+			files.add(transformation.getConfig());
+			String input = transformation.getInput();
+			if (isArchiveInput(transformation)) {
+				// Entries are read from the archive when transformed
+				transformationTypes.add(getInputType(transformation, new File(input)));
+			} else if (input != null && input.contains("*")) {
+				for (File inputFile : getMatchingFiles(input)) {
+					files.add(inputFile.getPath());
+					transformationTypes.add(getInputType(transformation, inputFile));
+				}
+				if (actualOutputDirectory != null) {
+					files.addOutput(actualOutputDirectory);
+				}
+			} else if (input != null) {
+				files.add(input);
+				transformationTypes.add(getInputType(transformation, new File(input)));
+				if (!StringUtils.isBlank(transformation.getOutput())) {
+					files.addOutput(new File(actualOutputDirectory, transformation.getOutput()));
+				}
+			}
+			types.add(transformationTypes);
+		}
+
+		PrefetchingFileResolver prefetcher = context.getPrefetcher();
+		Map<String, IOException> failures = files.prefetch(prefetcher);
+		if (!failures.isEmpty()) {
+			for (Map.Entry<String, IOException> failure : failures.entrySet()) {
+				getLog().error("Error reading [" + failure.getKey() + "]", failure.getValue());
+			}
+			Map.Entry<String, IOException> first = failures.entrySet().iterator().next();
+			throw new ConfigProcessorException("Error reading [" + first.getKey() + "]", first.getValue());
+		}
+
+		List<CompiledPlan> plans = new ArrayList<CompiledPlan>(transformations.size());
+		for (int i = 0; i < transformations.size(); i++) {
+			CompiledPlan plan = getPlan(context, transformations.get(i));
+			plans.add(plan);
+			for (String file : plan.getIncludes()) {
+				for (String type : types.get(i)) {
+					files.add(resolvers.get(i).resolve(file, Transformation.PROPERTIES_TYPE.equals(type)));
+				}
+			}
+		}
+
+		// Missing includes are reported while processing, since they may be tolerated by non strict actions
+		failures = files.prefetch(prefetcher);
+		for (Map.Entry<String, IOException> failure : failures.entrySet()) {
+			getLog().debug("Error prefetching include [" + failure.getKey() + "]: " + failure.getValue().getMessage());
+		}
+		getLog().debug("Prefetched [" + prefetcher.getSize() + "] bytes");
+
+		return plans;
+	}
+
+	/**
+	 * @param context State of the execution.
+	 * @param input Input file, null if the input is not a local file.
+	 * @param output Output file of the input.
+	 * @return If the input has to be processed: outputs are written to an archive, the build is not
+	 *         incremental, the input changed since the previous build or the output does not exist.
+	 */
+	protected boolean isInputChanged(ExecutionContext context, File input, File output) {
+		if (context.getArchiveWriter() != null) {
+			// Every output is an entry of the archive written from scratch
+			return true;
+		}
+		return context.getChangeDetector().isInputChanged(input, output);
+	}
+
+	/**
+	 * @return Absolute file of a name relative to the base directory.
+	 */
+	protected File getFile(String name) {
+		File file = new File(name);
+		if (!file.isAbsolute()) {
+			file = new File(baseDir, name);
+		}
+		return file.getAbsoluteFile();
+	}
+
+	/**
+	 * Obtains the compiled rules of a transformation. Plans of rule files are reused while the content of
+	 * the file does not change, inline rules are compiled every time.
+	 *
+	 * @param context State of the execution.
+	 * @param transformation Transformation whose rules are compiled.
+	 * @return Compiled plan.
+	 * @throws ConfigProcessorException If the rules are invalid.
+	 * @throws IOException If the rule file cannot be read.
+	 */
+	protected CompiledPlan getPlan(ExecutionContext context, Transformation transformation) throws ConfigProcessorException, IOException {
 		if (transformation.getConfig() == null && transformation.getRules() == null) {
 			throw new ConfigProcessorException("Transformation config file or rules must be set");
 		} else if (transformation.getConfig() != null && transformation.getRules() != null) {
 			throw new ConfigProcessorException("Cannot specify transformation config file and rules at the same time");
 		}
 
-		Action action;
-		Reader configReader;
+		PlanCompiler compiler = new PlanCompiler();
 		if (transformation.getConfig() == null) {
-			StringWriter writer = new StringWriter();
-			AntrunXmlPlexusConfigurationWriter xmlWriter = new AntrunXmlPlexusConfigurationWriter();
-			xmlWriter.write(transformation.getRules(), writer);
-			String configContent = trimToNull(writer.toString());
-			configContent = removeStart(configContent, "<rules>");
-			configContent = removeEnd(configContent, "</rules>");
-			StringBuilder sb = new StringBuilder(configContent.length() + XmlHelper.ROOT_PROCESSOR_START.length() + XmlHelper.ROOT_PROCESSOR_END.length());
-			sb.append(XmlHelper.ROOT_PROCESSOR_START);
-			sb.append(configContent);
-			sb.append(XmlHelper.ROOT_PROCESSOR_END);
-			configReader = new StringReader(sb.toString());
-		} else {
-			File config = fileResolver.resolve(transformation.getConfig());
-
-			if (!config.exists()) {
-				throw new ConfigProcessorException("Configuration file [" + config + "] does not exist");
+			try {
+				return compiler.compile(new PlexusConfigurationParser().parse(transformation.getRules()), null);
+			} catch (ParsingException e) {
+				throw new ConfigProcessorException("Error parsing transformation rules [" + getConfigIdentifier(transformation) + "]", e);
 			}
+		}
 
-			configReader = new InputStreamReader(new FileInputStream(config), encoding);
+		Resource config = context.getFileResolver().getResource(transformation.getConfig());
+		ByteBuffer buffer = config.getBuffer();
+		byte[] content = new byte[buffer.remaining()];
+		buffer.get(content);
+		String sourceHash = PlanCompiler.hash(content, encoding);
+		CompiledPlan plan = planCache.get(config.getIdentity(), sourceHash);
+		if (plan != null) {
+			return plan;
 		}
 
+		NestedAction action;
 		try {
 			ProcessingConfigurationParser parser = new ProcessingConfigurationParser();
-			action = parser.parse(configReader);
+			action = parser.parse(new InputStreamReader(new ByteArrayInputStream(content), encoding));
 		} catch (ParsingException e) {
 			throw new ConfigProcessorException("Error parsing transformation config [" + getConfigIdentifier(transformation) + "]", e);
-		} finally {
-			close(configReader, getLog());
 		}
-		action.validate();
+		plan = compiler.compile(action, sourceHash);
+		planCache.put(config.getIdentity(), plan);
+		return plan;
+	}
 
+	/**
+	 * @param plan Compiled rules of the transformation.
+	 * @param type Type of the input file. Properties or XML.
+	 * @return Rules to apply to inputs of the type.
+	 */
+	protected NestedAction getAction(CompiledPlan plan, String type) {
+		if (!optimizeRules) {
+			return plan.getAction();
+		}
+		NestedAction action = plan.getOptimizedAction(type);
+		if (action == null) {
+			action = new PlanOptimizer(getLog()).optimize(plan.getAction(), type);
+			plan.setOptimizedAction(type, action);
+		}
 		return action;
 	}
 
-	protected String getConfigIdentifier(Transformation transformation) throws ConfigProcessorException {
-		if (transformation.getConfig() == null) {
-			StringWriter writer = new StringWriter();
-			AntrunXmlPlexusConfigurationWriter xmlWriter = new AntrunXmlPlexusConfigurationWriter();
+	/**
+	 * Checks, without parsing it, if the rules cannot change the input. Only done when enabled and when
+	 * inputs the rules do not apply to are not reported as errors.
+	 *
+	 * @param plan Compiled rules of the transformation.
+	 * @param type Type of the input file. Properties or XML.
+	 * @param input Input to check.
+	 * @param prefilters Prefilters already created, by type.
+	 * @return If the input can be copied to the output as is.
+	 * @throws IOException If the input cannot be read.
+	 */
+	protected boolean isUnchanged(CompiledPlan plan, String type, Resource input, Map<String, InputPrefilter> prefilters) throws IOException {
+		if (!skipUnaffectedInputs) {
+			return false;
+		}
+		InputPrefilter prefilter;
+		synchronized (prefilters) {
+			if (!prefilters.containsKey(type)) {
+				prefilter = null;
+				if (Transformation.PROPERTIES_TYPE.equals(type) || !failOnMissingXpath) {
+					prefilter = InputPrefilter.create(new PlanCompiler().getTokens(getAction(plan, type), type), encoding);
+				}
+				if (prefilter == null) {
+					getLog().debug("Every [" + type + "] input will be processed, the rules may change any of them");
+				}
+				prefilters.put(type, prefilter);
+			}
+			prefilter = prefilters.get(type);
+		}
+		return prefilter != null && !prefilter.mayChange(input.getBuffer());
+	}
+
+	/**
+	 * Copies an input the rules do not change to its output, unless they are the same file.
+	 *
+	 * @param context State of the execution.
+	 * @param inputName Symbolic name of the input file to read from.
+	 * @param input Input resource to read from.
+	 * @param output Output file to write to.
+	 * @param configName Symbolic name of the file containing rules to process the input.
+	 * @throws ConfigProcessorException If the input cannot be copied.
+	 */
+	protected void copy(ExecutionContext context, String inputName, Resource input, File output, String configName) throws ConfigProcessorException {
+		ArchiveWriter archiveWriter = context.getArchiveWriter();
+		if (archiveWriter != null) {
+			getLog().debug("Copying file [" + inputName + "] to archive [" + outputArchive + "], not changed by config [" + configName + "]");
 			try {
-				xmlWriter.write(transformation.getRules(), writer);
+				ByteBuffer buffer = input.getBuffer();
+				byte[] content = new byte[buffer.remaining()];
+				buffer.get(content);
+				archiveWriter.putEntry(getEntryName(output), content);
 			} catch (IOException e) {
-				throw new ConfigProcessorException("Shouldn't happen because there is no I/O here", e);
+				throw new ConfigProcessorException("Error copying file [" + inputName + "] to archive [" + outputArchive + "]", e);
+			}
+			return;
+		}
+		if (output.equals(input.getFile())) {
+			getLog().debug("Skipping file [" + inputName + "], not changed by config [" + configName + "]");
+			return;
+		}
+		getLog().debug("Copying file [" + inputName + "] to [" + output + "], not changed by config [" + configName + "]");
+		FileOutputStream fileOut = null;
+		try {
+			context.evict(output);
+			ByteBuffer buffer = input.getBuffer();
+			fileOut = new FileOutputStream(output);
+			FileChannel channel = fileOut.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
 			}
-			return abbreviate(trimToNull(removeStart(writer.toString(), "<rules>")), 100);
+			context.getChangeDetector().written(output);
+		} catch (IOException e) {
+			throw new ConfigProcessorException("Error copying file [" + inputName + "] to [" + output + "]", e);
+		} finally {
+			close(fileOut, getLog());
+		}
+	}
+
+	protected String getConfigIdentifier(Transformation transformation) {
+		if (transformation.getConfig() == null) {
+			return new PlexusConfigurationParser().getIdentifier(transformation.getRules());
 		}
 		return transformation.getConfig();
 	}
 
 	/**
 	 * Scans all files below the given baseDirectory using the supplied pattern.
-	 * All files matching the pattern are returned.
-	 * The implementation is utilizing {@link DirectoryScanner} for pattern matching, e.g.
+	 * All files matching the pattern and not excluded are returned, including outputs written after the scan.
+	 * The implementation is utilizing {@link InputScanner}, which walks the base directory once for every
+	 * wildcard input of the build and matches like {@link DirectoryScanner}, e.g.
 	 * it allows to use single ("*") and double wildcards ("**") for matching
 	 * arbitrary characters or directories.
 	 *
@@ -230,17 +834,14 @@ public class ConfigProcessor {
 		if (pattern == null || pattern.length() == 0) {
 			throw new ConfigProcessorException("Invalid pattern	[" + pattern + "]");
 		}
-		DirectoryScanner scanner = new DirectoryScanner();
-		scanner.setBasedir(baseDir);
-		scanner.setIncludes(new String[] { pattern });
-		scanner.setCaseSensitive(false);
-		scanner.scan();
-		String[] fileNames = scanner.getIncludedFiles();
-		List<File> files = new ArrayList<File>();
-		for (String fileName : fileNames) {
-			files.add(new File(baseDir, fileName));
+		return getInputScanner().getMatchingFiles(pattern);
+	}
+
+	protected synchronized InputScanner getInputScanner() {
+		if (inputScanner == null) {
+			inputScanner = new InputScanner(baseDir, excludes);
 		}
-		return files;
+		return inputScanner;
 	}
 
 	/**
@@ -278,67 +879,226 @@ public class ConfigProcessor {
 		return type;
 	}
 
+	/**
+	 * Processes a file, reusing the result of a previous processing of the same content with the same
+	 * rules and expression values if there is one.
+	 *
+	 * @param context State of the execution.
+	 * @param resolver Expression resolver of the transformation.
+	 * @param type Type of the input file. Properties or XML.
+	 * @param processors Processors already created, by type.
+	 * @param plan Compiled rules of the transformation.
+	 * @param inputName Symbolic name of the input file to read from.
+	 * @param input Input resource to read from.
+	 * @param output Output file to write to.
+	 * @param configName Symbolic name of the file containing rules to process the input.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 */
+	protected void process(ExecutionContext context, ExpressionResolver resolver, String type, Map<String, ActionProcessor> processors, CompiledPlan plan, String inputName, Resource input, File output, String configName) throws ConfigProcessorException {
+		write(context, output, transform(context, resolver, type, processors, plan, inputName, input, output, configName));
+	}
+
+	/**
+	 * Processes a file without writing the result, reusing the result of a previous processing of the same
+	 * content with the same rules and expression values if there is one.
+	 *
+	 * @param context State of the execution.
+	 * @param resolver Expression resolver of the transformation.
+	 * @param type Type of the input file. Properties or XML.
+	 * @param processors Processors already created, by type.
+	 * @param plan Compiled rules of the transformation.
+	 * @param inputName Symbolic name of the input file to read from.
+	 * @param input Input resource to read from.
+	 * @param output Output file the result is written to.
+	 * @param configName Symbolic name of the file containing rules to process the input.
+	 * @return Processed content.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 */
+	protected byte[] transform(ExecutionContext context, ExpressionResolver resolver, String type, Map<String, ActionProcessor> processors, CompiledPlan plan, String inputName, Resource input, File output, String configName) throws ConfigProcessorException {
+		String key;
+		try {
+			key = getResultKey(context, resolver, type, plan, input);
+		} catch (IOException e) {
+			throw new ConfigProcessorException("Error reading file [" + inputName + "]", e);
+		}
+		byte[] result = key == null ? null : resultCache.get(key);
+		if (result != null) {
+			getLog().info("Reusing result of file [" + inputName + "] using config [" + configName + "], outputing to [" + output + "]");
+			return result;
+		}
+		ActionProcessor processor = getActionProcessor(context, resolver, type, processors);
+		result = transform(context, Collections.singletonList(processor), inputName, input, Collections.singletonList(output), Collections.singletonList(configName), Collections.<Action>singletonList(getAction(plan, type)));
+		if (key != null) {
+			resultCache.put(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * @param context State of the execution.
+	 * @param resolver Expression resolver of the transformation.
+	 * @param type Type of the input file. Properties or XML.
+	 * @param plan Compiled rules of the transformation.
+	 * @param input Input to process.
+	 * @return Key of the result, null if results are not cached or the result cannot be cached.
+	 * @throws IOException If the input cannot be read.
+	 * @see ResultKeyBuilder
+	 */
+	protected String getResultKey(ExecutionContext context, ExpressionResolver resolver, String type, CompiledPlan plan, Resource input) throws IOException {
+		if (resultCache == null) {
+			return null;
+		}
+		return resultKeys.getKey(resolver, context.getFileResolver(), type, plan, input);
+	}
+
 	/**
 	 * Processes a file.
 	 *
-	 * @param resolver
+	 * @param context State of the execution.
+	 * @param processor Processor for the type of the input file.
 	 * @param inputName Symbolic name of the input file to read from.
-	 * @param input Input file to read from.
+	 * @param input Input resource to read from.
 	 * @param output Output file to write to.
 	 * @param configName Symbolic name of the file containing rules to process the input.
 	 * @param action Action to be performed on the input file.
-	 * @param type Type of the input file. Properties, XML or null if it is to be auto-detected.
+	 * @return Processed content.
 	 * @throws ConfigProcessorException If processing cannot be performed.
 	 */
-	protected void process(ExpressionResolver resolver, String inputName, File input, File output, String configName, Action action, String type) throws ConfigProcessorException {
-		getLog().info("Processing file [" + inputName + "] using config [" + configName + "], outputing to [" + output + "]");
-
-		InputStream inputStream = null;
-		ByteArrayOutputStream outputStream = null;
+	protected byte[] process(ExecutionContext context, ActionProcessor processor, String inputName, Resource input, File output, String configName, Action action) throws ConfigProcessorException {
+		return process(context, Collections.singletonList(processor), inputName, input, Collections.singletonList(output), Collections.singletonList(configName), Collections.singletonList(action));
+	}
 
-		InputStreamReader inputStreamReader = null;
-		OutputStreamWriter outputStreamWriter = null;
-		try {
-			inputStream = new FileInputStream(input);
-			outputStream = new ByteArrayOutputStream();
+	/**
+	 * Processes a file with the rules of several transformations, applying each one to the result of the
+	 * previous one in memory. The input is read only once.
+	 *
+	 * @param context State of the execution.
+	 * @param processors Processor of each transformation, for the type of the input file.
+	 * @param inputName Symbolic name of the input file to read from.
+	 * @param input Input resource to read from.
+	 * @param outputs Output file of each transformation, null if the result of the transformation is not
+	 *        to be written. The last one is always written.
+	 * @param configNames Symbolic name of the file containing rules of each transformation.
+	 * @param actions Action of each transformation.
+	 * @return Processed content of the last transformation.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 */
+	protected byte[] process(ExecutionContext context, List<ActionProcessor> processors, String inputName, Resource input, List<File> outputs, List<String> configNames, List<Action> actions) throws ConfigProcessorException {
+		byte[] result = transform(context, processors, inputName, input, outputs, configNames, actions);
+		write(context, outputs.get(outputs.size() - 1), result);
+		return result;
+	}
 
-			inputStreamReader = new InputStreamReader(inputStream, encoding);
-			outputStreamWriter = new OutputStreamWriter(outputStream, encoding);
+	/**
+	 * Processes a file with the rules of several transformations like
+	 * {@link #process(ExecutionContext, List, String, Resource, List, List, List)}, without writing the result
+	 * of the last one.
+	 *
+	 * @param context State of the execution, receiving the results of the other transformations.
+	 * @param processors Processor of each transformation, for the type of the input file.
+	 * @param inputName Symbolic name of the input file to read from.
+	 * @param input Input resource to read from.
+	 * @param outputs Output file of each transformation, null if the result of the transformation is not
+	 *        to be written. The last one is not written.
+	 * @param configNames Symbolic name of the file containing rules of each transformation.
+	 * @param actions Action of each transformation.
+	 * @return Processed content of the last transformation.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 */
+	protected byte[] transform(final ExecutionContext context, List<ActionProcessor> processors, String inputName, Resource input, List<File> outputs, List<String> configNames, List<Action> actions) throws ConfigProcessorException {
+		return new TransformationChain(encoding, getLog()).transform(processors, inputName, input, outputs, configNames, actions, new TransformationChain.Output() {
+			public void write(File output, byte[] content) {
+				ConfigProcessor.this.write(context, output, content);
+			}
+		});
+	}
 
-			ActionProcessor processor = getActionProcessor(resolver, type);
-			processor.process(inputStreamReader, outputStreamWriter, action);
-		} catch (ParsingException e) {
-			throw new ConfigProcessorException("Error processing file [" + inputName + "] using configuration [" + configName + "]", e);
-		} catch (IOException e) {
-			throw new ConfigProcessorException("Error reading/writing files. Input is [" + inputName + "], configuration is [" + configName + "]", e);
-		} finally {
-			close(inputStreamReader, getLog());
+	/**
+	 * Writes a processing result. Errors are only logged.
+	 *
+	 * @param context State of the execution.
+	 * @param output Output file to write to.
+	 * @param content Content to write.
+	 */
+	protected void write(ExecutionContext context, File output, byte[] content) {
+		ArchiveWriter archiveWriter = context.getArchiveWriter();
+		if (archiveWriter != null) {
+			try {
+				archiveWriter.putEntry(getEntryName(output), content);
+			} catch (IOException e) {
+				getLog().error("Error writing entry [" + output + "] to archive [" + outputArchive + "]", e);
+			}
+			return;
 		}
 		FileOutputStream fileOut = null;
 		try {
+			context.evict(output);
 			fileOut = new FileOutputStream(output);
-			outputStream.writeTo(fileOut);
+			fileOut.write(content);
+			context.getChangeDetector().written(output);
 		} catch (FileNotFoundException e) {
 			getLog().error("Error opening file [" + output + "]", e);
 		} catch (IOException e) {
 			getLog().error("Error writing file [" + output + "]", e);
 		} finally {
-			close(outputStreamWriter, getLog());
 			close(fileOut, getLog());
 		}
 	}
 
+	/**
+	 * @param output Output file.
+	 * @return Name of the archive entry an output is written to: its path relative to the output directory,
+	 *         or to the base directory if there is no output directory.
+	 * @throws IOException If the output is outside of that directory.
+	 */
+	protected String getEntryName(File output) throws IOException {
+		if (!output.isAbsolute()) {
+			return output.getPath().replace(File.separatorChar, '/');
+		}
+		File root = actualOutputDirectory == null ? baseDir : actualOutputDirectory;
+		URI relative = root.getAbsoluteFile().toURI().relativize(output.toURI());
+		if (relative.isAbsolute()) {
+			throw new IOException("Output [" + output + "] is not below [" + root + "] and cannot be written to an archive");
+		}
+		return relative.getPath();
+	}
+
+	/**
+	 * Obtain the action processor for the input, reusing the one already created for the type.
+	 *
+	 * @param context State of the execution.
+	 * @param expressionResolver
+	 * @param type Type of the input file. Properties or XML.
+	 * @param processors Processors already created, by type.
+	 * @return ActionProcessor for the input file.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 */
+	protected ActionProcessor getActionProcessor(ExecutionContext context, ExpressionResolver expressionResolver, String type, Map<String, ActionProcessor> processors) throws ConfigProcessorException {
+		ActionProcessor processor = processors.get(type);
+		if (processor == null) {
+			processor = getActionProcessor(context, expressionResolver, type);
+			processors.put(type, processor);
+		}
+		return processor;
+	}
+
 	/**
 	 * Obtain the action processor for the input.
 	 *
+	 * @param context State of the execution.
 	 * @param expressionResolver
 	 * @param type Type of the input file. Properties or XML.
 	 * @return ActionProcessor for the input file.
 	 * @throws ConfigProcessorException If processing cannot be performed.
 	 */
-	protected ActionProcessor getActionProcessor(ExpressionResolver expressionResolver, String type) throws ConfigProcessorException {
+	protected ActionProcessor getActionProcessor(ExecutionContext context, ExpressionResolver expressionResolver, String type) throws ConfigProcessorException {
+		FileResolver fileResolver = context.getFileResolver();
 		if (Transformation.XML_TYPE.equals(type)) {
-			return new XmlActionProcessor(encoding, lineWidth, indentSize, fileResolver, expressionResolver, namespaceContexts, parserFeatures, failOnMissingXpath);
+			XmlActionProcessor processor = new XmlActionProcessor(encoding, lineWidth, indentSize, fileResolver, expressionResolver, namespaceContexts, parserFeatures, failOnMissingXpath);
+			processor.setEntityResolver(entityResolver);
+			processor.setGrammarPool(grammarPool);
+			processor.setPatching(preserveXmlFormatting);
+			return processor;
 		} else if (Transformation.PROPERTIES_TYPE.equals(type)) {
 			return new PropertiesActionProcessor(encoding, fileResolver, expressionResolver);
 		} else {
@@ -349,10 +1109,14 @@ public class ConfigProcessor {
 	/**
 	 * Creates output file and required directories.
 	 *
+	 * @param context State of the execution.
 	 * @param output Output file to create.
 	 * @throws ConfigProcessorException If processing cannot be performed.
 	 */
-	protected void createOutputFile(File output) throws ConfigProcessorException {
+	protected void createOutputFile(ExecutionContext context, File output) throws ConfigProcessorException {
+		if (context.getArchiveWriter() != null) {
+			return;
+		}
 		try {
 			File directory = output.getParentFile();
 			getLog().debug(output.toString());
@@ -364,6 +1128,137 @@ public class ConfigProcessor {
 		}
 	}
 
+	/**
+	 * @param prefetchThreads Number of threads reading files before transformations are executed, zero disables prefetching.
+	 */
+	public void setPrefetchThreads(int prefetchThreads) {
+		this.prefetchThreads = prefetchThreads;
+	}
+
+	/**
+	 * @param prefetchMaxSize Maximum amount of prefetched content held in memory, in bytes.
+	 */
+	public void setPrefetchMaxSize(long prefetchMaxSize) {
+		this.prefetchMaxSize = prefetchMaxSize;
+	}
+
+	/**
+	 * @param entityResolver Resolver of DTDs and schemas referenced by XML inputs, null to use the parser default.
+	 */
+	public void setEntityResolver(EntityResolver entityResolver) {
+		this.entityResolver = entityResolver;
+	}
+
+	/**
+	 * @param grammarPool Pool of DTDs and schemas shared by all parsed XML inputs, null to compile them on every parse.
+	 */
+	public void setGrammarPool(XMLGrammarPool grammarPool) {
+		this.grammarPool = grammarPool;
+	}
+
+	/**
+	 * @param planCache Cache of compiled rule files, by default they are kept only in memory.
+	 */
+	public void setPlanCache(PlanCache planCache) {
+		this.planCache = planCache;
+	}
+
+	/**
+	 * @param skipUnaffectedInputs Whether to copy inputs the rules cannot change instead of processing them, disabled by default.
+	 */
+	public void setSkipUnaffectedInputs(boolean skipUnaffectedInputs) {
+		this.skipUnaffectedInputs = skipUnaffectedInputs;
+	}
+
+	/**
+	 * @param optimizeRules Whether to drop and reorder actions when it does not change the result, disabled by default.
+	 */
+	public void setOptimizeRules(boolean optimizeRules) {
+		this.optimizeRules = optimizeRules;
+	}
+
+	/**
+	 * @param resultCache Cache of processing results, null to process every input.
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/**
+	 * @param processingThreads Number of threads transforming inputs matched by a wildcard pattern, zero
+	 *        processes them one at a time in the current thread.
+	 */
+	public void setProcessingThreads(int processingThreads) {
+		this.processingThreads = processingThreads;
+	}
+
+	/**
+	 * @param ioThreads Number of threads reading inputs and number of threads writing outputs when inputs
+	 *        are transformed by several threads.
+	 */
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
+	/**
+	 * @param processingMemory Memory shared by inputs processed concurrently, in bytes. Inputs are admitted
+	 *        while their estimated memory fits, bigger ones are processed alone. Zero uses half of the
+	 *        maximum heap size.
+	 */
+	public void setProcessingMemory(long processingMemory) {
+		this.processingMemory = processingMemory;
+	}
+
+	/**
+	 * @param changeTracker Tracker of the files changed since the previous build, null to process every
+	 *        transformation.
+	 */
+	public void setChangeTracker(ChangeTracker changeTracker) {
+		this.changeTracker = changeTracker;
+	}
+
+	/**
+	 * @param buildFiles Files defining inline rules or the values of expressions, e.g. the pom. Every
+	 *        transformation is processed if one of them changed since the previous build.
+	 */
+	public void setBuildFiles(List<File> buildFiles) {
+		this.buildFiles = buildFiles;
+	}
+
+	/**
+	 * @param inputScanner Scanner matching wildcard inputs, shared with other users of the base directory.
+	 */
+	public void setInputScanner(InputScanner inputScanner) {
+		this.inputScanner = inputScanner;
+	}
+
+	/**
+	 * @param excludes Patterns of files and directories below the base directory that wildcard inputs do
+	 *        not match, in addition to version control metadata.
+	 */
+	public void setExcludes(List<String> excludes) {
+		this.excludes = excludes;
+	}
+
+	/**
+	 * @param outputArchive Archive (zip, jar, war...) the outputs are written to as entries instead of files,
+	 *        named after their path relative to the output directory, null to write files.
+	 * @param outputBaseArchive Archive whose entries not written by a transformation are copied to the output
+	 *        archive without being recompressed, null to only write the outputs. May be the output archive.
+	 */
+	public void setOutputArchive(File outputArchive, File outputBaseArchive) {
+		this.outputArchive = outputArchive;
+		this.outputBaseArchive = outputBaseArchive;
+	}
+
+	/**
+	 * @param preserveXmlFormatting Write XML outputs by patching the inputs, copying everything the rules do not
+	 *        change verbatim instead of indenting the whole document again.
+	 */
+	public void setPreserveXmlFormatting(boolean preserveXmlFormatting) {
+		this.preserveXmlFormatting = preserveXmlFormatting;
+	}
+
 	public LogAdapter getLog() {
 		return log;
 	}
@@ -19,6 +19,7 @@ import static com.google.code.configprocessor.util.PropertiesUtils.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.apache.maven.artifact.factory.*;
 import org.apache.maven.artifact.repository.*;
@@ -28,12 +29,19 @@ import org.apache.maven.execution.*;
 import org.apache.maven.plugin.*;
 import org.apache.maven.project.*;
 import org.apache.maven.project.path.*;
+import org.apache.xerces.xni.grammars.*;
 import org.codehaus.plexus.logging.*;
 import org.codehaus.plexus.logging.console.*;
+import org.sonatype.plexus.build.incremental.*;
+import org.xml.sax.*;
 
+import com.google.code.configprocessor.cache.*;
+import com.google.code.configprocessor.expression.*;
 import com.google.code.configprocessor.io.*;
 import com.google.code.configprocessor.log.*;
 import com.google.code.configprocessor.maven.*;
+import com.google.code.configprocessor.plan.*;
+import com.google.code.configprocessor.processing.xml.*;
 
 /**
  * Generates modified configuration files according to configuration. Includes, excludes, modify, comment and uncomment properties.
@@ -41,6 +49,7 @@ import com.google.code.configprocessor.maven.*;
  * @author Leandro Aparecido
  * @phase process-resources
  * @goal process
+ * @threadSafe
  */
 public class ConfigProcessorMojo extends AbstractMojo {
 
@@ -190,6 +199,172 @@ public class ConfigProcessorMojo extends AbstractMojo {
 	 */
 	private boolean failOnMissingXpath = true;
 
+	/**
+	 * Number of threads used to read config, input and include files before transformations are executed.
+	 * By default files are read only when each transformation needs them.
+	 *
+	 * @parameter expression="${config-processor.prefetchThreads}" default-value="0"
+	 * @since 2.8
+	 */
+	private int prefetchThreads;
+
+	/**
+	 * OASIS XML catalogs used to resolve DTDs and schemas declared by XML inputs to local copies. Each
+	 * catalog is located like config files, e.g. a file, a classpath resource or an archive entry.
+	 *
+	 * @parameter
+	 * @since 2.8
+	 */
+	private List<String> catalogs;
+
+	/**
+	 * Fail instead of downloading DTDs and schemas that are not mapped by the catalogs. Only applies when
+	 * catalogs are configured.
+	 *
+	 * @parameter expression="${config-processor.offline}" default-value="${settings.offline}"
+	 * @since 2.8
+	 */
+	private boolean offline;
+
+	/**
+	 * Directory to keep compiled rule files in between builds. Rule files are compiled again only when
+	 * their content changes.
+	 *
+	 * @parameter default-value="${project.build.directory}/config-processor/plans"
+	 * @since 2.8
+	 */
+	private File planCacheDirectory;
+
+	/**
+	 * Whether to drop modify actions overwritten by later actions and to run remove actions before
+	 * find/replace actions, when that does not change the result.
+	 *
+	 * @parameter default-value="false"
+	 * @since 2.8
+	 */
+	private boolean optimizeRules;
+
+	/**
+	 * Whether to copy inputs the rules cannot change instead of parsing and processing them. Inputs are
+	 * checked with a byte scan for the names and literal find expressions used by the rules. Copied
+	 * inputs keep their original formatting. XML inputs are only checked if failOnMissingXpath is false.
+	 *
+	 * @parameter default-value="false"
+	 * @since 2.8
+	 */
+	private boolean skipUnaffectedInputs;
+
+	/**
+	 * Maximum size, in bytes, of the processing results kept in memory for the whole build. Inputs with the
+	 * same content processed with the same rules, expression values and includes, e.g. a template shared by
+	 * many modules, are then processed only once, e.g. 67108864 for 64 MiB. By default every input is
+	 * processed.
+	 *
+	 * @parameter default-value="0"
+	 * @since 2.8
+	 */
+	private long resultCacheMaxSize;
+
+	/**
+	 * Whether to also store processing results in resultCacheDirectory, so they are reused by later builds,
+	 * including builds of other checkouts and builds running at the same time.
+	 *
+	 * @parameter expression="${config-processor.useResultCacheDirectory}" default-value="false"
+	 * @since 2.8
+	 */
+	private boolean useResultCacheDirectory;
+
+	/**
+	 * Directory to store processing results in when useResultCacheDirectory is enabled.
+	 *
+	 * @parameter expression="${config-processor.resultCacheDirectory}" default-value="${user.home}/.config-processor/results"
+	 * @since 2.8
+	 */
+	private File resultCacheDirectory;
+
+	/**
+	 * Maximum size, in bytes, of the results stored in resultCacheDirectory. The least recently used results
+	 * are deleted when it is exceeded.
+	 *
+	 * @parameter default-value="536870912"
+	 * @since 2.8
+	 */
+	private long resultCacheDirectoryMaxSize;
+
+	/**
+	 * Number of threads transforming the inputs matched by a wildcard pattern. Inputs are then read,
+	 * transformed and written by separate stages, so transformations do not wait for the file system.
+	 * Set to 0 to process inputs one at a time.
+	 *
+	 * @parameter expression="${config-processor.processingThreads}" default-value="0"
+	 * @since 2.8
+	 */
+	private int processingThreads;
+
+	/**
+	 * Number of threads reading inputs, and number of threads writing outputs, when processingThreads is
+	 * greater than 0.
+	 *
+	 * @parameter expression="${config-processor.ioThreads}" default-value="2"
+	 * @since 2.8
+	 */
+	private int ioThreads;
+
+	/**
+	 * Memory, in bytes, shared by the inputs transformed at the same time when processingThreads is greater
+	 * than 0. Each input is estimated to need several times its size, XML inputs more than properties ones.
+	 * Inputs needing more than this are transformed alone. Set to 0 to use half of the maximum heap size.
+	 *
+	 * @parameter expression="${config-processor.processingMemory}" default-value="0"
+	 * @since 2.8
+	 */
+	private long processingMemory;
+
+	/**
+	 * Patterns of files and directories below the project base directory that wildcard inputs do not match,
+	 * e.g. <code>target/**</code>. Version control metadata such as <code>.git</code> is always excluded.
+	 * Excluded directories are not walked when looking for inputs.
+	 *
+	 * @parameter
+	 * @since 2.8
+	 */
+	private List<String> excludes;
+
+	/**
+	 * Archive (zip, jar, war...) the outputs are written to as entries, named after their path relative to
+	 * the output directory, instead of files.
+	 *
+	 * @parameter expression="${config-processor.outputArchive}"
+	 * @since 2.8
+	 */
+	private File outputArchive;
+
+	/**
+	 * Archive whose entries not written by a transformation are copied to outputArchive with their
+	 * compressed content, e.g. the WAR built by another plugin. May be the same file as outputArchive.
+	 *
+	 * @parameter expression="${config-processor.outputBaseArchive}"
+	 * @since 2.8
+	 */
+	private File outputBaseArchive;
+
+	/**
+	 * Write XML outputs by patching the inputs: only the elements changed by the rules are written again,
+	 * everything else, including formatting and comments, is copied verbatim. Inputs that cannot be patched
+	 * are indented using indentSize and lineWidth.
+	 *
+	 * @parameter expression="${config-processor.preserveXmlFormatting}" default-value="false"
+	 * @since 2.8
+	 */
+	private boolean preserveXmlFormatting;
+
+	/**
+	 * Context of the running build, reports the files changed since the previous build in IDEs.
+	 *
+	 * @component
+	 */
+	private BuildContext buildContext;
+
     /**
      * The RuntimeInforamtion for the current instance of maven.
      * 
@@ -210,9 +385,26 @@ public class ConfigProcessorMojo extends AbstractMojo {
 		if (skip) {
 			logAdapter.info("Skipping config processing");
 		} else {
+			ExecutionLog sharedLog = getSharedLog(logAdapter);
+			sharedLog.enter(logAdapter);
 			try {
-				FileResolver fileResolver = new MavenFileResolver(mavenProject, artifactFactory, artifactResolver, localRepository, remoteRepositories, logAdapter);
+				FileResolver fileResolver = getFileResolver(sharedLog);
 				ConfigProcessor processor = new ConfigProcessor(encoding, indentSize, lineWidth, namespaceContexts, mavenProject.getBasedir(), outputDirectory, useOutputDirectory, logAdapter, fileResolver, parserFeatures, failOnMissingXpath);
+				processor.setPrefetchThreads(prefetchThreads);
+				processor.setEntityResolver(getEntityResolver(fileResolver, sharedLog));
+				processor.setGrammarPool(getGrammarPool(sharedLog));
+				processor.setPlanCache(getPlanCache(sharedLog));
+				processor.setOptimizeRules(optimizeRules);
+				processor.setSkipUnaffectedInputs(skipUnaffectedInputs);
+				processor.setResultCache(getResultCache(sharedLog));
+				processor.setChangeTracker(new BuildContextChangeTracker(buildContext));
+				processor.setBuildFiles(getBuildFiles());
+				processor.setProcessingThreads(processingThreads);
+				processor.setIoThreads(ioThreads);
+				processor.setProcessingMemory(processingMemory);
+				processor.setExcludes(excludes);
+				processor.setOutputArchive(outputArchive, outputBaseArchive);
+				processor.setPreserveXmlFormatting(preserveXmlFormatting);
 				processor.init();
 
 				// issue 35 - Specificproperties in maven doesn't work
@@ -220,18 +412,195 @@ public class ConfigProcessorMojo extends AbstractMojo {
 				if (specificProperties != null && mavenVersion.getMajorVersion() > 2) {
 					throw new MojoExecutionException("specificProperties are not supported anymore by Maven, please specify them in the properties section of your pom.xml file");
 				}
-				Properties additionalProperties = loadIfPossible(specificProperties, logAdapter);
+				final Properties additionalProperties = loadIfPossible(specificProperties, logAdapter);
 
-				for (Transformation transformation : transformations) {
-					MavenExpressionResolver resolver = getExpressionResolver(transformation.isReplacePlaceholders(), additionalProperties);
-					processor.execute(resolver, transformation);
-				}
+				processor.execute(transformations, new ExpressionResolverFactory() {
+
+					public ExpressionResolver getExpressionResolver(Transformation transformation) throws ConfigProcessorException {
+						try {
+							return ConfigProcessorMojo.this.getExpressionResolver(transformation.isReplacePlaceholders(), additionalProperties);
+						} catch (MojoExecutionException e) {
+							throw new ConfigProcessorException("Error creating expression resolver", e);
+						}
+					}
+				});
 			} catch (Exception e) {
 				throw new MojoExecutionException("Error during config processing", e);
+			} finally {
+				sharedLog.leave();
 			}
 		}
 	}
 
+	/**
+	 * Obtains the log given to objects shared by the session, which writes to the log of the execution
+	 * running on the current thread instead of the log of the execution that created them.
+	 *
+	 * @param logAdapter Log of this execution.
+	 * @return ExecutionLog of the session.
+	 */
+	protected ExecutionLog getSharedLog(LogAdapter logAdapter) {
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = ExecutionLog.class.getName();
+		ExecutionLog sharedLog = (ExecutionLog) context.getAttribute(key);
+		if (sharedLog == null) {
+			sharedLog = (ExecutionLog) context.putAttributeIfAbsent(key, new ExecutionLog(logAdapter));
+		}
+		return sharedLog;
+	}
+
+	/**
+	 * @return Files inline rules and values of expressions come from: the pom of the project, the poms of
+	 *         its parents in the build and the specific properties file.
+	 */
+	protected List<File> getBuildFiles() {
+		List<File> files = new ArrayList<File>();
+		for (MavenProject project = mavenProject; project != null; project = project.getParent()) {
+			if (project.getFile() != null) {
+				files.add(project.getFile());
+			}
+		}
+		if (specificProperties != null) {
+			files.add(specificProperties);
+		}
+		return files;
+	}
+
+	/**
+	 * Obtains the resolver of files referenced by transformations. Successful lookups are cached for the
+	 * whole session, so configs and includes shared by many transformations are resolved only once, and
+	 * archives referenced by <code>archive!/entry</code> names are read only once. Failed lookups are
+	 * only cached for this execution, files may be generated by other plugins before the next one.
+	 *
+	 * @param logAdapter Log shared by the session.
+	 * @return FileResolver for the current project.
+	 */
+	protected FileResolver getFileResolver(LogAdapter logAdapter) {
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = FileResolver.class.getName() + ":" + mavenProject.getBasedir();
+		String cachingKey = CachingFileResolver.class.getName() + ":" + mavenProject.getBasedir();
+		CachingFileResolver cachingResolver = (CachingFileResolver) context.getAttribute(cachingKey);
+		if (cachingResolver == null) {
+			cachingResolver = new CachingFileResolver(new MavenFileResolver(mavenProject, artifactFactory, artifactResolver, localRepository, remoteRepositories, logAdapter));
+			cachingResolver = (CachingFileResolver) context.putAttributeIfAbsent(cachingKey, cachingResolver);
+		}
+		cachingResolver.forgetFailures();
+
+		FileResolver fileResolver = (FileResolver) context.getAttribute(key);
+		if (fileResolver == null) {
+			fileResolver = new ArchiveFileResolver(cachingResolver, this.<File, ArchiveIndex>getSharedMap(ArchiveIndex.class));
+			fileResolver = (FileResolver) context.putAttributeIfAbsent(key, fileResolver);
+		}
+		return fileResolver;
+	}
+
+	/**
+	 * Obtains the resolver of DTDs and schemas declared by XML inputs. It is shared by the whole session, so
+	 * each DTD or schema is read at most once per build.
+	 *
+	 * @param fileResolver Resolver of the catalogs.
+	 * @param logAdapter Log shared by the session.
+	 * @return EntityResolver for the configured catalogs, null to keep the parser default when there are none.
+	 * @throws IOException If a catalog cannot be read.
+	 */
+	protected EntityResolver getEntityResolver(FileResolver fileResolver, LogAdapter logAdapter) throws IOException {
+		if (catalogs == null || catalogs.isEmpty()) {
+			return null;
+		}
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = EntityResolver.class.getName() + ":" + getCatalogKey();
+		EntityResolver entityResolver = (EntityResolver) context.getAttribute(key);
+		if (entityResolver == null) {
+			entityResolver = CatalogEntityResolver.load(catalogs, fileResolver, offline, logAdapter);
+			entityResolver = (EntityResolver) context.putAttributeIfAbsent(key, entityResolver);
+		}
+		return entityResolver;
+	}
+
+	/**
+	 * Obtains the pool of DTDs and schemas shared by all XML inputs of the session, so each one is compiled
+	 * once per build. Projects using different catalogs do not share grammars.
+	 *
+	 * @param logAdapter Log shared by the session.
+	 * @return XMLGrammarPool for the configured catalogs.
+	 */
+	protected XMLGrammarPool getGrammarPool(LogAdapter logAdapter) {
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = XMLGrammarPool.class.getName() + ":" + getCatalogKey();
+		XMLGrammarPool grammarPool = (XMLGrammarPool) context.getAttribute(key);
+		if (grammarPool == null) {
+			grammarPool = new SharedGrammarPool(logAdapter);
+			grammarPool = (XMLGrammarPool) context.putAttributeIfAbsent(key, grammarPool);
+		}
+		return grammarPool;
+	}
+
+	/**
+	 * Obtains the cache of compiled rule files, shared by all projects of the session using the same
+	 * directory.
+	 *
+	 * @param logAdapter Log shared by the session.
+	 * @return PlanCache for the configured directory.
+	 */
+	protected PlanCache getPlanCache(LogAdapter logAdapter) {
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = PlanCache.class.getName() + ":" + planCacheDirectory;
+		PlanCache planCache = (PlanCache) context.getAttribute(key);
+		if (planCache == null) {
+			planCache = new PlanCache(planCacheDirectory, this.<String, CompiledPlan>getSharedMap(CompiledPlan.class), logAdapter);
+			planCache = (PlanCache) context.putAttributeIfAbsent(key, planCache);
+		}
+		return planCache;
+	}
+
+	/**
+	 * Obtains a map shared by all projects of the session, e.g. to share content that does not depend on
+	 * the project between per-project caches.
+	 *
+	 * @param type Type of the values of the map.
+	 * @return Map of the session for the type.
+	 */
+	@SuppressWarnings("unchecked")
+	protected <K, V> ConcurrentMap<K, V> getSharedMap(Class<V> type) {
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = ConcurrentMap.class.getName() + ":" + type.getName();
+		ConcurrentMap<K, V> map = (ConcurrentMap<K, V>) context.getAttribute(key);
+		if (map == null) {
+			map = (ConcurrentMap<K, V>) context.putAttributeIfAbsent(key, new ConcurrentHashMap<K, V>());
+		}
+		return map;
+	}
+
+	/**
+	 * Obtains the cache of processing results shared by all projects of the session using the same
+	 * directory and sizes.
+	 *
+	 * @param logAdapter Log shared by the session.
+	 * @return ResultCache of the session, null if results are not cached.
+	 */
+	protected ResultCache getResultCache(LogAdapter logAdapter) {
+		File directory = useResultCacheDirectory ? resultCacheDirectory : null;
+		if (resultCacheMaxSize <= 0 && directory == null) {
+			return null;
+		}
+		SessionContext context = SessionContext.getInstance(mavenSession);
+		String key = ResultCache.class.getName() + ":" + directory + ":" + resultCacheMaxSize + ":" + resultCacheDirectoryMaxSize;
+		ResultCache resultCache = (ResultCache) context.getAttribute(key);
+		if (resultCache == null) {
+			resultCache = new ResultCache(resultCacheMaxSize, directory, resultCacheDirectoryMaxSize, logAdapter);
+			resultCache = (ResultCache) context.putAttributeIfAbsent(key, resultCache);
+		}
+		return resultCache;
+	}
+
+	protected String getCatalogKey() {
+		if (catalogs == null || catalogs.isEmpty()) {
+			return String.valueOf(offline);
+		}
+		// Relative catalog names depend on the project
+		return mavenProject.getBasedir() + ":" + catalogs + ":" + offline;
+	}
+
 	/**
 	 * Creates a expression resolver to replace placeholders.
 	 *
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import com.google.code.configprocessor.expression.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.pipeline.*;
+import com.google.code.configprocessor.plan.*;
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Processing of an input matched by a wildcard pattern, run by a {@link Pipeline} or in sequence.
+ * Inputs run by a pipeline use the processors of the worker thread for their transformation.
+ */
+class InputJob implements Pipeline.Job {
+
+	private ConfigProcessor processor;
+	private ExecutionContext context;
+	private ExpressionResolver resolver;
+	private String type;
+	private CompiledPlan plan;
+	private Map<String, InputPrefilter> prefilters;
+	private File inputFile;
+	private File outputFile;
+	private String configName;
+	private AtomicInteger skipped;
+	private ThreadLocal<Map<String, ActionProcessor>> workerProcessors;
+
+	private Map<String, ActionProcessor> processors;
+	private Resource input;
+	private byte[] result;
+
+	public InputJob(ConfigProcessor processor, ExecutionContext context, ExpressionResolver resolver, String type, CompiledPlan plan, Map<String, InputPrefilter> prefilters, File inputFile, File outputFile, String configName, AtomicInteger skipped, ThreadLocal<Map<String, ActionProcessor>> workerProcessors) {
+		this.processor = processor;
+		this.context = context;
+		this.resolver = resolver;
+		this.type = type;
+		this.plan = plan;
+		this.prefilters = prefilters;
+		this.inputFile = inputFile;
+		this.outputFile = outputFile;
+		this.configName = configName;
+		this.skipped = skipped;
+		this.workerProcessors = workerProcessors;
+	}
+
+	/**
+	 * Runs every stage in the current thread.
+	 *
+	 * @param processors Processors already created, by type.
+	 */
+	public void run(Map<String, ActionProcessor> processors) throws ConfigProcessorException, IOException {
+		this.processors = processors;
+		input = context.getResource(inputFile);
+		transform();
+		write();
+	}
+
+	public long getMemoryEstimate() {
+		return processor.estimateMemory(type, inputFile.length());
+	}
+
+	public void read() throws IOException {
+		input = BufferedResource.read(context.getResource(inputFile));
+	}
+
+	public void transform() throws ConfigProcessorException, IOException {
+		if (processor.isUnchanged(plan, type, input, prefilters)) {
+			skipped.incrementAndGet();
+			return;
+		}
+		if (processors == null) {
+			processors = workerProcessors.get();
+		}
+		result = processor.transform(context, resolver, type, processors, plan, inputFile.getPath(), input, outputFile, configName);
+	}
+
+	public void write() throws ConfigProcessorException {
+		if (result == null) {
+			processor.copy(context, inputFile.getPath(), input, outputFile, configName);
+		} else {
+			processor.write(context, outputFile, result);
+		}
+	}
+}
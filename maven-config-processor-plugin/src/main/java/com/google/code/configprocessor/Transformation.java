@@ -62,6 +62,11 @@ public class Transformation {
 	 * </tr>
 	 * </table>
 	 * 
+	 * Entries of a zip based archive (e.g. <code>app.war!/WEB-INF/web.xml</code> or
+	 * <code>app.war!/WEB-INF/**\/*.xml</code>) are transformed inside the archive if no output is set.
+	 * The archive is written below the output directory, or replaced if not using one,
+	 * copying the other entries without recompressing them.
+	 * 
 	 * @parameter
 	 * @required
 	 */
@@ -110,6 +115,15 @@ public class Transformation {
 	 */
 	private PlexusConfiguration rules;
 
+	/**
+	 * Indicates if the output only feeds the transformations that follow this one. When they are executed
+	 * together with it, the output is passed to them in memory and not written.
+	 * 
+	 * @parameter default-value="false"
+	 * @since 2.8
+	 */
+	private boolean intermediate;
+
 	public Transformation() {
 		replacePlaceholders = true;
 	}
@@ -161,4 +175,12 @@ public class Transformation {
 	public void setRules(PlexusConfiguration rules) {
 		this.rules = rules;
 	}
+
+	public boolean isIntermediate() {
+		return intermediate;
+	}
+
+	public void setIntermediate(boolean intermediate) {
+		this.intermediate = intermediate;
+	}
 }
@@ -23,9 +23,12 @@ import java.util.*;
 import org.apache.tools.ant.*;
 
 import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.cache.*;
 import com.google.code.configprocessor.expression.*;
 import com.google.code.configprocessor.io.*;
 import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.plan.*;
+import com.google.code.configprocessor.processing.xml.*;
 
 /**
  * Ant task Generates modified configuration files according to configuration.
@@ -44,12 +47,30 @@ public class ConfigProcessorTask extends Task {
 	private LogAdapter log;
 	private List<ParserFeature> parserFeatures;
 	private boolean failOnMissingXpath = true;
+	private int prefetchThreads;
+	private List<String> catalogs;
+	private boolean offline;
+	private File planCacheDirectory;
+	private boolean optimizeRules;
+	private boolean skipUnaffectedInputs;
+	private long resultCacheMaxSize;
+	private File resultCacheDirectory;
+	private long resultCacheDirectoryMaxSize = ResultCache.DEFAULT_MAX_DIRECTORY_SIZE;
+	private int processingThreads;
+	private int ioThreads = 2;
+	private long processingMemory;
+	private List<String> excludes;
+	private File outputArchive;
+	private File outputBaseArchive;
+	private boolean preserveXmlFormatting;
 
 	public ConfigProcessorTask() {
 		transforms = new ArrayList<Transformation>();
 		namespaceContexts = new ArrayList<NamespaceContext>();
 		log = new LogAnt(this);
 		parserFeatures = new ArrayList<ParserFeature>();
+		catalogs = new ArrayList<String>();
+		excludes = new ArrayList<String>();
 	}
 	
 	@Override
@@ -68,15 +89,35 @@ public class ConfigProcessorTask extends Task {
 			for (NamespaceContext nsContext : namespaceContexts) {
 				namespaceContextsMap.put(nsContext.getPrefix(), nsContext.getUrl());
 			}
-			ConfigProcessor processor = new ConfigProcessor(encoding, indentSize, lineWidth, namespaceContextsMap, getProject().getBaseDir(), outputDirectory, useOutputDirectory, log, new DefaultFileResolver(), parserFeatures, failOnMissingXpath);
+			FileResolver fileResolver = new ArchiveFileResolver(new CachingFileResolver(new DefaultFileResolver()));
+			ConfigProcessor processor = new ConfigProcessor(encoding, indentSize, lineWidth, namespaceContextsMap, getProject().getBaseDir(), outputDirectory, useOutputDirectory, log, fileResolver, parserFeatures, failOnMissingXpath);
+			processor.setPrefetchThreads(prefetchThreads);
+			if (!catalogs.isEmpty()) {
+				processor.setEntityResolver(CatalogEntityResolver.load(catalogs, fileResolver, offline, log));
+			}
+			processor.setGrammarPool(new SharedGrammarPool(log));
+			processor.setPlanCache(new PlanCache(planCacheDirectory, log));
+			processor.setOptimizeRules(optimizeRules);
+			processor.setSkipUnaffectedInputs(skipUnaffectedInputs);
+			processor.setProcessingThreads(processingThreads);
+			processor.setIoThreads(ioThreads);
+			processor.setProcessingMemory(processingMemory);
+			processor.setInputScanner(new InputScanner(getProject().getBaseDir(), excludes));
+			processor.setOutputArchive(outputArchive, outputBaseArchive);
+			processor.setPreserveXmlFormatting(preserveXmlFormatting);
+			if (resultCacheMaxSize > 0 || resultCacheDirectory != null) {
+				processor.setResultCache(new ResultCache(resultCacheMaxSize, resultCacheDirectory, resultCacheDirectoryMaxSize, log));
+			}
 			processor.init();
 			
-			Properties additionalProperties = loadIfPossible(specificProperties, log);
+			final Properties additionalProperties = loadIfPossible(specificProperties, log);
 			
-			for (Transformation transformation : transforms) {
-					ExpressionResolver resolver = getExpressionResolver(transformation.isReplacePlaceholders(), additionalProperties);
-					processor.execute(resolver, transformation);
-			}
+			processor.execute(transforms, new ExpressionResolverFactory() {
+
+				public ExpressionResolver getExpressionResolver(Transformation transformation) {
+					return ConfigProcessorTask.this.getExpressionResolver(transformation.isReplacePlaceholders(), additionalProperties);
+				}
+			});
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new BuildException("Error during config processing", e);
@@ -136,6 +177,144 @@ public class ConfigProcessorTask extends Task {
 	public void setFailOnMissingXpath(boolean failOnMissingXpath) {
 		this.failOnMissingXpath = failOnMissingXpath;
 	}
+
+	/**
+	 * Number of threads used to read files before transformations are executed, 0 disables prefetching (default: 0)
+	 * @since 2.8
+	 */
+	public void setPrefetchThreads(int prefetchThreads) {
+		this.prefetchThreads = prefetchThreads;
+	}
+
+	/**
+	 * Comma separated list of OASIS XML catalogs used to resolve DTDs and schemas declared by XML inputs
+	 * @since 2.8
+	 */
+	public void setCatalogs(String catalogs) {
+		this.catalogs.clear();
+		for (String catalog : catalogs.split(",")) {
+			if (catalog.trim().length() > 0) {
+				this.catalogs.add(catalog.trim());
+			}
+		}
+	}
+
+	/**
+	 * Fail instead of downloading DTDs and schemas that are not mapped by the catalogs, only applies when catalogs are set (default: false)
+	 * @since 2.8
+	 */
+	public void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+
+	/**
+	 * Directory to keep compiled rule files in between builds (default: none, rule files are compiled on every build)
+	 * @since 2.8
+	 */
+	public void setPlanCacheDirectory(File planCacheDirectory) {
+		this.planCacheDirectory = planCacheDirectory;
+	}
+
+	/**
+	 * Whether to drop and reorder actions when it does not change the result (default: false)
+	 * @since 2.8
+	 */
+	public void setOptimizeRules(boolean optimizeRules) {
+		this.optimizeRules = optimizeRules;
+	}
+
+	/**
+	 * Whether to copy inputs the rules cannot change instead of processing them (default: false)
+	 * @since 2.8
+	 */
+	public void setSkipUnaffectedInputs(boolean skipUnaffectedInputs) {
+		this.skipUnaffectedInputs = skipUnaffectedInputs;
+	}
+
+	/**
+	 * Maximum size of the processing results kept in memory, in bytes, 0 to process every input (default: 0)
+	 * @since 2.8
+	 */
+	public void setResultCacheMaxSize(long resultCacheMaxSize) {
+		this.resultCacheMaxSize = resultCacheMaxSize;
+	}
+
+	/**
+	 * Directory to store processing results in between builds, may be shared by concurrent builds (default: none, results are kept only in memory)
+	 * @since 2.8
+	 */
+	public void setResultCacheDirectory(File resultCacheDirectory) {
+		this.resultCacheDirectory = resultCacheDirectory;
+	}
+
+	/**
+	 * Maximum size of the results stored in resultCacheDirectory, in bytes (default: 536870912)
+	 * @since 2.8
+	 */
+	public void setResultCacheDirectoryMaxSize(long resultCacheDirectoryMaxSize) {
+		this.resultCacheDirectoryMaxSize = resultCacheDirectoryMaxSize;
+	}
+
+	/**
+	 * Number of threads transforming the inputs matched by a wildcard pattern, 0 to process them one at a time (default: 0)
+	 * @since 2.8
+	 */
+	public void setProcessingThreads(int processingThreads) {
+		this.processingThreads = processingThreads;
+	}
+
+	/**
+	 * Number of threads reading inputs, and number of threads writing outputs, when processingThreads is set (default: 2)
+	 * @since 2.8
+	 */
+	public void setIoThreads(int ioThreads) {
+		this.ioThreads = ioThreads;
+	}
+
+	/**
+	 * Memory shared by the inputs transformed at the same time, in bytes, 0 for half of the maximum heap size (default: 0)
+	 * @since 2.8
+	 */
+	public void setProcessingMemory(long processingMemory) {
+		this.processingMemory = processingMemory;
+	}
+
+	/**
+	 * Comma separated list of patterns of files and directories that wildcard inputs do not match, in addition to version control metadata
+	 * @since 2.8
+	 */
+	public void setExcludes(String excludes) {
+		this.excludes.clear();
+		for (String exclude : excludes.split(",")) {
+			if (exclude.trim().length() > 0) {
+				this.excludes.add(exclude.trim());
+			}
+		}
+	}
+
+	/**
+	 * Archive the outputs are written to as entries instead of files
+	 * @since 2.8
+	 */
+	public void setOutputArchive(File outputArchive) {
+		this.outputArchive = outputArchive;
+	}
+
+	/**
+	 * Archive whose entries not written by a transformation are copied to the output archive without being recompressed
+	 * @since 2.8
+	 */
+	public void setOutputBaseArchive(File outputBaseArchive) {
+		this.outputBaseArchive = outputBaseArchive;
+	}
+
+	/**
+	 * Write XML outputs by patching the inputs, copying everything not changed by the rules verbatim (default: false)
+	 * @since 2.8
+	 */
+	public void setPreserveXmlFormatting(boolean preserveXmlFormatting) {
+		this.preserveXmlFormatting = preserveXmlFormatting;
+	}
 	
 
 	public static class NamespaceContext {
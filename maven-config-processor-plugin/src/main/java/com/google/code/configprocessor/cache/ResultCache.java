@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.cache;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import com.google.code.configprocessor.log.*;
+
+/**
+ * Keeps results of processed inputs in memory and, if a directory is given, on disk between builds, so
+ * inputs processed again with the same rules and expression values are written without being processed.
+ * The least recently used results are evicted when the total size of the results exceeds the maximum
+ * size.
+ * <p>
+ * The directory may be shared by concurrent builds: results are written to a temporary file renamed
+ * once complete, each result is checked when read and a result deleted by another build is a miss.
+ */
+public class ResultCache {
+
+	public static final long DEFAULT_MAX_SIZE = 64L * 1024 * 1024;
+	public static final long DEFAULT_MAX_DIRECTORY_SIZE = 512L * 1024 * 1024;
+
+	private static final int MAGIC = 0x43505253;
+	private static final String RESULT_EXTENSION = ".result";
+	private static final int HEADER_SIZE = 16;
+
+	private long maxSize;
+	private long size;
+	private LinkedHashMap<String, byte[]> results;
+
+	private File directory;
+	private long maxDirectorySize;
+	private long directorySize = -1;
+	private LogAdapter log;
+	private Object directoryLock = new Object();
+
+	/**
+	 * @param maxSize Maximum total size of the results kept in memory, in bytes.
+	 */
+	public ResultCache(long maxSize) {
+		this(maxSize, null, 0, null);
+	}
+
+	/**
+	 * @param maxSize Maximum total size of the results kept in memory, in bytes.
+	 * @param directory Directory to store results in, null to keep them only in memory.
+	 * @param maxDirectorySize Maximum total size of the results stored in the directory, in bytes.
+	 * @param log
+	 */
+	public ResultCache(long maxSize, File directory, long maxDirectorySize, LogAdapter log) {
+		this.maxSize = maxSize;
+		this.results = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+		this.directory = directory;
+		this.maxDirectorySize = maxDirectorySize;
+		this.log = log;
+	}
+
+	/**
+	 * @param key Key of the result, see {@link ResultKey}.
+	 * @return Result stored for the key or null if there is none.
+	 */
+	public byte[] get(String key) {
+		byte[] result;
+		synchronized (this) {
+			result = results.get(key);
+		}
+		if (result != null || directory == null) {
+			return result;
+		}
+
+		result = read(getFile(key));
+		if (result != null) {
+			putInMemory(key, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Stores a result, evicting the least recently used ones if needed. Results bigger than the maximum
+	 * size are not stored. Failures to write the result to the directory are only logged.
+	 * 
+	 * @param key Key of the result, see {@link ResultKey}.
+	 * @param result Processed content, must not be modified afterwards.
+	 */
+	public void put(String key, byte[] result) {
+		putInMemory(key, result);
+		if (directory != null && result.length + HEADER_SIZE <= maxDirectorySize) {
+			write(getFile(key), result);
+		}
+	}
+
+	protected synchronized void putInMemory(String key, byte[] result) {
+		if (result.length > maxSize) {
+			return;
+		}
+		byte[] previous = results.put(key, result);
+		if (previous != null) {
+			size -= previous.length;
+		}
+		size += result.length;
+		Iterator<byte[]> it = results.values().iterator();
+		while (size > maxSize) {
+			size -= it.next().length;
+			it.remove();
+		}
+	}
+
+	/**
+	 * @return Total size of the results kept in memory, in bytes.
+	 */
+	public synchronized long getSize() {
+		return size;
+	}
+
+	/**
+	 * Reads a stored result, marking it as recently used.
+	 * 
+	 * @param file File of the result.
+	 * @return Result or null if there is no valid result in the file.
+	 */
+	protected byte[] read(File file) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC) {
+					return null;
+				}
+				int length = in.readInt();
+				long checksum = in.readLong();
+				if (length < 0 || length != file.length() - HEADER_SIZE) {
+					return null;
+				}
+				byte[] result = new byte[length];
+				in.readFully(result);
+				CRC32 crc = new CRC32();
+				crc.update(result);
+				if (crc.getValue() != checksum) {
+					return null;
+				}
+				file.setLastModified(System.currentTimeMillis());
+				return result;
+			} finally {
+				close(in, log);
+			}
+		} catch (IOException e) {
+			log.debug("Ignoring unreadable result [" + file + "]: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Stores a result, evicting the least recently used stored results if the directory grows bigger than
+	 * its maximum size.
+	 * 
+	 * @param file File of the result.
+	 * @param result Result to store.
+	 */
+	protected void write(File file, byte[] result) {
+		File temp = null;
+		try {
+			forceMkdirs(file.getParentFile());
+			temp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				CRC32 crc = new CRC32();
+				crc.update(result);
+				out.writeInt(MAGIC);
+				out.writeInt(result.length);
+				out.writeLong(crc.getValue());
+				out.write(result);
+			} finally {
+				close(out, log);
+			}
+			// Another build may have stored the same result meanwhile, its content is the same
+			if (!temp.renameTo(file) && !file.isFile()) {
+				throw new IOException("Cannot rename [" + temp + "] to [" + file + "]");
+			}
+		} catch (IOException e) {
+			log.warn("Error storing result [" + file + "]: " + e.getMessage());
+			return;
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+
+		synchronized (directoryLock) {
+			// The size is computed again when exceeded, since other builds may have stored or evicted results
+			if (directorySize >= 0) {
+				directorySize += result.length + HEADER_SIZE;
+			}
+			if (directorySize < 0 || directorySize > maxDirectorySize) {
+				directorySize = evict();
+			}
+		}
+	}
+
+	/**
+	 * Deletes the least recently used stored results, including the ones stored by other builds, until the
+	 * total size of the directory is not bigger than the maximum size.
+	 * 
+	 * @return Total size of the remaining results.
+	 */
+	protected long evict() {
+		List<File> files = new ArrayList<File>();
+		long total = 0;
+		File[] subdirectories = directory.listFiles();
+		if (subdirectories != null) {
+			for (File subdirectory : subdirectories) {
+				File[] entries = subdirectory.listFiles();
+				if (entries != null) {
+					for (File entry : entries) {
+						if (entry.getName().endsWith(RESULT_EXTENSION)) {
+							files.add(entry);
+							total += entry.length();
+						}
+					}
+				}
+			}
+		}
+		if (total <= maxDirectorySize) {
+			return total;
+		}
+
+		final Map<File, Long> lastModified = new HashMap<File, Long>();
+		for (File file : files) {
+			lastModified.put(file, Long.valueOf(file.lastModified()));
+		}
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File o1, File o2) {
+				return lastModified.get(o1).compareTo(lastModified.get(o2));
+			}
+		});
+		int evicted = 0;
+		for (Iterator<File> it = files.iterator(); it.hasNext() && total > maxDirectorySize;) {
+			File file = it.next();
+			long length = file.length();
+			if (file.delete()) {
+				total -= length;
+				evicted++;
+			}
+		}
+		log.debug("Evicted [" + evicted + "] results from [" + directory + "], [" + total + "] bytes remaining");
+		return total;
+	}
+
+	protected File getFile(String key) {
+		return new File(new File(directory, key.substring(0, 2)), key + RESULT_EXTENSION);
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.cache;
+
+import java.io.*;
+import java.nio.*;
+import java.security.*;
+
+import com.google.code.configprocessor.plan.*;
+
+/**
+ * Builds the key of a processing result from everything the result depends on: the input content, the
+ * rules, the values of the expressions they use, the content of included files and the processing
+ * options. Each part is delimited, so different parts never produce the same key.
+ * <p>
+ * Every key starts with {@link #FORMAT_VERSION}, so results cached in a directory shared between builds
+ * are not served to a plugin version whose processors write different output.
+ */
+public class ResultKey {
+
+	/**
+	 * Version of the output of the processors, must be incremented whenever a change to the processing code
+	 * changes the output produced for the same input, rules and options.
+	 */
+	public static final short FORMAT_VERSION = 1;
+
+	private MessageDigest digest;
+
+	public ResultKey() {
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is always available", e);
+		}
+		add(ResultKey.class.getName() + ":" + FORMAT_VERSION);
+	}
+
+	/**
+	 * @param value Value to add, may be null.
+	 * @return This key.
+	 */
+	public ResultKey add(String value) {
+		if (value == null) {
+			digest.update((byte) 0);
+		} else {
+			digest.update((byte) 1);
+			add(ByteBuffer.wrap(getBytes(value)));
+		}
+		return this;
+	}
+
+	/**
+	 * @param content Content to add, its position is not changed.
+	 * @return This key.
+	 */
+	public ResultKey add(ByteBuffer content) {
+		ByteBuffer buffer = content.duplicate();
+		int length = buffer.remaining();
+		digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+		digest.update(buffer);
+		return this;
+	}
+
+	/**
+	 * @return Hexadecimal SHA-1 hash of everything added. Nothing can be added afterwards.
+	 */
+	public String getValue() {
+		return PlanCompiler.toHex(digest.digest());
+	}
+
+	protected static byte[] getBytes(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is always available", e);
+		}
+	}
+}
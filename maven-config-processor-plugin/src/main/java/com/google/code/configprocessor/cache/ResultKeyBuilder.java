@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.cache;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.expression.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.plan.*;
+
+/**
+ * Computes the keys of processing results from everything a result depends on: the input content, the
+ * rules, the values of the placeholders used by the rules or, for properties inputs, by the input itself,
+ * the content of included files and the processing options.
+ */
+public class ResultKeyBuilder {
+
+	private String encoding;
+	private List<String> options;
+	private LogAdapter log;
+	private Map<String, InputPrefilter> referencePrefilters;
+
+	/**
+	 * @param encoding Encoding of the inputs.
+	 * @param options Values of the other processing options the results depend on.
+	 * @param log
+	 */
+	public ResultKeyBuilder(String encoding, List<String> options, LogAdapter log) {
+		this.encoding = encoding;
+		this.options = new ArrayList<String>(options);
+		this.log = log;
+		this.referencePrefilters = new HashMap<String, InputPrefilter>();
+	}
+
+	/**
+	 * @param resolver Expression resolver of the transformation.
+	 * @param fileResolver Resolver of included files.
+	 * @param type Type of the input file. Properties or XML.
+	 * @param plan Compiled rules of the transformation.
+	 * @param input Input to process.
+	 * @return Key of the result, null if the XML input may reference external content or an included file
+	 *         cannot be read.
+	 * @throws IOException If the input cannot be read.
+	 */
+	public String getKey(ExpressionResolver resolver, FileResolver fileResolver, String type, CompiledPlan plan, Resource input) throws IOException {
+		boolean properties = Transformation.PROPERTIES_TYPE.equals(type);
+		ByteBuffer content = input.getBuffer();
+		boolean references = mayReference(type, content);
+		if (references && !properties) {
+			return null;
+		}
+
+		ResultKey key = new ResultKey();
+		key.add(type).add(encoding);
+		for (String option : options) {
+			key.add(option);
+		}
+		key.add(plan.getDigest());
+
+		Set<String> placeholders = new TreeSet<String>(plan.getPlaceholders());
+		if (references) {
+			byte[] bytes = new byte[content.remaining()];
+			content.duplicate().get(bytes);
+			placeholders.addAll(new PlanCompiler().getPlaceholders(new String(bytes, encoding)));
+		}
+		for (String placeholder : placeholders) {
+			String expression = "${" + placeholder + "}";
+			key.add(placeholder).add(resolver.resolve(expression, false)).add(resolver.resolve(expression, true));
+		}
+
+		for (String file : plan.getIncludes()) {
+			String include = resolver.resolve(file, properties);
+			try {
+				key.add(include).add(fileResolver.getResource(include).getBuffer());
+			} catch (IOException e) {
+				log.debug("Not caching result, include [" + include + "] cannot be read: " + e.getMessage());
+				return null;
+			}
+		}
+
+		key.add(content);
+		return key.getValue();
+	}
+
+	/**
+	 * @param type Type of the input file. Properties or XML.
+	 * @param content Content of the input.
+	 * @return If the input may reference content the key does not cover: placeholders in a properties input,
+	 *         a DTD or included documents in an XML input.
+	 * @throws IOException If the encoding is not supported.
+	 */
+	protected boolean mayReference(String type, ByteBuffer content) throws IOException {
+		InputPrefilter referencePrefilter;
+		synchronized (referencePrefilters) {
+			if (!referencePrefilters.containsKey(type)) {
+				Map<String, Boolean> tokens = new HashMap<String, Boolean>();
+				if (Transformation.PROPERTIES_TYPE.equals(type)) {
+					tokens.put("${", Boolean.FALSE);
+				} else {
+					tokens.put("<!DOCTYPE", Boolean.FALSE);
+					tokens.put("XInclude", Boolean.FALSE);
+				}
+				referencePrefilters.put(type, InputPrefilter.create(tokens, encoding));
+			}
+			referencePrefilter = referencePrefilters.get(type);
+		}
+		return referencePrefilter == null || referencePrefilter.mayChange(content);
+	}
+}
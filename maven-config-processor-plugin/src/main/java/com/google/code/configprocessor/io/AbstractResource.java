@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Base class of resources, reading channels and buffers through {@link #openStream()}.
+ */
+public abstract class AbstractResource implements Resource {
+
+	public File getFile() {
+		return null;
+	}
+
+	public ReadableByteChannel openChannel() throws IOException {
+		return Channels.newChannel(openStream());
+	}
+
+	public ByteBuffer getBuffer() throws IOException {
+		InputStream is = openStream();
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			copy(is, baos);
+			return ByteBuffer.wrap(baos.toByteArray()).asReadOnlyBuffer();
+		} finally {
+			close(is, null);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getIdentity();
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * Content of an entry of an archive transformed in place, read from the archive or from the result of a
+ * previous transformation of the entry.
+ */
+public class ArchiveEntryContent extends AbstractResource {
+
+	private File archive;
+	private String entryName;
+	private byte[] content;
+
+	public ArchiveEntryContent(File archive, String entryName, byte[] content) {
+		this.archive = archive;
+		this.entryName = entryName;
+		this.content = content;
+	}
+
+	public String getIdentity() {
+		return archive.getAbsolutePath() + ArchiveIndex.ENTRY_SEPARATOR + entryName;
+	}
+
+	public long getLastModified() {
+		return archive.lastModified();
+	}
+
+	public InputStream openStream() {
+		return new ByteArrayInputStream(content);
+	}
+
+	@Override
+	public ByteBuffer getBuffer() {
+		return ByteBuffer.wrap(content).asReadOnlyBuffer();
+	}
+}
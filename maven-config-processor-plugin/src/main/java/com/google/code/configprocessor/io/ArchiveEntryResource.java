@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.nio.*;
+
+public class ArchiveEntryResource extends AbstractResource {
+
+	private ArchiveIndex index;
+	private String entryName;
+
+	public ArchiveEntryResource(ArchiveIndex index, String entryName) {
+		this.index = index;
+		this.entryName = entryName;
+	}
+
+	public String getIdentity() {
+		return index.getArchive().getAbsolutePath() + ArchiveIndex.ENTRY_SEPARATOR + entryName;
+	}
+
+	public long getLastModified() {
+		return index.getLastModified();
+	}
+
+	public InputStream openStream() throws IOException {
+		return index.openStream(entryName);
+	}
+
+	@Override
+	public ByteBuffer getBuffer() throws IOException {
+		return index.getBuffer(entryName);
+	}
+
+	public ArchiveIndex getIndex() {
+		return index;
+	}
+
+	public String getEntryName() {
+		return entryName;
+	}
+}
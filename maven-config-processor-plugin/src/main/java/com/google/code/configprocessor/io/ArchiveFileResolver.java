@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+/**
+ * Decorates a {@link FileResolver} adding support to entries of zip based archives, referenced as
+ * <code>archive!/path/to/entry</code>. The archive part is resolved by the decorated resolver, so it
+ * may be a file, a classpath resource or an artifact such as <code>group:artifact:version:zip!/rules.xml</code>.
+ * Each archive is read once and its entries are served from memory.
+ */
+public class ArchiveFileResolver implements FileResolver {
+
+	private static final String JAR_URL_PREFIX = "jar:";
+
+	private FileResolver delegate;
+	private ConcurrentMap<File, ArchiveIndex> indexes;
+
+	public ArchiveFileResolver(FileResolver delegate) {
+		this(delegate, new ConcurrentHashMap<File, ArchiveIndex>());
+	}
+
+	/**
+	 * @param delegate Resolver of the archives.
+	 * @param indexes Indexes of the archives already read, may be shared by several resolvers.
+	 */
+	public ArchiveFileResolver(FileResolver delegate, ConcurrentMap<File, ArchiveIndex> indexes) {
+		this.delegate = delegate;
+		this.indexes = indexes;
+	}
+
+	public File resolve(String name) throws IOException {
+		if (isArchiveEntry(name)) {
+			throw new FileNotFoundException("[" + name + "] is an archive entry and cannot be used as a file");
+		}
+		return delegate.resolve(name);
+	}
+
+	public Resource getResource(String name) throws IOException {
+		if (!isArchiveEntry(name)) {
+			return delegate.getResource(name);
+		}
+
+		int index = name.indexOf(ArchiveIndex.ENTRY_SEPARATOR);
+		String archiveName = name.substring(0, index);
+		String entryName = name.substring(index + ArchiveIndex.ENTRY_SEPARATOR.length());
+
+		ArchiveIndex archiveIndex = getIndex(delegate.resolve(archiveName).getAbsoluteFile());
+		if (!archiveIndex.contains(entryName)) {
+			throw new FileNotFoundException("Entry [" + entryName + "] not found in archive [" + archiveName + "]");
+		}
+		return new ArchiveEntryResource(archiveIndex, entryName);
+	}
+
+	protected ArchiveIndex getIndex(File archive) throws IOException {
+		ArchiveIndex index = indexes.get(archive);
+		if (index == null || index.isStale()) {
+			index = new ArchiveIndex(archive);
+			indexes.put(archive, index);
+		}
+		return index;
+	}
+
+	protected boolean isArchiveEntry(String name) {
+		return name != null && !name.startsWith(JAR_URL_PREFIX) && name.contains(ArchiveIndex.ENTRY_SEPARATOR);
+	}
+}
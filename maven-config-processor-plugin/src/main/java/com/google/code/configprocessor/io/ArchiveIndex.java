@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * In-memory index of the entries of a zip based archive (zip, jar, war...).
+ * The archive is read once when the index is built, entries are served from memory afterwards.
+ * It is meant for bundles of configuration files, not for large archives.
+ */
+public class ArchiveIndex {
+
+	/**
+	 * Separates the archive from the entry name in names such as <code>rules.zip!/shared/rules.xml</code>.
+	 */
+	public static final String ENTRY_SEPARATOR = "!/";
+
+	private File archive;
+	private long lastModified;
+	private Map<String, byte[]> entries;
+
+	public ArchiveIndex(File archive) throws IOException {
+		this.archive = archive;
+		this.lastModified = archive.lastModified();
+		this.entries = new LinkedHashMap<String, byte[]>();
+
+		ZipInputStream zis = new ZipInputStream(new BufferedInputStream(new FileInputStream(archive)));
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ZipEntry entry;
+			while ((entry = zis.getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					baos.reset();
+					copy(zis, baos);
+					entries.put(normalize(entry.getName()), baos.toByteArray());
+				}
+			}
+		} catch (ZipException e) {
+			throw new IOException("Error reading archive [" + archive + "]: " + e.getMessage());
+		} finally {
+			close(zis, null);
+		}
+	}
+
+	public File getArchive() {
+		return archive;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	public boolean contains(String entryName) {
+		return entries.containsKey(normalize(entryName));
+	}
+
+	public Set<String> getEntryNames() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * @param entryName Name of the entry.
+	 * @return Read-only view of the content of the entry.
+	 * @throws FileNotFoundException If the entry does not exist.
+	 */
+	public ByteBuffer getBuffer(String entryName) throws FileNotFoundException {
+		return ByteBuffer.wrap(getContent(entryName)).asReadOnlyBuffer();
+	}
+
+	public InputStream openStream(String entryName) throws FileNotFoundException {
+		return new ByteArrayInputStream(getContent(entryName));
+	}
+
+	/**
+	 * @return True if the archive has been modified since it was indexed.
+	 */
+	public boolean isStale() {
+		return archive.lastModified() != lastModified;
+	}
+
+	protected byte[] getContent(String entryName) throws FileNotFoundException {
+		byte[] content = entries.get(normalize(entryName));
+		if (content == null) {
+			throw new FileNotFoundException("Entry [" + entryName + "] not found in archive [" + archive + "]");
+		}
+		return content;
+	}
+
+	protected String normalize(String entryName) {
+		String name = entryName.replace('\\', '/');
+		while (name.startsWith("/")) {
+			name = name.substring(1);
+		}
+		return name;
+	}
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+import com.google.code.configprocessor.util.*;
+
+/**
+ * Writes a zip based archive (zip, jar, war...) made of the entries put into it and, optionally, the entries
+ * of a base archive not replaced by them. Entries of the base archive are copied with their compressed bytes,
+ * without being inflated and deflated again, and keep their position, so a jar manifest remains first.
+ * Entries put are deflated when put and kept in memory until the archive is closed.
+ */
+public class ArchiveWriter {
+
+	private static final int VERSION = 20;
+	private static final int DATA_DESCRIPTOR_FLAG = 1 << 3;
+
+	private File archive;
+	private File baseArchive;
+	private Map<String, RawZipFile.Entry> entries;
+	private Map<String, byte[]> contents;
+
+	private OutputStream out;
+	private long position;
+
+	/**
+	 * @param archive Archive to write, replaced when the writer is closed.
+	 * @param baseArchive Archive whose entries not replaced are copied, null to write only the entries put. May
+	 *        be the archive to write.
+	 */
+	public ArchiveWriter(File archive, File baseArchive) {
+		this.archive = archive;
+		this.baseArchive = baseArchive;
+		this.entries = new LinkedHashMap<String, RawZipFile.Entry>();
+		this.contents = new HashMap<String, byte[]>();
+	}
+
+	public File getArchive() {
+		return archive;
+	}
+
+	/**
+	 * Puts an entry, replacing the entry with the same name of the base archive or put before.
+	 * 
+	 * @param name Name of the entry, using <code>/</code> as separator.
+	 * @param content Uncompressed content.
+	 */
+	public void putEntry(String name, byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		byte[] compressed = deflate(content);
+
+		RawZipFile.Entry entry = new RawZipFile.Entry();
+		entry.name = name;
+		try {
+			entry.rawName = name.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		entry.versionMadeBy = VERSION;
+		entry.versionNeeded = VERSION;
+		entry.flags = RawZipFile.UTF8_FLAG;
+		entry.method = ZipEntry.DEFLATED;
+		entry.time = toDosTime(System.currentTimeMillis());
+		entry.crc = crc.getValue();
+		entry.compressedSize = compressed.length;
+		entry.size = content.length;
+		entry.extra = new byte[0];
+		entry.localExtra = entry.extra;
+		entry.comment = entry.extra;
+		synchronized (this) {
+			entries.put(name, entry);
+			contents.put(name, compressed);
+		}
+	}
+
+	/**
+	 * @param name Name of the entry.
+	 * @return If an entry with the name has been put.
+	 */
+	public synchronized boolean containsEntry(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * @param name Name of an entry put.
+	 * @return Uncompressed content of the entry.
+	 * @throws IOException If no entry with the name has been put.
+	 */
+	public synchronized byte[] getContent(String name) throws IOException {
+		RawZipFile.Entry entry = entries.get(name);
+		if (entry == null) {
+			throw new FileNotFoundException("Entry [" + name + "] not written to archive [" + archive + "]");
+		}
+		return RawZipFile.inflate(contents.get(name), entry.size, "Entry [" + name + "] written to archive [" + archive + "]");
+	}
+
+	/**
+	 * Writes the archive to a temporary file replacing the archive once complete.
+	 * 
+	 * @throws IOException If the base archive cannot be read or the archive cannot be written.
+	 */
+	public synchronized void close() throws IOException {
+		File directory = archive.getAbsoluteFile().getParentFile();
+		if (!directory.exists()) {
+			IOUtils.forceMkdirs(directory);
+		}
+		File temp = File.createTempFile(archive.getName(), ".tmp", directory);
+		RawZipFile base = null;
+		boolean complete = false;
+		try {
+			out = new BufferedOutputStream(new FileOutputStream(temp));
+			position = 0;
+			List<RawZipFile.Entry> written = new ArrayList<RawZipFile.Entry>();
+			Set<String> replaced = new HashSet<String>();
+			if (baseArchive != null) {
+				base = new RawZipFile(baseArchive);
+				for (RawZipFile.Entry entry : base.getEntries()) {
+					if (entries.containsKey(entry.name)) {
+						written.add(writeEntry(entries.get(entry.name), contents.get(entry.name)));
+						replaced.add(entry.name);
+					} else if (replaced.add(entry.name)) {
+						written.add(writeEntry(entry, base.readRaw(entry)));
+					}
+				}
+			}
+			for (RawZipFile.Entry entry : entries.values()) {
+				if (!replaced.contains(entry.name)) {
+					written.add(writeEntry(entry, contents.get(entry.name)));
+				}
+			}
+			writeCentralDirectory(written);
+			out.close();
+			out = null;
+			if (base != null) {
+				base.close();
+				base = null;
+			}
+			if (archive.exists() && !archive.delete()) {
+				throw new IOException("Cannot replace archive [" + archive + "]");
+			}
+			if (!temp.renameTo(archive)) {
+				throw new IOException("Cannot rename [" + temp + "] to [" + archive + "]");
+			}
+			complete = true;
+		} finally {
+			IOUtils.close(out, null);
+			IOUtils.close(base, null);
+			out = null;
+			if (!complete) {
+				temp.delete();
+			}
+		}
+	}
+
+	protected RawZipFile.Entry writeEntry(RawZipFile.Entry entry, byte[] data) throws IOException {
+		RawZipFile.Entry written = new RawZipFile.Entry();
+		written.name = entry.name;
+		written.rawName = entry.rawName;
+		written.versionMadeBy = entry.versionMadeBy;
+		written.versionNeeded = entry.versionNeeded;
+		// Sizes are known, so the local header has them and no data descriptor follows the data
+		written.flags = entry.flags & ~DATA_DESCRIPTOR_FLAG;
+		written.method = entry.method;
+		written.time = entry.time;
+		written.crc = entry.crc;
+		written.compressedSize = data.length;
+		written.size = entry.size;
+		written.extra = entry.extra;
+		written.localExtra = entry.localExtra;
+		written.comment = entry.comment;
+		written.internalAttributes = entry.internalAttributes;
+		written.externalAttributes = entry.externalAttributes;
+		written.offset = position;
+
+		writeInt(RawZipFile.LOCAL_HEADER);
+		writeShort(written.versionNeeded);
+		writeShort(written.flags);
+		writeShort(written.method);
+		writeInt(written.time);
+		writeInt(written.crc);
+		writeInt(written.compressedSize);
+		writeInt(written.size);
+		writeShort(written.rawName.length);
+		writeShort(written.localExtra.length);
+		write(written.rawName);
+		write(written.localExtra);
+		write(data);
+		return written;
+	}
+
+	protected void writeCentralDirectory(List<RawZipFile.Entry> written) throws IOException {
+		if (written.size() >= 0xffff || position >= 0xffffffffL) {
+			throw new IOException("Archive [" + archive + "] needs ZIP64, which is not supported");
+		}
+		long start = position;
+		for (RawZipFile.Entry entry : written) {
+			writeInt(RawZipFile.CENTRAL_HEADER);
+			writeShort(entry.versionMadeBy);
+			writeShort(entry.versionNeeded);
+			writeShort(entry.flags);
+			writeShort(entry.method);
+			writeInt(entry.time);
+			writeInt(entry.crc);
+			writeInt(entry.compressedSize);
+			writeInt(entry.size);
+			writeShort(entry.rawName.length);
+			writeShort(entry.extra.length);
+			writeShort(entry.comment.length);
+			writeShort(0);
+			writeShort(entry.internalAttributes);
+			writeInt(entry.externalAttributes);
+			writeInt(entry.offset);
+			write(entry.rawName);
+			write(entry.extra);
+			write(entry.comment);
+		}
+		long size = position - start;
+		writeInt(RawZipFile.END_OF_CENTRAL_DIRECTORY);
+		writeShort(0);
+		writeShort(0);
+		writeShort(written.size());
+		writeShort(written.size());
+		writeInt(size);
+		writeInt(start);
+		writeShort(0);
+	}
+
+	protected byte[] deflate(byte[] content) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			deflater.setInput(content);
+			deflater.finish();
+			ByteArrayOutputStream result = new ByteArrayOutputStream(content.length / 2 + 64);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				result.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return result.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	protected static long toDosTime(long time) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTimeInMillis(time);
+		int year = calendar.get(Calendar.YEAR);
+		if (year < 1980) {
+			return (1 << 21) | (1 << 16);
+		}
+		return ((long) (year - 1980) << 25) | ((long) (calendar.get(Calendar.MONTH) + 1) << 21) | ((long) calendar.get(Calendar.DAY_OF_MONTH) << 16) | (calendar.get(Calendar.HOUR_OF_DAY) << 11) | (calendar.get(Calendar.MINUTE) << 5) | (calendar.get(Calendar.SECOND) >> 1);
+	}
+
+	private void writeShort(int value) throws IOException {
+		out.write(value & 0xff);
+		out.write((value >>> 8) & 0xff);
+		position += 2;
+	}
+
+	private void writeInt(long value) throws IOException {
+		writeShort((int) (value & 0xffff));
+		writeShort((int) ((value >>> 16) & 0xffff));
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		out.write(bytes);
+		position += bytes.length;
+	}
+}
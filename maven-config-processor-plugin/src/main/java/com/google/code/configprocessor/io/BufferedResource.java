@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.nio.*;
+
+/**
+ * Decorates a {@link Resource} whose content has already been read into memory, e.g. by a stage of a
+ * pipeline, so reading it again does not block on the file system.
+ */
+public class BufferedResource extends AbstractResource {
+
+	private Resource resource;
+	private ByteBuffer buffer;
+
+	protected BufferedResource(Resource resource, ByteBuffer buffer) {
+		this.resource = resource;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Reads the whole content of a resource, loading memory mapped content into physical memory.
+	 * 
+	 * @param resource Resource to read.
+	 * @return Resource serving the content read.
+	 * @throws IOException If the resource cannot be read.
+	 */
+	public static BufferedResource read(Resource resource) throws IOException {
+		ByteBuffer buffer = resource.getBuffer();
+		if (buffer instanceof MappedByteBuffer) {
+			((MappedByteBuffer) buffer).load();
+		}
+		return new BufferedResource(resource, buffer);
+	}
+
+	public String getIdentity() {
+		return resource.getIdentity();
+	}
+
+	public long getLastModified() {
+		return resource.getLastModified();
+	}
+
+	@Override
+	public File getFile() {
+		return resource.getFile();
+	}
+
+	public InputStream openStream() {
+		final ByteBuffer content = buffer.duplicate();
+		return new InputStream() {
+
+			@Override
+			public int read() {
+				return content.hasRemaining() ? content.get() & 0xFF : -1;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) {
+				if (len == 0) {
+					return 0;
+				}
+				if (!content.hasRemaining()) {
+					return -1;
+				}
+				int count = Math.min(len, content.remaining());
+				content.get(b, off, count);
+				return count;
+			}
+
+			@Override
+			public int available() {
+				return content.remaining();
+			}
+		};
+	}
+
+	@Override
+	public ByteBuffer getBuffer() {
+		return buffer.duplicate();
+	}
+
+	/**
+	 * @return Size of the content, in bytes.
+	 */
+	public int getLength() {
+		return buffer.remaining();
+	}
+}
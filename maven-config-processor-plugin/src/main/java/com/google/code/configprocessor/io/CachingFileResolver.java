@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Decorates a {@link FileResolver} remembering the outcome of every lookup by name, so resolving the
+ * same name again costs a map lookup instead of running the decorated resolver again.
+ * <p>
+ * Successful lookups are discarded when the resolved file is modified or deleted. Failed lookups are
+ * remembered too, so names that cannot be resolved are not searched again (e.g. in remote repositories),
+ * until {@link #forgetFailures()} is called: files missing for one execution may be generated before the
+ * next one.
+ */
+public class CachingFileResolver implements FileResolver {
+
+	private FileResolver delegate;
+	private ConcurrentMap<String, Entry> entries;
+	private ConcurrentMap<String, Entry> resources;
+
+	public CachingFileResolver(FileResolver delegate) {
+		this.delegate = delegate;
+		this.entries = new ConcurrentHashMap<String, Entry>();
+		this.resources = new ConcurrentHashMap<String, Entry>();
+	}
+
+	public File resolve(String name) throws IOException {
+		if (name == null) {
+			return delegate.resolve(name);
+		}
+
+		Entry entry = entries.get(name);
+		if (entry == null || entry.isStale()) {
+			entry = lookup(name);
+			entries.put(name, entry);
+		}
+		return entry.getFile();
+	}
+
+	public Resource getResource(String name) throws IOException {
+		if (name == null) {
+			return delegate.getResource(name);
+		}
+
+		Entry entry = resources.get(name);
+		if (entry == null || entry.isStale()) {
+			entry = lookupResource(name);
+			resources.put(name, entry);
+		}
+		return entry.getResource();
+	}
+
+	/**
+	 * Forgets the lookups that failed, to be called when a new execution starts.
+	 */
+	public void forgetFailures() {
+		forgetFailures(entries);
+		forgetFailures(resources);
+	}
+
+	private void forgetFailures(ConcurrentMap<String, Entry> map) {
+		for (Map.Entry<String, Entry> entry : map.entrySet()) {
+			if (entry.getValue().failure != null) {
+				map.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Forgets every lookup made so far.
+	 */
+	public void clear() {
+		entries.clear();
+		resources.clear();
+	}
+
+	protected Entry lookup(String name) {
+		try {
+			File file = delegate.resolve(name);
+			return new Entry(file, null, file.lastModified(), null);
+		} catch (IOException e) {
+			return new Entry(null, null, 0, e);
+		}
+	}
+
+	protected Entry lookupResource(String name) {
+		try {
+			Resource resource = delegate.getResource(name);
+			File file = resource.getFile();
+			return new Entry(file, resource, file == null ? 0 : file.lastModified(), null);
+		} catch (IOException e) {
+			return new Entry(null, null, 0, e);
+		}
+	}
+
+	/**
+	 * Outcome of a lookup. Resources not backed by a file (e.g. packaged in a jar or remote) are assumed not
+	 * to change during the build.
+	 */
+	protected static class Entry {
+
+		private File file;
+		private Resource resource;
+		private long lastModified;
+		private IOException failure;
+
+		public Entry(File file, Resource resource, long lastModified, IOException failure) {
+			this.file = file;
+			this.resource = resource;
+			this.lastModified = lastModified;
+			this.failure = failure;
+		}
+
+		public File getFile() throws IOException {
+			if (failure != null) {
+				throw newFailure();
+			}
+			return file;
+		}
+
+		public Resource getResource() throws IOException {
+			if (failure != null) {
+				throw newFailure();
+			}
+			return resource;
+		}
+
+		/**
+		 * The failure is shared by every thread looking up the name, so each one gets its own exception
+		 * caused by it.
+		 */
+		protected IOException newFailure() {
+			IOException e = failure instanceof FileNotFoundException ? new FileNotFoundException(failure.getMessage()) : new IOException(failure.getMessage());
+			e.initCause(failure);
+			return e;
+		}
+
+		/**
+		 * @return True if the resolved file has been modified or deleted since it was resolved. Failures are
+		 *         forgotten by {@link CachingFileResolver#forgetFailures()} instead.
+		 */
+		public boolean isStale() {
+			if (failure != null || file == null) {
+				return false;
+			}
+			return !file.exists() || file.lastModified() != lastModified;
+		}
+	}
+}
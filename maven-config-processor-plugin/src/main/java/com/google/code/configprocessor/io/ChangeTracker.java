@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+
+/**
+ * Tracks the files changed since the previous build, so incremental builds (e.g. in an IDE) only process
+ * transformations affected by the changes, and is notified of the files written.
+ */
+public interface ChangeTracker {
+
+	/**
+	 * @return If the build only has to process changes. Otherwise every file is considered changed.
+	 */
+	boolean isIncremental();
+
+	/**
+	 * @param file File to check.
+	 * @return If the file has been created, modified or deleted since the previous build.
+	 */
+	boolean hasDelta(File file);
+
+	/**
+	 * Notifies that a file has been written by the build.
+	 * 
+	 * @param file File written.
+	 */
+	void refresh(File file);
+}
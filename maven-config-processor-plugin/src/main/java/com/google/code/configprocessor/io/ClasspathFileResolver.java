@@ -21,11 +21,23 @@ import java.net.*;
 public class ClasspathFileResolver implements FileResolver {
 
 	public File resolve(String name) throws IOException {
+		File file = UrlResource.toFile(getUrl(name));
+		if (file == null) {
+			throw new FileNotFoundException("Classpath resource [" + name + "] is not a file");
+		}
+		return file;
+	}
+
+	public Resource getResource(String name) throws IOException {
+		return UrlResource.forUrl(getUrl(name));
+	}
+
+	protected URL getUrl(String name) throws FileNotFoundException {
 		URL url = getClass().getResource(name);
 		if (url == null) {
 			throw new FileNotFoundException("Classpath resource [" + name + "] not found");
 		}
-		return new File(url.getPath());
+		return url;
 	}
 
 }
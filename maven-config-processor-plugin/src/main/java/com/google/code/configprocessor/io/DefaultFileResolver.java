@@ -27,4 +27,8 @@ public class DefaultFileResolver implements FileResolver {
 		return file;
 	}
 
+	public Resource getResource(String name) throws IOException {
+		return new FileResource(resolve(name));
+	}
+
 }
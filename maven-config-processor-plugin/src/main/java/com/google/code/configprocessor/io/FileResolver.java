@@ -21,4 +21,13 @@ public interface FileResolver {
 
 	File resolve(String name) throws IOException;
 
+	/**
+	 * Resolves content that may not be available as a file in the file system.
+	 * 
+	 * @param name Name of the resource.
+	 * @return Resource to read.
+	 * @throws IOException If the resource cannot be found.
+	 */
+	Resource getResource(String name) throws IOException;
+
 }
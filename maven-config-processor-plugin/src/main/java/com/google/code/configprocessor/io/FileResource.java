@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+public class FileResource extends AbstractResource {
+
+	private File file;
+
+	public FileResource(File file) {
+		this.file = file;
+	}
+
+	public String getIdentity() {
+		return file.getAbsolutePath();
+	}
+
+	public long getLastModified() {
+		return file.lastModified();
+	}
+
+	@Override
+	public File getFile() {
+		return file;
+	}
+
+	public InputStream openStream() throws IOException {
+		return new FileInputStream(file);
+	}
+
+	@Override
+	public ReadableByteChannel openChannel() throws IOException {
+		return new FileInputStream(file).getChannel();
+	}
+
+	/**
+	 * Reads the file into the heap. It is never memory mapped: a mapping keeps the file locked on Windows
+	 * until it is garbage collected, and inputs are usually overwritten by their own outputs.
+	 */
+	@Override
+	public ByteBuffer getBuffer() throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel channel = fis.getChannel();
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+				// Keep reading
+			}
+			buffer.flip();
+			return buffer.asReadOnlyBuffer();
+		} finally {
+			close(fis, null);
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.tools.ant.*;
+import org.apache.tools.ant.types.selectors.*;
+
+/**
+ * Matches the files below a base directory against the include patterns of every wildcard transformation
+ * of a build, walking the directory tree only once. Directories that cannot contain a file matching any
+ * include pattern, or whose whole content is excluded (e.g. <code>.git</code>), are not walked.
+ * Patterns use the same syntax as {@link DirectoryScanner} and are matched case-insensitively.
+ */
+public class InputScanner {
+
+	private static final String ANY_PATH = File.separator + "**";
+
+	/**
+	 * Metadata of version control systems not covered by the default excludes of the Ant version in use.
+	 */
+	private static final String[] VCS_EXCLUDES = { "**/.git", "**/.git/**", "**/.gitignore", "**/.hg", "**/.hg/**", "**/.bzr", "**/.bzr/**" };
+
+	private File baseDir;
+	private List<String> excludes;
+	private Map<String, Set<File>> matches;
+
+	/**
+	 * @param baseDir Directory the patterns are relative to.
+	 * @param excludes Patterns of files and directories to exclude in addition to the default excludes of
+	 *        {@link DirectoryScanner} and Git, Mercurial and Bazaar metadata, may be null.
+	 */
+	public InputScanner(File baseDir, Collection<String> excludes) {
+		this.baseDir = baseDir;
+		this.excludes = new ArrayList<String>();
+		for (String exclude : DirectoryScanner.getDefaultExcludes()) {
+			this.excludes.add(normalize(exclude));
+		}
+		for (String exclude : VCS_EXCLUDES) {
+			this.excludes.add(normalize(exclude));
+		}
+		if (excludes != null) {
+			for (String exclude : excludes) {
+				this.excludes.add(normalize(exclude));
+			}
+		}
+		this.matches = new HashMap<String, Set<File>>();
+	}
+
+	/**
+	 * Walks the base directory once, collecting the files matching each pattern not scanned yet.
+	 * 
+	 * @param includes Include patterns to match.
+	 */
+	public synchronized void scan(Collection<String> includes) {
+		Map<String, Set<File>> pending = new LinkedHashMap<String, Set<File>>();
+		for (String include : includes) {
+			if (!matches.containsKey(include)) {
+				pending.put(normalize(include), new LinkedHashSet<File>());
+				matches.put(include, pending.get(normalize(include)));
+			}
+		}
+		if (!pending.isEmpty() && baseDir != null && baseDir.isDirectory()) {
+			scan(baseDir, "", pending);
+		}
+	}
+
+	/**
+	 * @param include Include pattern, scanned now if it has not been scanned yet.
+	 * @return Files matching the pattern and not excluded, in directory order.
+	 */
+	public synchronized List<File> getMatchingFiles(String include) {
+		if (!matches.containsKey(include)) {
+			scan(Collections.singleton(include));
+		}
+		return new ArrayList<File>(matches.get(include));
+	}
+
+	/**
+	 * Notifies that a file has been created after the scan, so patterns matching it include it.
+	 * 
+	 * @param file File created.
+	 */
+	public synchronized void added(File file) {
+		String path = getRelativePath(file);
+		if (path == null || isExcluded(path)) {
+			return;
+		}
+		for (Map.Entry<String, Set<File>> entry : matches.entrySet()) {
+			if (SelectorUtils.matchPath(normalize(entry.getKey()), path, false)) {
+				entry.getValue().add(new File(baseDir, path));
+			}
+		}
+	}
+
+	/**
+	 * Discards the results of previous scans.
+	 */
+	public synchronized void clear() {
+		matches.clear();
+	}
+
+	protected void scan(File dir, String prefix, Map<String, Set<File>> pending) {
+		String[] names = dir.list();
+		if (names == null) {
+			return;
+		}
+		Arrays.sort(names);
+		for (String name : names) {
+			File file = new File(dir, name);
+			String path = prefix + name;
+			if (file.isDirectory()) {
+				if (isWalked(path, pending.keySet())) {
+					scan(file, path + File.separator, pending);
+				}
+			} else if (!isExcluded(path)) {
+				for (Map.Entry<String, Set<File>> entry : pending.entrySet()) {
+					if (SelectorUtils.matchPath(entry.getKey(), path, false)) {
+						entry.getValue().add(file);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return If the directory may contain files matching an include pattern and not all of its content is
+	 *         excluded.
+	 */
+	protected boolean isWalked(String path, Collection<String> includes) {
+		for (String exclude : excludes) {
+			if (exclude.endsWith(ANY_PATH) && SelectorUtils.matchPath(exclude.substring(0, exclude.length() - ANY_PATH.length()), path, false)) {
+				return false;
+			}
+		}
+		for (String include : includes) {
+			if (SelectorUtils.matchPatternStart(include, path, false)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected boolean isExcluded(String path) {
+		for (String exclude : excludes) {
+			if (SelectorUtils.matchPath(exclude, path, false)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return Path of the file relative to the base directory, null if it is not below it.
+	 */
+	protected String getRelativePath(File file) {
+		if (baseDir == null) {
+			return null;
+		}
+		String base = baseDir.getAbsolutePath();
+		String path = file.getAbsolutePath();
+		if (!base.endsWith(File.separator)) {
+			base += File.separator;
+		}
+		return path.startsWith(base) ? path.substring(base.length()) : null;
+	}
+
+	/**
+	 * @param pattern Include pattern.
+	 * @param path Path to match, using <code>/</code> or the platform separator.
+	 * @return If the path matches the pattern, ignoring case.
+	 */
+	public static boolean matches(String pattern, String path) {
+		return SelectorUtils.matchPath(normalize(pattern), path.replace('/', File.separatorChar).replace('\\', File.separatorChar), false);
+	}
+
+	/**
+	 * Normalizes a pattern the same way {@link DirectoryScanner} does, using the platform separator and
+	 * matching everything below a pattern ending with a separator.
+	 */
+	protected static String normalize(String pattern) {
+		String result = pattern.trim().replace('/', File.separatorChar).replace('\\', File.separatorChar);
+		if (result.endsWith(File.separator)) {
+			result += "**";
+		}
+		return result;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Names of the files to prefetch for a sequence of transformations. Files below an output of a previous
+ * transformation are left out, since they are written before they are read.
+ */
+public class PrefetchList {
+
+	private File baseDir;
+	private Set<String> names;
+	private Set<File> outputs;
+
+	/**
+	 * @param baseDir Directory relative names are resolved against.
+	 */
+	public PrefetchList(File baseDir) {
+		this.baseDir = baseDir;
+		this.names = new LinkedHashSet<String>();
+		this.outputs = new HashSet<File>();
+	}
+
+	/**
+	 * @param name Name of a file read by the current transformation.
+	 */
+	public void add(String name) {
+		if (name != null && !isOutput(name)) {
+			names.add(name);
+		}
+	}
+
+	/**
+	 * @param output File or directory written by the current transformation.
+	 */
+	public void addOutput(File output) {
+		outputs.add(output.getAbsoluteFile());
+	}
+
+	/**
+	 * Prefetches the files added since the previous call.
+	 *
+	 * @param prefetcher Resolver holding the prefetched content.
+	 * @return Failures by name, in the order the files have been added.
+	 */
+	public Map<String, IOException> prefetch(PrefetchingFileResolver prefetcher) {
+		Map<String, IOException> failures = prefetcher.prefetch(names);
+		names.clear();
+		return failures;
+	}
+
+	protected boolean isOutput(String name) {
+		File file = new File(name);
+		if (!file.isAbsolute()) {
+			file = new File(baseDir, name);
+		}
+		for (File parent = file.getAbsoluteFile(); parent != null; parent = parent.getParentFile()) {
+			if (outputs.contains(parent)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Decorates a {@link FileResolver} serving resources whose content has been read in advance by
+ * {@link #prefetch(Collection)}.
+ * <p>
+ * Names are resolved by the decorated resolver in the calling thread, since resolvers may reach
+ * repositories that do not support concurrent access, and the content is then read concurrently. The
+ * total amount of content held in memory is bounded, resources that do not fit are only resolved.
+ * Prefetched content backed by a file is discarded if the file changes afterwards.
+ */
+public class PrefetchingFileResolver implements FileResolver {
+
+	public static final long DEFAULT_MAX_SIZE = 32 * 1024 * 1024;
+
+	private FileResolver delegate;
+	private int threads;
+	private long maxSize;
+	private AtomicLong size;
+	private ConcurrentMap<String, PrefetchedResource> resources;
+
+	public PrefetchingFileResolver(FileResolver delegate, int threads, long maxSize) {
+		this.delegate = delegate;
+		this.threads = threads;
+		this.maxSize = maxSize;
+		this.size = new AtomicLong();
+		this.resources = new ConcurrentHashMap<String, PrefetchedResource>();
+	}
+
+	public File resolve(String name) throws IOException {
+		return delegate.resolve(name);
+	}
+
+	public Resource getResource(String name) throws IOException {
+		Resource resource = getPrefetched(name);
+		if (resource == null) {
+			return delegate.getResource(name);
+		}
+		return resource;
+	}
+
+	/**
+	 * @param name Name of the resource.
+	 * @return Prefetched resource or null if it has not been prefetched or it has changed since.
+	 */
+	public Resource getPrefetched(String name) {
+		if (name == null) {
+			return null;
+		}
+		PrefetchedResource resource = resources.get(name);
+		if (resource != null && resource.isStale()) {
+			evict(name, resource);
+			return null;
+		}
+		return resource;
+	}
+
+	/**
+	 * Resolves and reads the given resources.
+	 * 
+	 * @param names Names of the resources to prefetch.
+	 * @return Failures found resolving or reading the resources, by name.
+	 */
+	public Map<String, IOException> prefetch(Collection<String> names) {
+		Map<String, IOException> failures = new LinkedHashMap<String, IOException>();
+		Map<String, Resource> resolved = new LinkedHashMap<String, Resource>();
+		for (String name : names) {
+			if (resources.containsKey(name) || resolved.containsKey(name)) {
+				continue;
+			}
+			try {
+				resolved.put(name, delegate.getResource(name));
+			} catch (IOException e) {
+				failures.put(name, e);
+			}
+		}
+		if (resolved.isEmpty()) {
+			return failures;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, resolved.size())));
+		try {
+			Map<String, Future<?>> futures = new LinkedHashMap<String, Future<?>>();
+			for (final Map.Entry<String, Resource> entry : resolved.entrySet()) {
+				futures.put(entry.getKey(), executor.submit(new Callable<Object>() {
+
+					public Object call() throws IOException {
+						read(entry.getKey(), entry.getValue());
+						return null;
+					}
+				}));
+			}
+			for (Map.Entry<String, Future<?>> entry : futures.entrySet()) {
+				try {
+					entry.getValue().get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException) {
+						failures.put(entry.getKey(), (IOException) e.getCause());
+					} else {
+						IOException failure = new IOException("Error reading [" + entry.getKey() + "]");
+						failure.initCause(e.getCause());
+						failures.put(entry.getKey(), failure);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					IOException failure = new IOException("Interrupted reading [" + entry.getKey() + "]");
+					failure.initCause(e);
+					failures.put(entry.getKey(), failure);
+					break;
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return failures;
+	}
+
+	/**
+	 * Discards prefetched content backed by the given file, e.g. because it is about to be overwritten.
+	 * 
+	 * @param file File whose content is discarded.
+	 */
+	public void evict(File file) {
+		File absoluteFile = file.getAbsoluteFile();
+		for (Map.Entry<String, PrefetchedResource> entry : resources.entrySet()) {
+			File resourceFile = entry.getValue().getFile();
+			if (resourceFile != null && resourceFile.getAbsoluteFile().equals(absoluteFile)) {
+				evict(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	/**
+	 * Discards all prefetched content.
+	 */
+	public void clear() {
+		resources.clear();
+		size.set(0);
+	}
+
+	/**
+	 * @return Amount of prefetched content held in memory, in bytes.
+	 */
+	public long getSize() {
+		return size.get();
+	}
+
+	protected void read(String name, Resource resource) throws IOException {
+		File file = resource.getFile();
+		long lastModified = resource.getLastModified();
+		long length = file == null ? -1 : file.length();
+		if (length > 0 && !reserve(length)) {
+			return;
+		}
+
+		byte[] content;
+		InputStream is = resource.openStream();
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(length > 0 ? (int) length : 8192);
+			copy(is, baos);
+			content = baos.toByteArray();
+		} catch (IOException e) {
+			release(length);
+			throw e;
+		} finally {
+			close(is, null);
+		}
+
+		if (length != content.length) {
+			release(length);
+			if (!reserve(content.length)) {
+				return;
+			}
+		}
+		resources.put(name, new PrefetchedResource(resource, content, lastModified));
+	}
+
+	protected boolean reserve(long amount) {
+		while (true) {
+			long current = size.get();
+			if (current + amount > maxSize) {
+				return false;
+			}
+			if (size.compareAndSet(current, current + amount)) {
+				return true;
+			}
+		}
+	}
+
+	protected void release(long amount) {
+		if (amount > 0) {
+			size.addAndGet(-amount);
+		}
+	}
+
+	protected void evict(String name, PrefetchedResource resource) {
+		if (resources.remove(name, resource)) {
+			release(resource.getLength());
+		}
+	}
+
+	protected static class PrefetchedResource extends AbstractResource {
+
+		private Resource resource;
+		private byte[] content;
+		private long lastModified;
+
+		public PrefetchedResource(Resource resource, byte[] content, long lastModified) {
+			this.resource = resource;
+			this.content = content;
+			this.lastModified = lastModified;
+		}
+
+		public String getIdentity() {
+			return resource.getIdentity();
+		}
+
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		@Override
+		public File getFile() {
+			return resource.getFile();
+		}
+
+		public InputStream openStream() {
+			return new ByteArrayInputStream(content);
+		}
+
+		@Override
+		public ByteBuffer getBuffer() {
+			return ByteBuffer.wrap(content).asReadOnlyBuffer();
+		}
+
+		public long getLength() {
+			return content.length;
+		}
+
+		/**
+		 * @return True if the file backing the resource has changed since it was read.
+		 */
+		public boolean isStale() {
+			File file = getFile();
+			if (file == null) {
+				return false;
+			}
+			return !file.exists() || file.lastModified() != lastModified || file.length() != content.length;
+		}
+	}
+}
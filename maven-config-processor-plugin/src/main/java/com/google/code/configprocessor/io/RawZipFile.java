@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.*;
+
+/**
+ * Zip based archive (zip, jar, war...) read from its central directory, giving access to the compressed
+ * bytes of each entry so they can be copied to another archive without being inflated and deflated again.
+ * ZIP64 archives are not supported.
+ */
+public class RawZipFile implements Closeable {
+
+	static final int LOCAL_HEADER = 0x04034b50;
+	static final int CENTRAL_HEADER = 0x02014b50;
+	static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	static final int LOCAL_HEADER_SIZE = 30;
+	static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	static final int MAX_COMMENT_SIZE = 0xffff;
+	static final int UTF8_FLAG = 1 << 11;
+
+	private File archive;
+	private RandomAccessFile file;
+	private List<Entry> entries;
+	private Map<String, Entry> entriesByName;
+
+	public RawZipFile(File archive) throws IOException {
+		this.archive = archive;
+		this.file = new RandomAccessFile(archive, "r");
+		this.entries = new ArrayList<Entry>();
+		this.entriesByName = new HashMap<String, Entry>();
+		try {
+			readCentralDirectory();
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	public File getArchive() {
+		return archive;
+	}
+
+	/**
+	 * @return Entries in the order of the central directory.
+	 */
+	public List<Entry> getEntries() {
+		return Collections.unmodifiableList(entries);
+	}
+
+	/**
+	 * @param name Name of the entry.
+	 * @return Entry with the given name, null if there is none.
+	 */
+	public Entry getEntry(String name) {
+		return entriesByName.get(name);
+	}
+
+	/**
+	 * @param entry Entry of this archive.
+	 * @return Compressed content of the entry, as stored in the archive.
+	 * @throws IOException If the archive cannot be read.
+	 */
+	public synchronized byte[] readRaw(Entry entry) throws IOException {
+		byte[] data = new byte[(int) entry.compressedSize];
+		file.seek(entry.dataOffset);
+		file.readFully(data);
+		return data;
+	}
+
+	/**
+	 * @param entry Entry of this archive.
+	 * @return Uncompressed content of the entry.
+	 * @throws IOException If the archive cannot be read or the entry is compressed with an unsupported method.
+	 */
+	public byte[] read(Entry entry) throws IOException {
+		byte[] data = readRaw(entry);
+		if (entry.method == ZipEntry.STORED) {
+			return data;
+		} else if (entry.method != ZipEntry.DEFLATED) {
+			throw new ZipException("Entry [" + entry.name + "] of archive [" + archive + "] uses unsupported compression method [" + entry.method + "]");
+		}
+		return inflate(data, entry.size, "Entry [" + entry.name + "] of archive [" + archive + "]");
+	}
+
+	public synchronized void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * @param data Raw deflate data.
+	 * @param size Size of the inflated content.
+	 * @param description Description of the content for error messages.
+	 * @return Inflated content.
+	 * @throws ZipException If the data is truncated or corrupted.
+	 */
+	static byte[] inflate(byte[] data, long size, String description) throws ZipException {
+		Inflater inflater = new Inflater(true);
+		try {
+			// A dummy byte is needed at the end of raw deflate data
+			byte[] input = new byte[data.length + 1];
+			System.arraycopy(data, 0, input, 0, data.length);
+			inflater.setInput(input);
+			byte[] result = new byte[(int) size];
+			int length = 0;
+			while (length < result.length && !inflater.finished()) {
+				int inflated = inflater.inflate(result, length, result.length - length);
+				if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				length += inflated;
+			}
+			if (length != result.length) {
+				throw new ZipException(description + " is truncated");
+			}
+			return result;
+		} catch (DataFormatException e) {
+			throw new ZipException(description + " is corrupted: " + e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	protected void readCentralDirectory() throws IOException {
+		long end = findEndOfCentralDirectory();
+		file.seek(end + 10);
+		int count = readShort();
+		long size = readInt();
+		long offset = readInt();
+		if (count == 0xffff || size == 0xffffffffL || offset == 0xffffffffL) {
+			throw new ZipException("ZIP64 archive [" + archive + "] is not supported");
+		}
+
+		byte[] directory = new byte[(int) size];
+		file.seek(offset);
+		file.readFully(directory);
+		int position = 0;
+		for (int i = 0; i < count; i++) {
+			if (getInt(directory, position) != CENTRAL_HEADER) {
+				throw new ZipException("Invalid central directory in archive [" + archive + "]");
+			}
+			Entry entry = new Entry();
+			entry.versionMadeBy = getShort(directory, position + 4);
+			entry.versionNeeded = getShort(directory, position + 6);
+			entry.flags = getShort(directory, position + 8);
+			entry.method = getShort(directory, position + 10);
+			entry.time = getInt(directory, position + 12);
+			entry.crc = getInt(directory, position + 16);
+			entry.compressedSize = getInt(directory, position + 20);
+			entry.size = getInt(directory, position + 24);
+			int nameLength = getShort(directory, position + 28);
+			int extraLength = getShort(directory, position + 30);
+			int commentLength = getShort(directory, position + 32);
+			entry.internalAttributes = getShort(directory, position + 36);
+			entry.externalAttributes = getInt(directory, position + 38);
+			entry.offset = getInt(directory, position + 42);
+			position += 46;
+			entry.rawName = copyOf(directory, position, nameLength);
+			entry.name = new String(entry.rawName, "UTF-8");
+			position += nameLength;
+			entry.extra = copyOf(directory, position, extraLength);
+			position += extraLength;
+			entry.comment = copyOf(directory, position, commentLength);
+			position += commentLength;
+			if (entry.compressedSize == 0xffffffffL || entry.size == 0xffffffffL || entry.offset == 0xffffffffL) {
+				throw new ZipException("ZIP64 archive [" + archive + "] is not supported");
+			}
+
+			file.seek(entry.offset);
+			if (readIntValue() != LOCAL_HEADER) {
+				throw new ZipException("Invalid local header of entry [" + entry.name + "] in archive [" + archive + "]");
+			}
+			file.seek(entry.offset + 26);
+			int localNameLength = readShort();
+			int localExtraLength = readShort();
+			file.seek(entry.offset + LOCAL_HEADER_SIZE + localNameLength);
+			entry.localExtra = new byte[localExtraLength];
+			file.readFully(entry.localExtra);
+			entry.dataOffset = entry.offset + LOCAL_HEADER_SIZE + localNameLength + localExtraLength;
+
+			entries.add(entry);
+			entriesByName.put(entry.name, entry);
+		}
+	}
+
+	protected long findEndOfCentralDirectory() throws IOException {
+		long length = file.length();
+		long minimum = Math.max(0, length - END_OF_CENTRAL_DIRECTORY_SIZE - MAX_COMMENT_SIZE);
+		for (long position = length - END_OF_CENTRAL_DIRECTORY_SIZE; position >= minimum; position--) {
+			file.seek(position);
+			if (readIntValue() == END_OF_CENTRAL_DIRECTORY) {
+				return position;
+			}
+		}
+		throw new ZipException("Archive [" + archive + "] is not a zip file");
+	}
+
+	private int readShort() throws IOException {
+		return file.readUnsignedByte() | (file.readUnsignedByte() << 8);
+	}
+
+	private long readInt() throws IOException {
+		return readIntValue() & 0xffffffffL;
+	}
+
+	private int readIntValue() throws IOException {
+		return readShort() | (readShort() << 16);
+	}
+
+	static int getShort(byte[] bytes, int position) {
+		return (bytes[position] & 0xff) | ((bytes[position + 1] & 0xff) << 8);
+	}
+
+	static long getInt(byte[] bytes, int position) {
+		return (getShort(bytes, position) | ((long) getShort(bytes, position + 2) << 16)) & 0xffffffffL;
+	}
+
+	static byte[] copyOf(byte[] bytes, int position, int length) {
+		byte[] result = new byte[length];
+		System.arraycopy(bytes, position, result, 0, length);
+		return result;
+	}
+
+	/**
+	 * Entry of a zip based archive, as described by its central directory record.
+	 */
+	public static class Entry {
+
+		String name;
+		byte[] rawName;
+		int versionMadeBy;
+		int versionNeeded;
+		int flags;
+		int method;
+		long time;
+		long crc;
+		long compressedSize;
+		long size;
+		byte[] extra;
+		byte[] localExtra;
+		byte[] comment;
+		int internalAttributes;
+		long externalAttributes;
+		long offset;
+		long dataOffset;
+
+		Entry() {
+			// Created by the archive
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public boolean isDirectory() {
+			return name.endsWith("/");
+		}
+
+		public int getMethod() {
+			return method;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
+
+		public long getSize() {
+			return size;
+		}
+
+		public long getCompressedSize() {
+			return compressedSize;
+		}
+	}
+}
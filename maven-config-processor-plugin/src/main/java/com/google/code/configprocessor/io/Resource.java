@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+
+/**
+ * Content that can be read while processing, e.g. a file, a classpath resource or an entry of an archive.
+ */
+public interface Resource {
+
+	/**
+	 * @return Name that identifies the resource among all resources read in a build.
+	 */
+	String getIdentity();
+
+	/**
+	 * @return Modification stamp of the content, changes whenever the content changes. Zero if unknown.
+	 */
+	long getLastModified();
+
+	/**
+	 * @return File backing the resource or null if the resource is not available in the file system.
+	 */
+	File getFile();
+
+	/**
+	 * Opens a new stream to read the content of the resource. The caller must close it.
+	 * 
+	 * @return Stream positioned at the beginning of the content.
+	 * @throws IOException If the resource cannot be read.
+	 */
+	InputStream openStream() throws IOException;
+
+	/**
+	 * Opens a new channel to read the content of the resource. The caller must close it.
+	 * 
+	 * @return Channel positioned at the beginning of the content.
+	 * @throws IOException If the resource cannot be read.
+	 */
+	ReadableByteChannel openChannel() throws IOException;
+
+	/**
+	 * Obtains the whole content of the resource.
+	 * 
+	 * @return Read-only buffer with the content of the resource.
+	 * @throws IOException If the resource cannot be read.
+	 */
+	ByteBuffer getBuffer() throws IOException;
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import java.io.*;
+import java.net.*;
+
+/**
+ * Resource read through an {@link URL}, e.g. a classpath resource packaged in a jar.
+ */
+public class UrlResource extends AbstractResource {
+
+	private URL url;
+
+	public UrlResource(URL url) {
+		this.url = url;
+	}
+
+	public String getIdentity() {
+		return url.toExternalForm();
+	}
+
+	public long getLastModified() {
+		try {
+			return url.openConnection().getLastModified();
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	public InputStream openStream() throws IOException {
+		return url.openStream();
+	}
+
+	public URL getUrl() {
+		return url;
+	}
+
+	/**
+	 * Obtains the resource of the given URL, backed by a file if the URL points to the file system.
+	 * 
+	 * @param url URL of the resource.
+	 * @return Resource of the URL.
+	 */
+	public static Resource forUrl(URL url) {
+		File file = toFile(url);
+		if (file == null) {
+			return new UrlResource(url);
+		}
+		return new FileResource(file);
+	}
+
+	/**
+	 * @param url URL to convert.
+	 * @return File pointed by the URL or null if it does not point to the file system.
+	 */
+	public static File toFile(URL url) {
+		if (!"file".equals(url.getProtocol())) {
+			return null;
+		}
+		try {
+			return new File(url.toURI());
+		} catch (URISyntaxException e) {
+			return new File(url.getPath());
+		} catch (IllegalArgumentException e) {
+			return new File(url.getPath());
+		}
+	}
+}
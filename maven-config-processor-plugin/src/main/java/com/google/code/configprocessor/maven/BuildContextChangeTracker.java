@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.maven;
+
+import java.io.*;
+
+import org.sonatype.plexus.build.incremental.*;
+
+import com.google.code.configprocessor.io.*;
+
+/**
+ * Tracks changes through the build context of the running build, which reports the changes of the
+ * workspace when the build is run by an IDE.
+ */
+public class BuildContextChangeTracker implements ChangeTracker {
+
+	private BuildContext buildContext;
+
+	public BuildContextChangeTracker(BuildContext buildContext) {
+		this.buildContext = buildContext;
+	}
+
+	public boolean isIncremental() {
+		return buildContext.isIncremental();
+	}
+
+	public boolean hasDelta(File file) {
+		return buildContext.hasDelta(file);
+	}
+
+	public void refresh(File file) {
+		buildContext.refresh(file);
+	}
+}
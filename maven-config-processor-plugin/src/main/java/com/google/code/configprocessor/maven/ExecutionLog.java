@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.maven;
+
+import com.google.code.configprocessor.log.*;
+
+/**
+ * Log of objects shared by every execution of the plugin in a session. Each message goes to the log of
+ * the execution running on the current thread, so parallel builds do not mix the output of their
+ * modules. Threads started by an execution, e.g. pipeline and prefetch workers, log to that execution too.
+ */
+public class ExecutionLog implements LogAdapter {
+
+	private LogAdapter fallback;
+	private InheritableThreadLocal<LogAdapter> current;
+
+	/**
+	 * @param fallback Log used by threads not running an execution.
+	 */
+	public ExecutionLog(LogAdapter fallback) {
+		this.fallback = fallback;
+		this.current = new InheritableThreadLocal<LogAdapter>();
+	}
+
+	/**
+	 * Routes messages of the current thread to the log of the execution it starts running.
+	 * 
+	 * @param log Log of the execution.
+	 */
+	public void enter(LogAdapter log) {
+		current.set(log);
+	}
+
+	/**
+	 * Stops routing messages of the current thread to the log of the execution it was running.
+	 */
+	public void leave() {
+		current.remove();
+	}
+
+	protected LogAdapter getLog() {
+		LogAdapter log = current.get();
+		return log == null ? fallback : log;
+	}
+
+	public void debug(String msg) {
+		getLog().debug(msg);
+	}
+
+	public void error(String msg, Throwable t) {
+		getLog().error(msg, t);
+	}
+
+	public void info(String msg) {
+		getLog().info(msg);
+	}
+
+	public void warn(String msg) {
+		getLog().warn(msg);
+	}
+
+	public void verbose(String msg) {
+		getLog().verbose(msg);
+	}
+
+}
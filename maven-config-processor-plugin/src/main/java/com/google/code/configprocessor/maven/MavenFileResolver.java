@@ -23,38 +23,60 @@ import org.apache.maven.artifact.repository.*;
 import org.apache.maven.artifact.resolver.*;
 import org.apache.maven.project.*;
 import org.apache.maven.shared.io.location.*;
+import org.apache.maven.shared.io.logging.*;
 
 import com.google.code.configprocessor.io.*;
 import com.google.code.configprocessor.log.*;
 
+/**
+ * Resolves files like Maven resources: relative to the project, in the classpath, as artifacts or as URLs.
+ * Each lookup uses its own locator, so the resolver may be used by several threads at the same time.
+ */
 public class MavenFileResolver implements FileResolver {
 
-	private Locator locator;
+	private List<LocatorStrategy> strategies;
 	private LogAdapter logAdapter;
 	
 	public MavenFileResolver(MavenProject mavenProject, ArtifactFactory artifactFactory, ArtifactResolver artifactResolver, ArtifactRepository localRepository, List<ArtifactRepository> remoteRepositories, LogAdapter logAdapter) {
 		this.logAdapter = logAdapter;
-		locator = new Locator();
-		List<LocatorStrategy> strategies = new ArrayList<LocatorStrategy>();
+		strategies = new ArrayList<LocatorStrategy>();
 		strategies.add(new RelativeFileLocatorStrategy(mavenProject));
-		strategies.add(new ClasspathResourceLocatorStrategy());
+		strategies.add(new ClasspathLocatorStrategy());
 		strategies.add(new ArtifactLocatorStrategy(artifactFactory, artifactResolver, localRepository, remoteRepositories));
-		strategies.add(new URLLocatorStrategy());
-		locator.setStrategies(strategies);
+		strategies.add(new UrlLocatorStrategy());
 	}
 
 	public File resolve(String name) throws IOException {
-		Location location = locator.resolve(name);
+		MessageHolder messageHolder = new DefaultMessageHolder();
+		return getFile(name, locate(name, messageHolder), messageHolder);
+	}
+
+	public Resource getResource(String name) throws IOException {
+		MessageHolder messageHolder = new DefaultMessageHolder();
+		Location location = locate(name, messageHolder);
+		if (location instanceof UrlResourceLocation) {
+			Resource resource = UrlResource.forUrl(((UrlResourceLocation) location).getUrl());
+			logAdapter.debug("Resolved [" + name + "] to resource [" + resource + "]");
+			return resource;
+		}
+		return new FileResource(getFile(name, location, messageHolder));
+	}
+
+	protected Location locate(String name, MessageHolder messageHolder) throws IOException {
+		Location location = new Locator(strategies, messageHolder).resolve(name);
 		if (location == null) {
-			throw new IOException("File not found [" + name + "]\n" + locator.getMessageHolder().render());
+			throw new IOException("File not found [" + name + "]\n" + messageHolder.render());
 		}
-		
+		return location;
+	}
+
+	protected File getFile(String name, Location location, MessageHolder messageHolder) throws IOException {
 		try {
 			File file = location.getFile();
 			logAdapter.debug("Resolved [" + name + "] to file [" + file + "]");
 			return file;
 		} catch (IOException e) {
-			throw new IOException("Failed to load file [" + name + "]\n" + locator.getMessageHolder().render());
+			throw new IOException("Failed to load file [" + name + "]\n" + messageHolder.render());
 		}
 	}
 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.maven;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.maven.execution.*;
+
+/**
+ * Holds objects that must live as long as the Maven session, e.g. caches shared by every execution
+ * of the plugin in a build. Contexts are discarded together with their session.
+ */
+public class SessionContext {
+
+	private static final Map<MavenSession, SessionContext> CONTEXTS = new WeakHashMap<MavenSession, SessionContext>();
+
+	private ConcurrentMap<String, Object> attributes;
+
+	protected SessionContext() {
+		attributes = new ConcurrentHashMap<String, Object>();
+	}
+
+	/**
+	 * Obtains the context of the given session, creating it on first use.
+	 * 
+	 * @param session Current Maven session.
+	 * @return Context of the session.
+	 */
+	public static SessionContext getInstance(MavenSession session) {
+		synchronized (CONTEXTS) {
+			SessionContext context = CONTEXTS.get(session);
+			if (context == null) {
+				context = new SessionContext();
+				CONTEXTS.put(session, context);
+			}
+			return context;
+		}
+	}
+
+	public Object getAttribute(String name) {
+		return attributes.get(name);
+	}
+
+	/**
+	 * Stores the given value unless there is already a value stored with the same name.
+	 * 
+	 * @param name Name of the attribute.
+	 * @param value Value to store.
+	 * @return The value stored in the context after the call.
+	 */
+	public Object putAttributeIfAbsent(String name, Object value) {
+		Object previous = attributes.putIfAbsent(name, value);
+		return previous == null ? value : previous;
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.maven;
+
+import java.net.*;
+
+import org.apache.maven.shared.io.location.*;
+import org.apache.maven.shared.io.logging.*;
+
+/**
+ * Locates resources given by URL.
+ */
+public class UrlLocatorStrategy implements LocatorStrategy {
+
+	public Location resolve(String locationSpecification, MessageHolder messageHolder) {
+		try {
+			URL url = new URL(locationSpecification);
+			return new UrlResourceLocation(url, locationSpecification);
+		} catch (MalformedURLException e) {
+			messageHolder.addMessage("Building URL from location: " + locationSpecification, e);
+			return null;
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.parsing;
+
+import java.util.*;
+
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Maps the elements of transformation rules onto {@link Action}s. Shared by the parsers of rule files and
+ * of inline rules, so both accept exactly the same elements.
+ */
+public class ActionMapper {
+
+	public static final String PROCESSOR = "processor";
+	public static final String NESTED_ACTIONS = "actions";
+	public static final String STRICT = "strict";
+
+	private static final String IGNORE_ROOT = "ignore-root";
+
+	/**
+	 * @param element Name of the element.
+	 * @return True if the element declares an action.
+	 */
+	public boolean isAction(String element) {
+		return "add".equals(element) || "modify".equals(element) || "remove".equals(element) || "comment".equals(element) || "uncomment".equals(element);
+	}
+
+	/**
+	 * @param element Name of the element declaring the action.
+	 * @return New action for the element or null if the element does not declare an action.
+	 */
+	public AbstractAction newAction(String element) {
+		if ("add".equals(element)) {
+			return new AddAction();
+		} else if ("modify".equals(element)) {
+			return new ModifyAction();
+		} else if ("remove".equals(element)) {
+			return new RemoveAction();
+		} else if ("comment".equals(element)) {
+			return new CommentAction();
+		} else if ("uncomment".equals(element)) {
+			return new UncommentAction();
+		}
+		return null;
+	}
+
+	/**
+	 * Sets a property of an action given by a child element. Unknown children of <code>add</code> are
+	 * ignored, as they have always been.
+	 * 
+	 * @param action Action to configure.
+	 * @param property Name of the child element.
+	 * @param value Text of the child element.
+	 * @param attributes Attributes of the child element.
+	 * @return False if the action has no such property.
+	 */
+	public boolean setProperty(AbstractAction action, String property, String value, Map<String, String> attributes) {
+		if ("name".equals(property)) {
+			action.setName(value);
+		} else if ("value".equals(property)) {
+			action.setValue(value);
+		} else if (STRICT.equals(property)) {
+			action.setStrict(Boolean.valueOf(value));
+		} else if (action instanceof AddAction) {
+			setAddProperty((AddAction) action, property, value, attributes);
+		} else if (action instanceof ModifyAction) {
+			return setModifyProperty((ModifyAction) action, property, value);
+		} else if (action instanceof RemoveAction && "nodeSetPolicy".equals(property)) {
+			((RemoveAction) action).setNodeSetPolicy(value);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	protected void setAddProperty(AddAction action, String property, String value, Map<String, String> attributes) {
+		if ("first".equals(property)) {
+			action.setFirst(true);
+		} else if ("last".equals(property)) {
+			action.setLast(true);
+		} else if ("after".equals(property)) {
+			action.setAfter(value);
+		} else if ("before".equals(property)) {
+			action.setBefore(value);
+		} else if ("inside".equals(property)) {
+			action.setInside(value);
+		} else if ("file".equals(property)) {
+			if (!attributes.isEmpty()) {
+				action.setIgnoreRoot(Boolean.valueOf(attributes.get(IGNORE_ROOT)));
+			}
+			action.setFile(value);
+		}
+	}
+
+	protected boolean setModifyProperty(ModifyAction action, String property, String value) {
+		if ("nodeSetPolicy".equals(property)) {
+			action.setNodeSetPolicy(value);
+		} else if ("find".equals(property)) {
+			action.setFind(value);
+		} else if ("replace".equals(property)) {
+			action.setReplace(value);
+		} else if ("flags".equals(property)) {
+			action.setFlags(value);
+		} else {
+			return false;
+		}
+		return true;
+	}
+}
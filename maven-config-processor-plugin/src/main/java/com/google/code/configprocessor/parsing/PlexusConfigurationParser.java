@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.parsing;
+
+import java.util.*;
+
+import org.codehaus.plexus.configuration.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Converts inline <code>rules</code> of a transformation, already parsed by Maven, into actions without
+ * writing them back to XML.
+ */
+public class PlexusConfigurationParser {
+
+	private static final int IDENTIFIER_MAX_WIDTH = 100;
+
+	private ActionMapper mapper;
+
+	public PlexusConfigurationParser() {
+		mapper = new ActionMapper();
+	}
+
+	public NestedAction parse(PlexusConfiguration rules) throws ParsingException {
+		if (rules == null) {
+			throw new NullPointerException("Rules are null");
+		}
+		return parseNestedAction(rules, rules.getName());
+	}
+
+	/**
+	 * Builds a short description of the rules to identify them in log and error messages.
+	 * 
+	 * @param rules Rules to describe.
+	 * @return Description of the rules, e.g. <code>modify [/root/a], remove [/root/b]</code>.
+	 */
+	public String getIdentifier(PlexusConfiguration rules) {
+		StringBuilder sb = new StringBuilder();
+		for (PlexusConfiguration child : rules.getChildren()) {
+			if (sb.length() > 0) {
+				sb.append(", ");
+			}
+			sb.append(child.getName());
+			PlexusConfiguration name = child.getChild("name", false);
+			if (name != null && name.getValue(null) != null) {
+				sb.append(" [").append(name.getValue(null).trim()).append("]");
+			}
+			if (sb.length() > IDENTIFIER_MAX_WIDTH) {
+				sb.setLength(IDENTIFIER_MAX_WIDTH - 3);
+				sb.append("...");
+				break;
+			}
+		}
+		return sb.toString();
+	}
+
+	protected NestedAction parseNestedAction(PlexusConfiguration configuration, String path) throws ParsingException {
+		NestedAction nestedAction = new NestedAction();
+		for (PlexusConfiguration child : configuration.getChildren()) {
+			String name = child.getName();
+			if (mapper.isAction(name)) {
+				nestedAction.addAction(parseAction(child, path + "/" + name));
+			} else if (ActionMapper.STRICT.equals(name)) {
+				nestedAction.setStrict(Boolean.valueOf(getValue(child)));
+			} else {
+				throw new ParsingException("Unknown element [" + name + "] in [" + path + "]");
+			}
+		}
+		return nestedAction;
+	}
+
+	protected Action parseAction(PlexusConfiguration configuration, String path) throws ParsingException {
+		AbstractAction action = mapper.newAction(configuration.getName());
+		for (PlexusConfiguration child : configuration.getChildren()) {
+			String name = child.getName();
+			if (action instanceof AddAction && ActionMapper.NESTED_ACTIONS.equals(name)) {
+				((AddAction) action).setNestedAction(parseNestedAction(child, path + "/" + name));
+			} else if (child.getChildCount() > 0) {
+				throw new ParsingException("Element [" + path + "/" + name + "] cannot have children");
+			} else if (!mapper.setProperty(action, name, getValue(child), getAttributes(child))) {
+				throw new ParsingException("Unknown element [" + name + "] in [" + path + "]");
+			}
+		}
+		return action;
+	}
+
+	protected String getValue(PlexusConfiguration configuration) {
+		String value = configuration.getValue(null);
+		return value == null ? "" : value;
+	}
+
+	protected Map<String, String> getAttributes(PlexusConfiguration configuration) {
+		String[] names = configuration.getAttributeNames();
+		if (names.length == 0) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> attributes = new HashMap<String, String>();
+		for (String name : names) {
+			attributes.put(name, configuration.getAttribute(name, null));
+		}
+		return attributes;
+	}
+}
@@ -17,6 +17,10 @@ package com.google.code.configprocessor.parsing;
 
 import java.io.*;
 import java.nio.charset.*;
+import java.util.*;
+
+import org.xmlpull.mxp1.*;
+import org.xmlpull.v1.*;
 
 import com.google.code.configprocessor.*;
 import com.google.code.configprocessor.processing.*;
@@ -25,6 +29,12 @@ import com.thoughtworks.xstream.converters.reflection.*;
 
 public class ProcessingConfigurationParser {
 
+	private ActionMapper mapper;
+
+	public ProcessingConfigurationParser() {
+		mapper = new ActionMapper();
+	}
+
 	public NestedAction parse(InputStream is, Charset charset) throws ParsingException {
 		if (is == null) {
 			throw new NullPointerException("InputStream is null");
@@ -33,14 +43,80 @@ public class ProcessingConfigurationParser {
 	}
 
 	public NestedAction parse(Reader is) throws ParsingException {
-		XStream xstream = getXStream();
+		XmlPullParser parser = new MXParser();
 		try {
-			return (NestedAction) xstream.fromXML(is);
-		} catch (Exception e) {
+			parser.setInput(is);
+			parser.nextTag();
+			if (!ActionMapper.PROCESSOR.equals(parser.getName())) {
+				throw newParsingException(parser, "Expected root element [" + ActionMapper.PROCESSOR + "] but found [" + parser.getName() + "]");
+			}
+			return parseNestedAction(parser);
+		} catch (XmlPullParserException e) {
+			throw new ParsingException(e);
+		} catch (IOException e) {
 			throw new ParsingException(e);
 		}
 	}
 
+	/**
+	 * Reads the actions nested in the current element.
+	 */
+	protected NestedAction parseNestedAction(XmlPullParser parser) throws ParsingException, XmlPullParserException, IOException {
+		String element = parser.getName();
+		NestedAction nestedAction = new NestedAction();
+		while (parser.nextTag() == XmlPullParser.START_TAG) {
+			String name = parser.getName();
+			if (mapper.isAction(name)) {
+				nestedAction.addAction(parseAction(parser));
+			} else if (ActionMapper.STRICT.equals(name)) {
+				nestedAction.setStrict(Boolean.valueOf(parser.nextText()));
+			} else {
+				throw newParsingException(parser, "Unknown element [" + name + "] in [" + element + "]");
+			}
+		}
+		return nestedAction;
+	}
+
+	protected Action parseAction(XmlPullParser parser) throws ParsingException, XmlPullParserException, IOException {
+		String element = parser.getName();
+		AbstractAction action = mapper.newAction(element);
+		while (parser.nextTag() == XmlPullParser.START_TAG) {
+			String name = parser.getName();
+			if (action instanceof AddAction && ActionMapper.NESTED_ACTIONS.equals(name)) {
+				((AddAction) action).setNestedAction(parseNestedAction(parser));
+				continue;
+			}
+			Map<String, String> attributes = getAttributes(parser);
+			int line = parser.getLineNumber();
+			int column = parser.getColumnNumber();
+			if (!mapper.setProperty(action, name, parser.nextText(), attributes)) {
+				throw new ParsingException("Unknown element [" + name + "] in [" + element + "] at line [" + line + "], column [" + column + "]");
+			}
+		}
+		return action;
+	}
+
+	protected Map<String, String> getAttributes(XmlPullParser parser) {
+		if (parser.getAttributeCount() == 0) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> attributes = new HashMap<String, String>();
+		for (int i = 0; i < parser.getAttributeCount(); i++) {
+			attributes.put(parser.getAttributeName(i), parser.getAttributeValue(i));
+		}
+		return attributes;
+	}
+
+	protected ParsingException newParsingException(XmlPullParser parser, String message) {
+		return new ParsingException(message + " at line [" + parser.getLineNumber() + "], column [" + parser.getColumnNumber() + "]");
+	}
+
+	/**
+	 * Rule files are read by the pull parser, XStream remains the reference mapping of the rule format, used
+	 * to generate examples and to check the pull parser against.
+	 *
+	 * @return XStream able to read and write rule files.
+	 */
 	protected XStream getXStream() {
 		XStream xstream = new XStream(new PureJavaReflectionProvider());
 
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.pipeline;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.plan.*;
+
+/**
+ * State of one execution of transformations: the file resolver, prefetching files if enabled, the
+ * archives read and written and the outputs already written. It is passed to every step of the execution
+ * instead of being kept by the processor, so executions do not share it.
+ */
+public class ExecutionContext {
+
+	private FileResolver fileResolver;
+	private PrefetchingFileResolver prefetcher;
+	private ArchiveWriter archiveWriter;
+	private ChangeDetector changeDetector;
+	private Map<File, RawZipFile> sourceArchives;
+	private Map<File, ArchiveWriter> archiveWriters;
+
+	/**
+	 * @param fileResolver Resolver of config, input and included files, the prefetcher if there is one.
+	 * @param prefetcher Resolver prefetching files, null if prefetching is disabled.
+	 * @param archiveWriter Writer of the archive the outputs are written to, null to write files.
+	 * @param changeDetector Detector of the transformations and inputs to process.
+	 */
+	public ExecutionContext(FileResolver fileResolver, PrefetchingFileResolver prefetcher, ArchiveWriter archiveWriter, ChangeDetector changeDetector) {
+		this.fileResolver = fileResolver;
+		this.prefetcher = prefetcher;
+		this.archiveWriter = archiveWriter;
+		this.changeDetector = changeDetector;
+		this.sourceArchives = new LinkedHashMap<File, RawZipFile>();
+		this.archiveWriters = new LinkedHashMap<File, ArchiveWriter>();
+	}
+
+	public FileResolver getFileResolver() {
+		return fileResolver;
+	}
+
+	/**
+	 * @return Resolver prefetching files, null if prefetching is disabled.
+	 */
+	public PrefetchingFileResolver getPrefetcher() {
+		return prefetcher;
+	}
+
+	/**
+	 * @return Writer of the archive the outputs are written to, null if outputs are written to files.
+	 */
+	public ArchiveWriter getArchiveWriter() {
+		return archiveWriter;
+	}
+
+	public ChangeDetector getChangeDetector() {
+		return changeDetector;
+	}
+
+	/**
+	 * @param file Local input file.
+	 * @return Prefetched content of the file if there is one, otherwise the file.
+	 */
+	public Resource getResource(File file) {
+		if (prefetcher != null) {
+			Resource resource = prefetcher.getPrefetched(file.getPath());
+			if (resource != null) {
+				return resource;
+			}
+		}
+		return new FileResource(file);
+	}
+
+	/**
+	 * Discards the prefetched content of a file about to be written.
+	 *
+	 * @param file File to be written.
+	 */
+	public void evict(File file) {
+		if (prefetcher != null) {
+			prefetcher.evict(file);
+		}
+	}
+
+	/**
+	 * @param archive Archive whose entries are transformed.
+	 * @return Reader of the archive, opened once per execution.
+	 * @throws IOException If the archive cannot be read.
+	 */
+	public RawZipFile getSourceArchive(File archive) throws IOException {
+		RawZipFile source = sourceArchives.get(archive);
+		if (source == null) {
+			source = new RawZipFile(archive);
+			sourceArchives.put(archive, source);
+		}
+		return source;
+	}
+
+	/**
+	 * @param archive Archive whose entries are transformed.
+	 * @return Writer of the transformed archive, null if none has been created yet.
+	 */
+	public ArchiveWriter getArchiveWriter(File archive) {
+		return archiveWriters.get(archive);
+	}
+
+	/**
+	 * @param archive Archive whose entries are transformed.
+	 * @param writer Writer of the transformed archive.
+	 */
+	public void putArchiveWriter(File archive, ArchiveWriter writer) {
+		archiveWriters.put(archive, writer);
+	}
+
+	/**
+	 * Finishes the execution: closes the archives read and discards the prefetched content. Can be called
+	 * more than once.
+	 *
+	 * @param write If the transformed archives and the output archive are written, otherwise they are discarded.
+	 * @param log
+	 * @throws IOException If an archive cannot be written.
+	 */
+	public void finish(boolean write, LogAdapter log) throws IOException {
+		try {
+			for (RawZipFile source : sourceArchives.values()) {
+				close(source, log);
+			}
+			sourceArchives.clear();
+			if (prefetcher != null) {
+				prefetcher.clear();
+			}
+			if (write) {
+				for (ArchiveWriter writer : archiveWriters.values()) {
+					log.info("Writing archive [" + writer.getArchive() + "]");
+					writer.close();
+				}
+				if (archiveWriter != null) {
+					log.info("Writing archive [" + archiveWriter.getArchive() + "]");
+					archiveWriter.close();
+				}
+			}
+		} finally {
+			archiveWriters.clear();
+			archiveWriter = null;
+		}
+	}
+}
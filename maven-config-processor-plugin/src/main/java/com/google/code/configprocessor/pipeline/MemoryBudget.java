@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.pipeline;
+
+/**
+ * Amount of memory shared by concurrent jobs. Jobs acquire their estimated memory before starting and
+ * release it once completed, so jobs only run together while their estimates fit. A job estimated to
+ * need more than the whole budget acquires all of it and runs alone.
+ */
+public class MemoryBudget {
+
+	private long capacity;
+	private long available;
+
+	/**
+	 * @param capacity Memory available to jobs, in bytes.
+	 */
+	public MemoryBudget(long capacity) {
+		this.capacity = Math.max(1, capacity);
+		this.available = this.capacity;
+	}
+
+	/**
+	 * Waits until the memory is available and reserves it.
+	 * 
+	 * @param amount Estimated memory of the job, in bytes.
+	 * @return Memory reserved, to be released once the job completes.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public synchronized long acquire(long amount) throws InterruptedException {
+		long granted = Math.max(0, Math.min(amount, capacity));
+		while (available < granted) {
+			wait();
+		}
+		available -= granted;
+		return granted;
+	}
+
+	/**
+	 * @param granted Memory reserved by {@link #acquire(long)}.
+	 */
+	public synchronized void release(long granted) {
+		available += granted;
+		notifyAll();
+	}
+
+	/**
+	 * @return Memory available to jobs, in bytes.
+	 */
+	public long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return Memory not reserved by running jobs, in bytes.
+	 */
+	public synchronized long getAvailable() {
+		return available;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.pipeline;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.google.code.configprocessor.log.*;
+
+/**
+ * Runs jobs through three stages: read, transform and write. Reads and writes run in I/O threads,
+ * transformations in processing threads, so processing threads do not block on the file system. Stages
+ * are connected by bounded queues: a stage waits while the next one is full, and submitting a job waits
+ * while the read queue is full. If a memory budget is given, submitting a job also waits until its
+ * estimated memory fits in the budget.
+ * <p>
+ * After the first failure, jobs not started yet are discarded.
+ */
+public class Pipeline {
+
+	private static final String[] STAGES = { "read", "transform", "write" };
+	private static final int READ = 0;
+	private static final int TRANSFORM = 1;
+	private static final int WRITE = 2;
+
+	private LogAdapter log;
+	private MemoryBudget budget;
+	private List<BlockingQueue<Admission>> queues;
+	private AtomicIntegerArray maxDepths;
+	private List<Thread> threads;
+	private int pending;
+	private Exception failure;
+
+	/**
+	 * @param ioThreads Number of threads of each I/O stage, read and write.
+	 * @param processingThreads Number of threads of the transform stage.
+	 * @param queueCapacity Number of jobs each stage queues at most.
+	 * @param log
+	 */
+	public Pipeline(int ioThreads, int processingThreads, int queueCapacity, LogAdapter log) {
+		this(ioThreads, processingThreads, queueCapacity, null, log);
+	}
+
+	/**
+	 * @param ioThreads Number of threads of each I/O stage, read and write.
+	 * @param processingThreads Number of threads of the transform stage.
+	 * @param queueCapacity Number of jobs each stage queues at most.
+	 * @param budget Memory shared by the jobs in progress, null for no limit.
+	 * @param log
+	 */
+	public Pipeline(int ioThreads, int processingThreads, int queueCapacity, MemoryBudget budget, LogAdapter log) {
+		this.log = log;
+		this.budget = budget;
+		this.queues = new ArrayList<BlockingQueue<Admission>>();
+		this.maxDepths = new AtomicIntegerArray(STAGES.length);
+		this.threads = new ArrayList<Thread>();
+		for (int stage = 0; stage < STAGES.length; stage++) {
+			queues.add(new ArrayBlockingQueue<Admission>(Math.max(1, queueCapacity)));
+			int count = Math.max(1, stage == TRANSFORM ? processingThreads : ioThreads);
+			for (int i = 0; i < count; i++) {
+				final int current = stage;
+				Thread thread = new Thread(new Runnable() {
+					public void run() {
+						work(current);
+					}
+				}, "config-processor-" + STAGES[stage] + "-" + (i + 1));
+				thread.setDaemon(true);
+				threads.add(thread);
+			}
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+	}
+
+	/**
+	 * Queues a job, waiting until its memory is available and while the read stage is full.
+	 * 
+	 * @param job Job to run.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	public void submit(Job job) throws InterruptedException {
+		if (isFailed()) {
+			return;
+		}
+		long granted = budget == null ? 0 : budget.acquire(job.getMemoryEstimate());
+		synchronized (this) {
+			pending++;
+		}
+		try {
+			enqueue(READ, new Admission(job, granted));
+		} catch (InterruptedException e) {
+			complete(granted);
+			throw e;
+		}
+	}
+
+	/**
+	 * Waits for every submitted job to complete.
+	 * 
+	 * @throws Exception First failure of a job.
+	 */
+	public void await() throws Exception {
+		synchronized (this) {
+			while (pending > 0) {
+				wait();
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+	}
+
+	/**
+	 * Stops the threads of the pipeline, discarding jobs not completed yet.
+	 */
+	public void shutdown() {
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+		StringBuilder depths = new StringBuilder();
+		for (int stage = 0; stage < STAGES.length; stage++) {
+			depths.append(stage == 0 ? "" : ", ").append(STAGES[stage]).append(" [").append(maxDepths.get(stage)).append("]");
+		}
+		log.debug("Maximum pipeline queue depths: " + depths);
+	}
+
+	/**
+	 * @param stage Stage of the pipeline: 0 for read, 1 for transform, 2 for write.
+	 * @return Maximum number of jobs waiting for the stage so far.
+	 */
+	public int getMaxDepth(int stage) {
+		return maxDepths.get(stage);
+	}
+
+	protected void enqueue(int stage, Admission admission) throws InterruptedException {
+		BlockingQueue<Admission> queue = queues.get(stage);
+		queue.put(admission);
+		int depth = queue.size();
+		int max;
+		while (depth > (max = maxDepths.get(stage)) && !maxDepths.compareAndSet(stage, max, depth)) {
+			// Retry
+		}
+	}
+
+	protected void work(int stage) {
+		try {
+			while (true) {
+				Admission admission = queues.get(stage).take();
+				Job job = admission.job;
+				boolean forwarded = false;
+				try {
+					if (!isFailed()) {
+						if (stage == READ) {
+							job.read();
+						} else if (stage == TRANSFORM) {
+							job.transform();
+						} else {
+							job.write();
+						}
+						if (stage < WRITE) {
+							enqueue(stage + 1, admission);
+							forwarded = true;
+						}
+					}
+				} catch (InterruptedException e) {
+					throw e;
+				} catch (Exception e) {
+					fail(e);
+				} finally {
+					if (!forwarded) {
+						complete(admission.granted);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			// Shut down
+		}
+	}
+
+	protected synchronized boolean isFailed() {
+		return failure != null;
+	}
+
+	protected synchronized void fail(Exception e) {
+		if (failure == null) {
+			failure = e;
+		}
+	}
+
+	protected void complete(long granted) {
+		if (budget != null) {
+			budget.release(granted);
+		}
+		synchronized (this) {
+			pending--;
+			if (pending == 0) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Work done for an item in each stage of the pipeline. Each stage is run by a different thread, after
+	 * the previous stage completed.
+	 */
+	public interface Job {
+
+		/**
+		 * @return Memory needed by the job from its read stage until its write stage completes, in bytes.
+		 */
+		long getMemoryEstimate();
+
+		void read() throws Exception;
+
+		void transform() throws Exception;
+
+		void write() throws Exception;
+	}
+
+	protected static class Admission {
+
+		private Job job;
+		private long granted;
+
+		public Admission(Job job, long granted) {
+			this.job = job;
+			this.granted = granted;
+		}
+	}
+}
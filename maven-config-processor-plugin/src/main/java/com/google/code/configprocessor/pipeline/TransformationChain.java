@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.pipeline;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.parsing.*;
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Applies the rules of several transformations to an input, each one to the result of the previous one in
+ * memory. The input is read only once. Each transformation reads the result of the previous one as text,
+ * like it would from its output file, so the result is the same as executing them one after the other: an
+ * XML result is parsed again, putting added elements in the namespace in scope and merging adjacent text.
+ */
+public class TransformationChain {
+
+	private String encoding;
+	private LogAdapter log;
+
+	public TransformationChain(String encoding, LogAdapter log) {
+		this.encoding = encoding;
+		this.log = log;
+	}
+
+	/**
+	 * @param processors Processor of each transformation, for the type of the input file.
+	 * @param inputName Symbolic name of the input file to read from.
+	 * @param input Input resource to read from.
+	 * @param outputs Output file of each transformation, null if the result of the transformation is not
+	 *        to be written. The last one is not written.
+	 * @param configNames Symbolic name of the file containing rules of each transformation.
+	 * @param actions Action of each transformation.
+	 * @param intermediates Receives the results of the transformations other than the last one to be written.
+	 * @return Processed content of the last transformation.
+	 * @throws ConfigProcessorException If processing cannot be performed.
+	 */
+	public byte[] transform(List<ActionProcessor> processors, String inputName, Resource input, List<File> outputs, List<String> configNames, List<Action> actions, Output intermediates) throws ConfigProcessorException {
+		File output = outputs.get(outputs.size() - 1);
+		String configName = configNames.size() == 1 ? configNames.get(0) : configNames.toString();
+		log.info("Processing file [" + inputName + "] using config [" + configName + "], outputing to [" + output + "]");
+
+		InputStream inputStream = null;
+		ByteArrayOutputStream outputStream = null;
+
+		InputStreamReader inputStreamReader = null;
+		OutputStreamWriter outputStreamWriter = null;
+		int current = 0;
+		try {
+			inputStream = input.openStream();
+			outputStream = new ByteArrayOutputStream();
+
+			inputStreamReader = new InputStreamReader(inputStream, encoding);
+			outputStreamWriter = new OutputStreamWriter(outputStream, encoding);
+
+			if (processors.size() == 1) {
+				processors.get(0).process(inputStreamReader, outputStreamWriter, actions.get(0));
+			} else {
+				Reader reader = inputStreamReader;
+				for (; current < processors.size() - 1; current++) {
+					StringWriter writer = new StringWriter();
+					processors.get(current).process(reader, writer, actions.get(current));
+					if (outputs.get(current) != null) {
+						intermediates.write(outputs.get(current), writer.toString().getBytes(encoding));
+					}
+					reader = new StringReader(writer.toString());
+				}
+				processors.get(current).process(reader, outputStreamWriter, actions.get(current));
+			}
+		} catch (ParsingException e) {
+			throw new ConfigProcessorException("Error processing file [" + inputName + "] using configuration [" + configNames.get(Math.min(current, configNames.size() - 1)) + "]", e);
+		} catch (IOException e) {
+			throw new ConfigProcessorException("Error reading/writing files. Input is [" + inputName + "], configuration is [" + configName + "]", e);
+		} finally {
+			close(inputStreamReader, log);
+		}
+		close(outputStreamWriter, log);
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Destination of the results of the transformations of a chain.
+	 */
+	public interface Output {
+
+		/**
+		 * @param output Output file of the transformation.
+		 * @param content Result of the transformation.
+		 */
+		void write(File output, byte[] content);
+	}
+}
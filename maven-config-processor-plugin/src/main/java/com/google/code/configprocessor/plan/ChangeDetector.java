@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import java.io.*;
+import java.util.*;
+
+import com.google.code.configprocessor.expression.*;
+import com.google.code.configprocessor.io.*;
+
+/**
+ * Decides what an incremental build has to process, from the files changed since the previous build and
+ * the outputs already written by the current execution. Files that are not local, e.g. in an archive,
+ * are assumed not to change between incremental builds.
+ */
+public class ChangeDetector {
+
+	private ChangeTracker changeTracker;
+	private Collection<File> buildFiles;
+	private FileResolver fileResolver;
+	private InputScanner inputScanner;
+	private Set<File> writtenFiles;
+
+	/**
+	 * @param changeTracker Tracker of the files changed since the previous build, null to process everything.
+	 * @param buildFiles Files defining inline rules or values of expressions, e.g. the pom.
+	 * @param fileResolver Resolver of rule and included files.
+	 * @param inputScanner Scanner whose wildcard matches include the outputs written, null if there is none.
+	 */
+	public ChangeDetector(ChangeTracker changeTracker, Collection<File> buildFiles, FileResolver fileResolver, InputScanner inputScanner) {
+		this.changeTracker = changeTracker;
+		this.buildFiles = buildFiles == null ? Collections.<File>emptyList() : buildFiles;
+		this.fileResolver = fileResolver;
+		this.inputScanner = inputScanner;
+		this.writtenFiles = new HashSet<File>();
+	}
+
+	/**
+	 * Checks if the rules of a transformation may have changed since the previous build: the build is not
+	 * incremental, a build file changed, which may change inline rules or the values of their expressions,
+	 * or the rule file or an included file changed.
+	 *
+	 * @param resolver Expression resolver of the transformation.
+	 * @param config Name of the rule file, null for inline rules.
+	 * @param plan Compiled rules of the transformation.
+	 * @return If every input of the transformation has to be processed.
+	 */
+	public boolean isRulesChanged(ExpressionResolver resolver, String config, CompiledPlan plan) {
+		if (changeTracker == null || !changeTracker.isIncremental()) {
+			return true;
+		}
+		for (File file : buildFiles) {
+			if (changeTracker.hasDelta(file)) {
+				return true;
+			}
+		}
+		if (config != null && isChanged(config)) {
+			return true;
+		}
+		for (String file : plan.getIncludes()) {
+			if (isChanged(resolver.resolve(file, false)) || isChanged(resolver.resolve(file, true))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param input Input file, null if the input is not a local file.
+	 * @param output Output file of the input.
+	 * @return If the input has to be processed: the build is not incremental, the input changed since the
+	 *         previous build or the output does not exist.
+	 */
+	public boolean isInputChanged(File input, File output) {
+		if (changeTracker == null || !changeTracker.isIncremental() || !output.exists()) {
+			return true;
+		}
+		return input != null && isChanged(input);
+	}
+
+	protected boolean isChanged(String name) {
+		if (name == null) {
+			return false;
+		}
+		try {
+			File file = fileResolver.getResource(name).getFile();
+			return file != null && isChanged(file);
+		} catch (IOException e) {
+			// Reported when the file is used
+			return true;
+		}
+	}
+
+	/**
+	 * @return If the file changed since the previous build or has been written by this execution.
+	 */
+	protected boolean isChanged(File file) {
+		synchronized (writtenFiles) {
+			return writtenFiles.contains(file.getAbsoluteFile()) || changeTracker.hasDelta(file);
+		}
+	}
+
+	/**
+	 * Records that an output has been written, so transformations reading it process it and the build
+	 * context is notified.
+	 *
+	 * @param output Output file written.
+	 */
+	public void written(File output) {
+		synchronized (writtenFiles) {
+			writtenFiles.add(output.getAbsoluteFile());
+			if (inputScanner != null) {
+				inputScanner.added(output);
+			}
+			if (changeTracker != null) {
+				changeTracker.refresh(output);
+			}
+		}
+	}
+}
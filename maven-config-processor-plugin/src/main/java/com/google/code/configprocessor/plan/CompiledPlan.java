@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Validated rules of a transformation, ready to be applied to inputs.
+ */
+public class CompiledPlan {
+
+	private NestedAction action;
+	private Set<String> placeholders;
+	private String sourceHash;
+	private ConcurrentMap<String, NestedAction> optimizedActions;
+	private volatile String digest;
+	private volatile Set<String> includes;
+
+	public CompiledPlan(NestedAction action, Set<String> placeholders, String sourceHash) {
+		this.action = action;
+		this.placeholders = Collections.unmodifiableSet(placeholders);
+		this.sourceHash = sourceHash;
+		this.optimizedActions = new ConcurrentHashMap<String, NestedAction>();
+	}
+
+	public NestedAction getAction() {
+		return action;
+	}
+
+	/**
+	 * @param type Type of the inputs the rules are applied to.
+	 * @return Rules optimized for the type, null if they have not been optimized yet.
+	 */
+	public NestedAction getOptimizedAction(String type) {
+		return optimizedActions.get(type);
+	}
+
+	/**
+	 * @param type Type of the inputs the rules are applied to.
+	 * @param optimizedAction Rules optimized for the type.
+	 */
+	public void setOptimizedAction(String type, NestedAction optimizedAction) {
+		optimizedActions.put(type, optimizedAction);
+	}
+
+	/**
+	 * @return Hash of the content of the rules, the same for plans compiled from equivalent rules.
+	 */
+	public String getDigest() {
+		if (digest == null) {
+			digest = new PlanSerializer().digest(this);
+		}
+		return digest;
+	}
+
+	/**
+	 * @return Names of the placeholders (<code>${name}</code>) referenced by the rules.
+	 */
+	public Set<String> getPlaceholders() {
+		return placeholders;
+	}
+
+	/**
+	 * @return Names of the files included by the rules, with their expressions not resolved.
+	 */
+	public Set<String> getIncludes() {
+		if (includes == null) {
+			Set<String> files = new LinkedHashSet<String>();
+			collectIncludes(action, files);
+			includes = Collections.unmodifiableSet(files);
+		}
+		return includes;
+	}
+
+	/**
+	 * @return Hash of the source the plan has been compiled from, null if it was not compiled from a file.
+	 */
+	public String getSourceHash() {
+		return sourceHash;
+	}
+
+	protected void collectIncludes(Action action, Set<String> files) {
+		if (action instanceof AddAction) {
+			AddAction addAction = (AddAction) action;
+			if (addAction.getFile() != null) {
+				files.add(addAction.getFile());
+			}
+			if (addAction.getNestedAction() != null) {
+				collectIncludes(addAction.getNestedAction(), files);
+			}
+		} else if (action instanceof NestedAction) {
+			for (Action nestedAction : ((NestedAction) action).getActions()) {
+				collectIncludes(nestedAction, files);
+			}
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+/**
+ * Scans the raw bytes of an input for the tokens derived by {@link PlanCompiler#getTokens}, so inputs
+ * that the rules cannot change are not parsed at all.
+ */
+public class InputPrefilter {
+
+	private static final String ASCII_SAMPLE = "azAZ09<&\\";
+
+	private byte[][] tokens;
+	private boolean[] ignoreCase;
+	private int[][] candidates;
+
+	protected InputPrefilter(byte[][] tokens, boolean[] ignoreCase) {
+		this.tokens = tokens;
+		this.ignoreCase = ignoreCase;
+		this.candidates = new int[256][];
+
+		List<List<Integer>> byFirstByte = new ArrayList<List<Integer>>(256);
+		for (int i = 0; i < 256; i++) {
+			byFirstByte.add(new ArrayList<Integer>());
+		}
+		for (int i = 0; i < tokens.length; i++) {
+			int first = tokens[i][0] & 0xFF;
+			byFirstByte.get(first).add(i);
+			if (ignoreCase[i] && first != (toOtherCase(tokens[i][0]) & 0xFF)) {
+				byFirstByte.get(toOtherCase(tokens[i][0]) & 0xFF).add(i);
+			}
+		}
+		for (int i = 0; i < 256; i++) {
+			List<Integer> indexes = byFirstByte.get(i);
+			if (!indexes.isEmpty()) {
+				candidates[i] = new int[indexes.size()];
+				for (int j = 0; j < indexes.size(); j++) {
+					candidates[i][j] = indexes.get(j);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param tokens Tokens mapped to whether they must be matched ignoring case, null if any input may be
+	 *        changed.
+	 * @param encoding Encoding of the inputs.
+	 * @return Prefilter for the tokens, null if inputs cannot be filtered, which is the case if the encoding
+	 *         does not encode ASCII characters as single bytes.
+	 * @throws UnsupportedEncodingException If the encoding is not supported.
+	 */
+	public static InputPrefilter create(Map<String, Boolean> tokens, String encoding) throws UnsupportedEncodingException {
+		if (tokens == null || !Arrays.equals(ASCII_SAMPLE.getBytes("US-ASCII"), ASCII_SAMPLE.getBytes(encoding))) {
+			return null;
+		}
+		byte[][] bytes = new byte[tokens.size()][];
+		boolean[] ignoreCase = new boolean[tokens.size()];
+		int i = 0;
+		for (Map.Entry<String, Boolean> token : tokens.entrySet()) {
+			bytes[i] = token.getKey().getBytes(encoding);
+			ignoreCase[i] = token.getValue().booleanValue();
+			i++;
+		}
+		return new InputPrefilter(bytes, ignoreCase);
+	}
+
+	/**
+	 * @param content Raw content of the input, its position is not changed.
+	 * @return If the input contains any of the tokens, which means the rules may change it.
+	 */
+	public boolean mayChange(ByteBuffer content) {
+		int limit = content.limit();
+		for (int position = content.position(); position < limit; position++) {
+			int[] indexes = candidates[content.get(position) & 0xFF];
+			if (indexes != null) {
+				for (int index : indexes) {
+					if (matches(content, position, limit, index)) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	protected boolean matches(ByteBuffer content, int position, int limit, int index) {
+		byte[] token = tokens[index];
+		if (position + token.length > limit) {
+			return false;
+		}
+		for (int i = 1; i < token.length; i++) {
+			byte b = content.get(position + i);
+			if (b != token[i] && !(ignoreCase[index] && b == toOtherCase(token[i]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	protected static byte toOtherCase(byte b) {
+		if (b >= 'a' && b <= 'z') {
+			return (byte) (b - 'a' + 'A');
+		} else if (b >= 'A' && b <= 'Z') {
+			return (byte) (b - 'A' + 'a');
+		}
+		return b;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.util.concurrent.*;
+
+import com.google.code.configprocessor.log.*;
+
+/**
+ * Keeps compiled plans of rule files in memory and, if a directory is given, on disk between builds.
+ * Plans are looked up by the hash of their source, so a modified rule file is compiled again.
+ */
+public class PlanCache {
+
+	private static final String PLAN_EXTENSION = ".plan";
+
+	private File directory;
+	private LogAdapter log;
+	private PlanSerializer serializer;
+	private ConcurrentMap<String, CompiledPlan> plans;
+
+	/**
+	 * @param directory Directory to store plans in, null to keep them only in memory.
+	 * @param log
+	 */
+	public PlanCache(File directory, LogAdapter log) {
+		this(directory, new ConcurrentHashMap<String, CompiledPlan>(), log);
+	}
+
+	/**
+	 * @param directory Directory to store plans in, null to keep them only in memory.
+	 * @param plans Plans kept in memory by source hash, may be shared by several caches.
+	 * @param log
+	 */
+	public PlanCache(File directory, ConcurrentMap<String, CompiledPlan> plans, LogAdapter log) {
+		this.directory = directory;
+		this.log = log;
+		this.serializer = new PlanSerializer();
+		this.plans = plans;
+	}
+
+	/**
+	 * @param identity Identity of the rule file.
+	 * @param sourceHash Hash of the current content of the rule file.
+	 * @return Plan compiled from the current content or null if there is none.
+	 */
+	public CompiledPlan get(String identity, String sourceHash) {
+		CompiledPlan plan = plans.get(sourceHash);
+		if (plan != null || directory == null) {
+			return plan;
+		}
+
+		File file = getFile(identity);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			InputStream is = new FileInputStream(file);
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream((int) file.length());
+				copy(is, baos);
+				plan = serializer.read(new ByteArrayInputStream(baos.toByteArray()), sourceHash);
+			} finally {
+				close(is, log);
+			}
+		} catch (IOException e) {
+			log.debug("Ignoring unreadable plan [" + file + "]: " + e.getMessage());
+			return null;
+		}
+		if (plan == null) {
+			log.debug("Plan [" + file + "] is outdated or corrupt, compiling [" + identity + "] again");
+			return null;
+		}
+		log.debug("Using compiled plan [" + file + "] for [" + identity + "]");
+		plans.putIfAbsent(sourceHash, plan);
+		return plan;
+	}
+
+	/**
+	 * Stores a plan compiled from a rule file. Failures to write it are only logged.
+	 * 
+	 * @param identity Identity of the rule file.
+	 * @param plan Plan to store.
+	 */
+	public void put(String identity, CompiledPlan plan) {
+		plans.put(plan.getSourceHash(), plan);
+		if (directory == null) {
+			return;
+		}
+
+		File file = getFile(identity);
+		File temp = null;
+		try {
+			forceMkdirs(directory);
+			temp = File.createTempFile(file.getName(), ".tmp", directory);
+			OutputStream os = new BufferedOutputStream(new FileOutputStream(temp));
+			try {
+				serializer.write(plan, os);
+			} finally {
+				close(os, log);
+			}
+			if (!temp.renameTo(file) && !(file.delete() && temp.renameTo(file))) {
+				throw new IOException("Cannot rename [" + temp + "] to [" + file + "]");
+			}
+			temp = null;
+		} catch (IOException e) {
+			log.warn("Error storing compiled plan [" + file + "]: " + e.getMessage());
+		} finally {
+			if (temp != null) {
+				temp.delete();
+			}
+		}
+	}
+
+	protected File getFile(String identity) {
+		return new File(directory, PlanCompiler.hash(identity) + PLAN_EXTENSION);
+	}
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+import java.util.regex.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Validates the rules of a transformation and compiles them into a {@link CompiledPlan}.
+ */
+public class PlanCompiler {
+
+	private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([^}]+)\\}");
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final Pattern XPATH_NAMED_STEP = Pattern.compile("(?:[a-z-]+::)?@?(?:[\\w.-]+:)?([A-Za-z_][\\w.-]*)");
+	private static final Pattern XPATH_ANONYMOUS_STEP = Pattern.compile("(?:[a-z-]+::)?@?(?:(?:[\\w.-]+:)?\\*|\\.|\\.\\.|node\\(\\)|text\\(\\)|comment\\(\\))?");
+	private static final String REGEX_METACHARACTERS = "\\[](){}.*+?^$|";
+
+	/**
+	 * @param action Rules to compile.
+	 * @param sourceHash Hash of the source of the rules, null if they do not come from a file.
+	 * @return Compiled plan.
+	 * @throws ActionValidationException If the rules are invalid.
+	 */
+	public CompiledPlan compile(NestedAction action, String sourceHash) throws ActionValidationException {
+		action.validate();
+		Set<String> placeholders = new TreeSet<String>();
+		compile(action, placeholders);
+		return new CompiledPlan(action, placeholders, sourceHash);
+	}
+
+	protected void compile(Action action, Set<String> placeholders) throws ActionValidationException {
+		if (action instanceof NestedAction) {
+			for (Action nested : ((NestedAction) action).getActions()) {
+				compile(nested, placeholders);
+			}
+			return;
+		}
+
+		AbstractAction abstractAction = (AbstractAction) action;
+		collectPlaceholders(abstractAction.getName(), placeholders);
+		collectPlaceholders(abstractAction.getValue(), placeholders);
+		if (action instanceof AddAction) {
+			AddAction addAction = (AddAction) action;
+			collectPlaceholders(addAction.getFile(), placeholders);
+			collectPlaceholders(addAction.getBefore(), placeholders);
+			collectPlaceholders(addAction.getAfter(), placeholders);
+			collectPlaceholders(addAction.getInside(), placeholders);
+			if (addAction.getNestedAction() != null) {
+				compile(addAction.getNestedAction(), placeholders);
+			}
+		} else if (action instanceof ModifyAction) {
+			ModifyAction modifyAction = (ModifyAction) action;
+			collectPlaceholders(modifyAction.getReplace(), placeholders);
+			if (modifyAction.getFind() != null) {
+				try {
+					modifyAction.getPattern();
+				} catch (PatternSyntaxException e) {
+					throw new ActionValidationException("Invalid find pattern: " + e.getDescription(), action);
+				} catch (IllegalArgumentException e) {
+					throw new ActionValidationException(e.getMessage(), action);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Derives literal tokens of which at least one must be present in an input for the rules to change
+	 * it: element and attribute names of XPaths, property names and literal find expressions. Tokens are
+	 * only necessary conditions, an input containing one of them may still be left unchanged.
+	 * 
+	 * @param action Rules applied to the inputs.
+	 * @param type Type of the inputs.
+	 * @return Tokens mapped to whether they must be matched ignoring case, null if the rules may change
+	 *         any input.
+	 */
+	public Map<String, Boolean> getTokens(Action action, String type) {
+		boolean properties = Transformation.PROPERTIES_TYPE.equals(type);
+		Map<String, Boolean> tokens = new HashMap<String, Boolean>();
+		if (!collectTokens(action, properties, tokens)) {
+			return null;
+		}
+		if (tokens.isEmpty()) {
+			return tokens;
+		}
+		// Inputs whose content may not appear literally are always processed
+		if (properties) {
+			tokens.put("\\", Boolean.FALSE);
+		} else {
+			tokens.put("<!DOCTYPE", Boolean.FALSE);
+			tokens.put("XInclude", Boolean.FALSE);
+		}
+		return tokens;
+	}
+
+	protected boolean collectTokens(Action action, boolean properties, Map<String, Boolean> tokens) {
+		if (action instanceof NestedAction) {
+			for (Action nested : ((NestedAction) action).getActions()) {
+				if (!collectTokens(nested, properties, tokens)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		if (action instanceof AddAction) {
+			AddAction addAction = (AddAction) action;
+			if (addAction.isFirst() || addAction.isLast()) {
+				return !properties && collectNameTokens(addAction.getName(), properties, tokens);
+			}
+			if (addAction.getBefore() != null) {
+				return collectNameTokens(addAction.getBefore(), properties, tokens);
+			} else if (addAction.getAfter() != null) {
+				return collectNameTokens(addAction.getAfter(), properties, tokens);
+			} else if (addAction.getInside() != null) {
+				return collectNameTokens(addAction.getInside(), properties, tokens);
+			}
+			return properties || collectNameTokens(addAction.getName(), properties, tokens);
+		} else if (action instanceof ModifyAction && ((ModifyAction) action).getFind() != null) {
+			return collectFindTokens((ModifyAction) action, properties, tokens);
+		}
+		return collectNameTokens(((AbstractAction) action).getName(), properties, tokens);
+	}
+
+	protected boolean collectNameTokens(String name, boolean properties, Map<String, Boolean> tokens) {
+		if (name == null || name.indexOf('$') >= 0) {
+			return false;
+		}
+		if (properties) {
+			tokens.put(name, Boolean.FALSE);
+			return true;
+		}
+
+		String path = stripPredicates(name);
+		if (path == null) {
+			return false;
+		}
+		for (String alternative : path.split("\\|", -1)) {
+			String token = null;
+			for (String step : alternative.split("/", -1)) {
+				step = step.trim();
+				Matcher matcher = XPATH_NAMED_STEP.matcher(step);
+				if (matcher.matches()) {
+					if (token == null || matcher.group(1).length() > token.length()) {
+						token = matcher.group(1);
+					}
+				} else if (!XPATH_ANONYMOUS_STEP.matcher(step).matches()) {
+					return false;
+				}
+			}
+			if (token == null) {
+				return false;
+			}
+			tokens.put(token, Boolean.FALSE);
+		}
+		return true;
+	}
+
+	/**
+	 * @return The XPath without its predicates, null if they are not balanced.
+	 */
+	protected String stripPredicates(String path) {
+		StringBuilder sb = new StringBuilder(path.length());
+		int depth = 0;
+		char quote = 0;
+		for (int i = 0; i < path.length(); i++) {
+			char c = path.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (depth > 0 && (c == '\'' || c == '"')) {
+				quote = c;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']') {
+				if (--depth < 0) {
+					return null;
+				}
+			} else if (depth == 0) {
+				sb.append(c);
+			}
+		}
+		return depth == 0 && quote == 0 ? sb.toString() : null;
+	}
+
+	protected boolean collectFindTokens(ModifyAction action, boolean properties, Map<String, Boolean> tokens) {
+		List<String> flags = Arrays.asList(action.getFlags() == null ? new String[] { "CASE_INSENSITIVE" } : action.getFlags().split(","));
+		if (flags.contains("COMMENTS") || flags.contains("CANON_EQ")) {
+			return false;
+		}
+		String find = action.getFind();
+		if (!flags.contains("LITERAL")) {
+			for (int i = 0; i < find.length(); i++) {
+				if (REGEX_METACHARACTERS.indexOf(find.charAt(i)) >= 0) {
+					return false;
+				}
+			}
+		}
+
+		// Whitespace may be normalized by the parser, only the longest fragment without it is required
+		String token = "";
+		for (String fragment : find.split("\\s+")) {
+			if (fragment.length() > token.length()) {
+				token = fragment;
+			}
+		}
+		boolean ignoreCase = flags.contains("CASE_INSENSITIVE");
+		if (token.length() == 0 || (ignoreCase && flags.contains("UNICODE_CASE") && !isAscii(token))) {
+			return false;
+		}
+		tokens.put(token, Boolean.valueOf(ignoreCase));
+		if (!properties) {
+			// Text and attribute values may contain character or entity references
+			tokens.put("&", Boolean.FALSE);
+		}
+		return true;
+	}
+
+	protected boolean isAscii(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) > 0x7F) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param value Value to search for placeholders, may be null.
+	 * @return Names of the placeholders (<code>${name}</code>) referenced by the value.
+	 */
+	public Set<String> getPlaceholders(String value) {
+		Set<String> placeholders = new TreeSet<String>();
+		collectPlaceholders(value, placeholders);
+		return placeholders;
+	}
+
+	protected void collectPlaceholders(String value, Set<String> placeholders) {
+		if (value == null || value.indexOf("${") < 0) {
+			return;
+		}
+		Matcher matcher = PLACEHOLDER.matcher(value);
+		while (matcher.find()) {
+			placeholders.add(matcher.group(1));
+		}
+	}
+
+	/**
+	 * Computes the hash identifying a rule file, changes if the content, the encoding used to read it or
+	 * the plan format changes.
+	 * 
+	 * @param content Content of the rule file.
+	 * @param encoding Encoding used to read the rule file.
+	 * @return Hexadecimal SHA-1 hash.
+	 */
+	public static String hash(byte[] content, String encoding) {
+		MessageDigest digest = newDigest();
+		digest.update(getBytes(PlanSerializer.FORMAT_VERSION + ":" + encoding + ":"));
+		digest.update(content);
+		return toHex(digest.digest());
+	}
+
+	/**
+	 * @param value Value to hash.
+	 * @return Hexadecimal SHA-1 hash of the value.
+	 */
+	public static String hash(String value) {
+		return toHex(newDigest().digest(getBytes(value)));
+	}
+
+	protected static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is always available", e);
+		}
+	}
+
+	protected static byte[] getBytes(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is always available", e);
+		}
+	}
+
+	public static String toHex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+		}
+		return new String(chars);
+	}
+}
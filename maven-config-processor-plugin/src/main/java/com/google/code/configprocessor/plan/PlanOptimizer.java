@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import java.util.*;
+import java.util.regex.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Rewrites the rules of a transformation into an equivalent but cheaper sequence of actions.
+ * <p>
+ * Only actions of the same group are rewritten, and only when the result is the same for any input
+ * of the given type:
+ * <ul>
+ * <li>A modify is dropped when a later modify or remove with the same name and node set policy
+ * overwrites its result and the actions in between cannot observe it.</li>
+ * <li>A remove is moved before the find/replace modifies that precede it, so they run on a smaller
+ * input.</li>
+ * </ul>
+ * Actions of XML rules are only rewritten if their names are plain paths to an attribute or text
+ * node, without predicates nor placeholders. The given rules are never changed, groups are copied
+ * when they are rewritten.
+ */
+public class PlanOptimizer {
+
+	private static final Pattern XML_VALUE_PATH = Pattern.compile(".*(/|^)(@[^/]+|text\\(\\))");
+
+	private LogAdapter log;
+
+	public PlanOptimizer(LogAdapter log) {
+		this.log = log;
+	}
+
+	/**
+	 * @param action Rules to optimize.
+	 * @param type Type of the inputs the rules are applied to.
+	 * @return Optimized rules, the given rules if nothing could be optimized.
+	 */
+	public NestedAction optimize(NestedAction action, String type) {
+		boolean xml = !Transformation.PROPERTIES_TYPE.equals(type);
+		boolean changed = false;
+
+		List<Action> actions = new ArrayList<Action>(action.getActions());
+		for (int i = 0; i < actions.size(); i++) {
+			Action nested = actions.get(i);
+			if (nested instanceof NestedAction) {
+				Action optimized = optimize((NestedAction) nested, type);
+				if (optimized != nested) {
+					actions.set(i, optimized);
+					changed = true;
+				}
+			}
+		}
+		changed |= removeSuperseded(actions, action.isStrict(), xml);
+		changed |= hoistRemoves(actions, xml);
+
+		if (!changed) {
+			return action;
+		}
+		NestedAction result = new NestedAction();
+		result.setStrict(action.isStrict());
+		for (Action nested : actions) {
+			result.addAction(nested);
+		}
+		return result;
+	}
+
+	protected boolean removeSuperseded(List<Action> actions, boolean strict, boolean xml) {
+		boolean changed = false;
+		for (int i = 0; i < actions.size(); i++) {
+			if (!isNamedModify(actions.get(i)) || !isCollapsible(((AbstractAction) actions.get(i)).getName(), xml)) {
+				continue;
+			}
+			ModifyAction modify = (ModifyAction) actions.get(i);
+			for (int j = i + 1; j < actions.size(); j++) {
+				Action next = actions.get(j);
+				if (supersedes(next, modify, strict)) {
+					log.debug("Dropping [" + modify + "], overwritten by [" + next + "]");
+					actions.remove(i--);
+					changed = true;
+					break;
+				}
+				if (!isIndependent(next, xml)) {
+					break;
+				}
+			}
+		}
+		return changed;
+	}
+
+	protected boolean hoistRemoves(List<Action> actions, boolean xml) {
+		boolean changed = false;
+		for (int i = 1; i < actions.size(); i++) {
+			Action action = actions.get(i);
+			if (!(action instanceof RemoveAction) || !isPlain(((RemoveAction) action).getName(), xml)) {
+				continue;
+			}
+			int target = i;
+			while (target > 0 && isFindReplace(actions.get(target - 1))) {
+				target--;
+			}
+			if (target < i) {
+				log.debug("Moving [" + action + "] before [" + actions.get(target) + "]");
+				actions.remove(i);
+				actions.add(target, action);
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * @return If the result of the modify is not visible after the given action.
+	 */
+	protected boolean supersedes(Action action, ModifyAction modify, boolean strict) {
+		if (!(action instanceof RemoveAction) && !isNamedModify(action)) {
+			return false;
+		}
+		AbstractAction other = (AbstractAction) action;
+		if (!modify.getName().equals(other.getName()) || modify.getNodeSetPolicyAsEnum() != getNodeSetPolicy(other)) {
+			return false;
+		}
+		// A failure of a strict modify must not be turned into an ignored failure of the other action
+		return strict || !modify.isStrict() || other.isStrict();
+	}
+
+	/**
+	 * @return If the action can neither observe the value set by a previous modify nor change which
+	 *         node a later action with the same name selects.
+	 */
+	protected boolean isIndependent(Action action, boolean xml) {
+		if (isFindReplace(action)) {
+			return true;
+		}
+		if (action instanceof RemoveAction) {
+			return isPlain(((RemoveAction) action).getName(), xml);
+		}
+		if (isNamedModify(action)) {
+			return !xml || isCollapsible(((ModifyAction) action).getName(), true);
+		}
+		return false;
+	}
+
+	/**
+	 * @return If modifies with the given name only change values, leaving the structure of the input
+	 *         untouched.
+	 */
+	protected boolean isCollapsible(String name, boolean xml) {
+		return isPlain(name, xml) && (!xml || XML_VALUE_PATH.matcher(name).matches());
+	}
+
+	/**
+	 * @return If the nodes selected by the name do not depend on the values in the input.
+	 */
+	protected boolean isPlain(String name, boolean xml) {
+		if (name.indexOf('$') >= 0) {
+			return false;
+		}
+		return !xml || (name.indexOf('[') < 0 && name.replace("text()", "").indexOf('(') < 0);
+	}
+
+	protected NodeSetPolicy getNodeSetPolicy(AbstractAction action) {
+		if (action instanceof RemoveAction) {
+			return ((RemoveAction) action).getNodeSetPolicyAsEnum();
+		}
+		return ((ModifyAction) action).getNodeSetPolicyAsEnum();
+	}
+
+	protected boolean isNamedModify(Action action) {
+		return action instanceof ModifyAction && ((ModifyAction) action).getName() != null;
+	}
+
+	protected boolean isFindReplace(Action action) {
+		return action instanceof ModifyAction && ((ModifyAction) action).getName() == null;
+	}
+}
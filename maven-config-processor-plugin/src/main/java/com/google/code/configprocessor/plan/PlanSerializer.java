@@ -0,0 +1,271 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+import java.util.zip.*;
+
+import com.google.code.configprocessor.processing.*;
+
+/**
+ * Reads and writes compiled plans in a compact binary format:
+ * 
+ * <pre>
+ * int    magic
+ * short  format version
+ * string source hash
+ * int    payload length
+ * long   payload CRC-32
+ * byte[] payload: placeholders and action tree
+ * </pre>
+ */
+public class PlanSerializer {
+
+	public static final short FORMAT_VERSION = 2;
+
+	private static final int MAGIC = 0x43504C4E;
+
+	private static final byte NESTED = 1;
+	private static final byte ADD = 2;
+	private static final byte MODIFY = 3;
+	private static final byte REMOVE = 4;
+	private static final byte COMMENT = 5;
+	private static final byte UNCOMMENT = 6;
+
+	public void write(CompiledPlan plan, OutputStream os) throws IOException {
+		byte[] bytes = getPayload(plan);
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+
+		DataOutputStream header = new DataOutputStream(os);
+		header.writeInt(MAGIC);
+		header.writeShort(FORMAT_VERSION);
+		writeString(header, plan.getSourceHash());
+		header.writeInt(bytes.length);
+		header.writeLong(crc.getValue());
+		header.write(bytes);
+		header.flush();
+	}
+
+	/**
+	 * @param plan Plan to identify.
+	 * @return Hexadecimal SHA-1 hash of the content of the plan, the same for plans compiled from equivalent
+	 *         rules.
+	 */
+	public String digest(CompiledPlan plan) {
+		try {
+			MessageDigest digest = PlanCompiler.newDigest();
+			digest.update(PlanCompiler.getBytes(FORMAT_VERSION + ":"));
+			return PlanCompiler.toHex(digest.digest(getPayload(plan)));
+		} catch (IOException e) {
+			throw new IllegalStateException("Writing to memory cannot fail", e);
+		}
+	}
+
+	protected byte[] getPayload(CompiledPlan plan) throws IOException {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeInt(plan.getPlaceholders().size());
+		for (String placeholder : plan.getPlaceholders()) {
+			writeString(out, placeholder);
+		}
+		writeAction(out, plan.getAction());
+		out.flush();
+		return payload.toByteArray();
+	}
+
+	/**
+	 * Reads a plan.
+	 * 
+	 * @param is Stream to read from, must report the exact amount of remaining bytes as available, e.g. a
+	 *        {@link ByteArrayInputStream}.
+	 * @param sourceHash Expected source hash.
+	 * @return Plan read or null if the stream does not contain a valid plan of the given source in the
+	 *         current format.
+	 * @throws IOException If the stream cannot be read.
+	 */
+	public CompiledPlan read(InputStream is, String sourceHash) throws IOException {
+		DataInputStream header = new DataInputStream(is);
+		try {
+			if (header.readInt() != MAGIC || header.readShort() != FORMAT_VERSION || !sourceHash.equals(readString(header))) {
+				return null;
+			}
+			int length = header.readInt();
+			long checksum = header.readLong();
+			if (length < 0 || length > header.available()) {
+				return null;
+			}
+			byte[] bytes = new byte[length];
+			header.readFully(bytes);
+			CRC32 crc = new CRC32();
+			crc.update(bytes);
+			if (crc.getValue() != checksum) {
+				return null;
+			}
+
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+			int count = in.readInt();
+			Set<String> placeholders = new TreeSet<String>();
+			for (int i = 0; i < count; i++) {
+				placeholders.add(readString(in));
+			}
+			Action action = readAction(in);
+			if (!(action instanceof NestedAction)) {
+				return null;
+			}
+			return new CompiledPlan((NestedAction) action, placeholders, sourceHash);
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	protected void writeAction(DataOutputStream out, Action action) throws IOException {
+		if (action instanceof NestedAction) {
+			NestedAction nestedAction = (NestedAction) action;
+			out.writeByte(NESTED);
+			out.writeBoolean(nestedAction.isStrict());
+			out.writeInt(nestedAction.getActions().size());
+			for (Action nested : nestedAction.getActions()) {
+				writeAction(out, nested);
+			}
+			return;
+		}
+
+		AbstractAction abstractAction = (AbstractAction) action;
+		if (action instanceof AddAction) {
+			out.writeByte(ADD);
+		} else if (action instanceof ModifyAction) {
+			out.writeByte(MODIFY);
+		} else if (action instanceof RemoveAction) {
+			out.writeByte(REMOVE);
+		} else if (action instanceof CommentAction) {
+			out.writeByte(COMMENT);
+		} else if (action instanceof UncommentAction) {
+			out.writeByte(UNCOMMENT);
+		} else {
+			throw new IllegalArgumentException("Unknown action: " + action);
+		}
+		writeString(out, abstractAction.getName());
+		writeString(out, abstractAction.getValue());
+		out.writeBoolean(abstractAction.isStrict());
+
+		if (action instanceof AddAction) {
+			AddAction addAction = (AddAction) action;
+			out.writeBoolean(addAction.isFirst());
+			out.writeBoolean(addAction.isLast());
+			writeString(out, addAction.getAfter());
+			writeString(out, addAction.getBefore());
+			writeString(out, addAction.getInside());
+			writeString(out, addAction.getFile());
+			out.writeBoolean(addAction.isIgnoreRoot());
+			out.writeBoolean(addAction.getNestedAction() != null);
+			if (addAction.getNestedAction() != null) {
+				writeAction(out, addAction.getNestedAction());
+			}
+		} else if (action instanceof ModifyAction) {
+			ModifyAction modifyAction = (ModifyAction) action;
+			writeString(out, modifyAction.getNodeSetPolicy());
+			writeString(out, modifyAction.getFind());
+			writeString(out, modifyAction.getReplace());
+			writeString(out, modifyAction.getFlags());
+		} else if (action instanceof RemoveAction) {
+			writeString(out, ((RemoveAction) action).getNodeSetPolicy());
+		}
+	}
+
+	protected Action readAction(DataInputStream in) throws IOException {
+		byte type = in.readByte();
+		if (type == NESTED) {
+			NestedAction nestedAction = new NestedAction();
+			nestedAction.setStrict(in.readBoolean());
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				nestedAction.addAction(readAction(in));
+			}
+			return nestedAction;
+		}
+
+		AbstractAction action;
+		if (type == ADD) {
+			action = new AddAction();
+		} else if (type == MODIFY) {
+			action = new ModifyAction();
+		} else if (type == REMOVE) {
+			action = new RemoveAction();
+		} else if (type == COMMENT) {
+			action = new CommentAction();
+		} else if (type == UNCOMMENT) {
+			action = new UncommentAction();
+		} else {
+			throw new IOException("Unknown action type [" + type + "]");
+		}
+		action.setName(readString(in));
+		action.setValue(readString(in));
+		action.setStrict(in.readBoolean());
+
+		if (action instanceof AddAction) {
+			AddAction addAction = (AddAction) action;
+			addAction.setFirst(in.readBoolean());
+			addAction.setLast(in.readBoolean());
+			addAction.setAfter(readString(in));
+			addAction.setBefore(readString(in));
+			addAction.setInside(readString(in));
+			addAction.setFile(readString(in));
+			addAction.setIgnoreRoot(in.readBoolean());
+			if (in.readBoolean()) {
+				Action nested = readAction(in);
+				if (!(nested instanceof NestedAction)) {
+					throw new IOException("Nested actions expected");
+				}
+				addAction.setNestedAction((NestedAction) nested);
+			}
+		} else if (action instanceof ModifyAction) {
+			ModifyAction modifyAction = (ModifyAction) action;
+			modifyAction.setNodeSetPolicy(readString(in));
+			modifyAction.setFind(readString(in));
+			modifyAction.setReplace(readString(in));
+			modifyAction.setFlags(readString(in));
+		} else if (action instanceof RemoveAction) {
+			((RemoveAction) action).setNodeSetPolicy(readString(in));
+		}
+		return action;
+	}
+
+	protected void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	protected String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		if (length > in.available()) {
+			throw new EOFException("String of [" + length + "] bytes exceeds the remaining content");
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
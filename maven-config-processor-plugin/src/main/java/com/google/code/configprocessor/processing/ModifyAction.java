@@ -31,6 +31,7 @@ public class ModifyAction extends AbstractAction {
 	private String find;
 	private String replace;
 	private String flags;
+	private transient volatile Pattern pattern;
 
 	public ModifyAction() {
 		this(null, null);
@@ -116,6 +117,7 @@ public class ModifyAction extends AbstractAction {
 
 	public void setFind(String find) {
 		this.find = find;
+		this.pattern = null;
 	}
 
 	public String getReplace() {
@@ -132,10 +134,19 @@ public class ModifyAction extends AbstractAction {
 
 	public void setFlags(String flags) {
 		this.flags = flags;
+		this.pattern = null;
 	}
 
+	/**
+	 * @return Pattern of the find expression, compiled only once since patterns are thread-safe.
+	 */
 	public Pattern getPattern() {
-		return Pattern.compile(getFind(), parseFlags());
+		Pattern result = pattern;
+		if (result == null) {
+			result = Pattern.compile(getFind(), parseFlags());
+			pattern = result;
+		}
+		return result;
 	}
 
 	@Override
@@ -50,6 +50,10 @@ public class NestedAction implements Action {
 		return strict;
 	}
 
+	public void setStrict(boolean strict) {
+		this.strict = strict;
+	}
+
 	public NodeSetPolicy getNodeSetPolicyAsEnum() {
 		throw new UnsupportedOperationException("NestedActions dont have node set policy");
 	}
@@ -34,23 +34,26 @@ public class PropertiesActionProcessor implements ActionProcessor {
 	private FileResolver fileResolver;
 	private ExpressionResolver expressionResolver;
 
-	private Set<File> appendedFiles;
+	private Set<String> appendedFiles;
+	private Map<Action, PropertiesActionProcessingAdvisor> advisors;
 
 	public PropertiesActionProcessor(String encoding, FileResolver fileResolver, ExpressionResolver expressionResolver) {
 		this.encoding = encoding;
 		this.fileResolver = fileResolver;
 		this.expressionResolver = expressionResolver;
-		this.appendedFiles = new HashSet<File>();
+		this.appendedFiles = new HashSet<String>();
+		this.advisors = new IdentityHashMap<Action, PropertiesActionProcessingAdvisor>();
 	}
 
 	public void process(Reader input, Writer output, Action action) throws ParsingException, IOException {
+		appendedFiles.clear();
 		BufferedReader reader = new BufferedReader(input);
 		BufferedWriter writer = new BufferedWriter(output);
 		process(reader, writer, action);
 	}
 	
 	protected void process(BufferedReader reader, BufferedWriter writer, Action action) throws ParsingException, IOException {
-		PropertiesActionProcessingAdvisor advisor = getAdvisorFor(action);
+		PropertiesActionProcessingAdvisor advisor = getAdvisor(action);
 
 		// Start
 		PropertiesFileItemAdvice advice = advisor.onStartProcessing();
@@ -168,9 +171,9 @@ public class PropertiesActionProcessor implements ActionProcessor {
 	
 	protected void appendFile(PropertiesFileItem item, BufferedWriter writer, Action action) throws ParsingException, IOException {
 		FilePropertiesFileItem aux = (FilePropertiesFileItem)item;
-		File file = fileResolver.resolve(aux.getFile());
-		if (appendedFiles.add(file)) { // Prevent adding the same file twice
-			InputStreamReader reader = new InputStreamReader(new FileInputStream(file), encoding);
+		Resource resource = fileResolver.getResource(aux.getFile());
+		if (appendedFiles.add(resource.getIdentity())) { // Prevent adding the same file twice
+			BufferedReader reader = new BufferedReader(new InputStreamReader(resource.openStream(), encoding));
 			try {
 				process(reader, writer, action);
 			} finally {
@@ -179,6 +182,19 @@ public class PropertiesActionProcessor implements ActionProcessor {
 		}
 	}
 
+	/**
+	 * Advisors do not keep state between files, so the one built for an action is applied to every
+	 * file processed with it.
+	 */
+	protected PropertiesActionProcessingAdvisor getAdvisor(Action action) {
+		PropertiesActionProcessingAdvisor advisor = advisors.get(action);
+		if (advisor == null) {
+			advisor = getAdvisorFor(action);
+			advisors.put(action, advisor);
+		}
+		return advisor;
+	}
+
 	protected PropertiesActionProcessingAdvisor getAdvisorFor(Action action) {
 		if (action instanceof AddAction) {
 			return new PropertiesAddActionProcessingAdvisor((AddAction) action, expressionResolver);
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import static com.google.code.configprocessor.util.IOUtils.*;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.xml.sax.*;
+
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.log.*;
+
+/**
+ * Resolves DTDs and schemas referenced by XML inputs through an {@link XmlCatalog}, keeping their content
+ * in memory so each one is read at most once. In offline mode, entities not mapped by the catalog to a
+ * local copy are not downloaded and parsing fails instead.
+ */
+public class CatalogEntityResolver implements EntityResolver {
+
+	private XmlCatalog catalog;
+	private boolean offline;
+	private LogAdapter log;
+	private ConcurrentMap<String, byte[]> entities;
+
+	public CatalogEntityResolver(XmlCatalog catalog, boolean offline, LogAdapter log) {
+		this.catalog = catalog;
+		this.offline = offline;
+		this.log = log;
+		this.entities = new ConcurrentHashMap<String, byte[]>();
+	}
+
+	/**
+	 * Creates a resolver reading the given catalogs.
+	 * 
+	 * @param catalogs Names of the catalogs, resolved by the file resolver.
+	 * @param fileResolver Resolver of the catalogs.
+	 * @param offline True to fail instead of downloading entities not mapped by the catalogs.
+	 * @param log
+	 * @return Entity resolver.
+	 * @throws IOException If a catalog cannot be read.
+	 */
+	public static CatalogEntityResolver load(List<String> catalogs, FileResolver fileResolver, boolean offline, LogAdapter log) throws IOException {
+		XmlCatalog catalog = new XmlCatalog();
+		if (catalogs != null) {
+			for (String name : catalogs) {
+				log.debug("Loading XML catalog [" + name + "]");
+				catalog.load(fileResolver.getResource(name));
+			}
+		}
+		return new CatalogEntityResolver(catalog, offline, log);
+	}
+
+	public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+		String uri = catalog.resolve(publicId, systemId);
+		if (uri == null) {
+			if (systemId == null) {
+				return null;
+			}
+			if (offline && isRemote(systemId)) {
+				throw new SAXException("Entity [" + (publicId == null ? systemId : publicId + " " + systemId) + "] is not mapped by the catalog and cannot be downloaded in offline mode");
+			}
+			uri = systemId;
+		} else {
+			log.debug("Resolved entity [" + (publicId == null ? systemId : publicId) + "] to [" + uri + "]");
+		}
+
+		InputSource source = new InputSource(new ByteArrayInputStream(getContent(uri)));
+		source.setPublicId(publicId);
+		source.setSystemId(uri);
+		return source;
+	}
+
+	protected byte[] getContent(String uri) throws IOException {
+		byte[] content = entities.get(uri);
+		if (content == null) {
+			InputStream is = new URL(uri).openStream();
+			try {
+				ByteArrayOutputStream baos = new ByteArrayOutputStream();
+				copy(is, baos);
+				content = baos.toByteArray();
+			} finally {
+				close(is, log);
+			}
+			byte[] previous = entities.putIfAbsent(uri, content);
+			if (previous != null) {
+				content = previous;
+			}
+		}
+		return content;
+	}
+
+	protected boolean isRemote(String systemId) {
+		try {
+			String protocol = new URL(systemId).getProtocol();
+			return !"file".equals(protocol) && !"jar".equals(protocol);
+		} catch (MalformedURLException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import java.util.concurrent.atomic.*;
+
+import org.apache.xerces.util.*;
+import org.apache.xerces.xni.grammars.*;
+
+import com.google.code.configprocessor.log.*;
+
+/**
+ * Xerces grammar pool shared by all XML parses of a build, so each DTD or schema is compiled once and
+ * reused by every document declaring it.
+ */
+public class SharedGrammarPool extends XMLGrammarPoolImpl {
+
+	private LogAdapter log;
+	private AtomicInteger hits;
+
+	public SharedGrammarPool(LogAdapter log) {
+		this.log = log;
+		this.hits = new AtomicInteger();
+	}
+
+	/**
+	 * Grammars are handed to parsers only when a document declares them, so reuse can be counted and
+	 * parsers do not load every grammar of the pool.
+	 */
+	@Override
+	public Grammar[] retrieveInitialGrammarSet(String grammarType) {
+		return new Grammar[0];
+	}
+
+	@Override
+	public Grammar retrieveGrammar(XMLGrammarDescription description) {
+		Grammar grammar = super.retrieveGrammar(description);
+		if (grammar != null) {
+			hits.incrementAndGet();
+			log.debug("Reusing grammar [" + getName(description) + "]");
+		}
+		return grammar;
+	}
+
+	@Override
+	public void putGrammar(Grammar grammar) {
+		log.debug("Caching grammar [" + getName(grammar.getGrammarDescription()) + "]");
+		super.putGrammar(grammar);
+	}
+
+	/**
+	 * @return Number of times a grammar has been reused.
+	 */
+	public int getHits() {
+		return hits.get();
+	}
+
+	protected String getName(XMLGrammarDescription description) {
+		if (description.getExpandedSystemId() != null) {
+			return description.getExpandedSystemId();
+		}
+		return description.getNamespace();
+	}
+}
@@ -20,6 +20,7 @@ import java.util.*;
 
 import javax.xml.parsers.*;
 
+import org.apache.xerces.xni.grammars.*;
 import org.w3c.dom.*;
 import org.xml.sax.*;
 
@@ -41,6 +42,11 @@ public class XmlActionProcessor implements ActionProcessor {
 	private MapBasedNamespaceContext namespaceContext;
 	private List<ParserFeature> parserFeatures;
     private boolean failOnMissingXpath;
+	private EntityResolver entityResolver;
+	private XMLGrammarPool grammarPool;
+	private boolean patching;
+	private XmlSerializer serializer;
+	private Map<Action, XmlActionProcessingAdvisor> advisors;
 
     public XmlActionProcessor(String encoding, int lineWidth, int indentSize, FileResolver fileResolver, ExpressionResolver expressionResolver, Map<String, String> contextMappings,
 			List<ParserFeature> parserFeatures, boolean failOnMissingXpath) {
@@ -52,20 +58,34 @@ public class XmlActionProcessor implements ActionProcessor {
 		this.namespaceContext = new MapBasedNamespaceContext(contextMappings);
 		this.parserFeatures = parserFeatures;
         this.failOnMissingXpath = failOnMissingXpath;
+		this.advisors = new IdentityHashMap<Action, XmlActionProcessingAdvisor>();
 	}
 
 	public void process(Reader input, Writer output, Action action) throws ParsingException, IOException {
+		Document document = parse(input);
+		// While processing add-include actions that don't contain nested
+		// actions,
+		// we ended up calling getAdvisorFor with nulls, resulting in an
+		// exception.
+		if (action != null) {
+			process(document, action);
+		}
+		write(document, output);
+	}
+
+	/**
+	 * Parses an input so several actions can be applied to it before it is written.
+	 */
+	public Document parse(Reader input) throws ParsingException, IOException {
 		try {
-			Document document = XmlHelper.parse(input, parserFeatures);
-			// While processing add-include actions that don't contain nested
-			// actions,
-			// we ended up calling getAdvisorFor with nulls, resulting in an
-			// exception.
-			if (action != null) {
-				XmlActionProcessingAdvisor advisor = getAdvisorFor(action, action);
-				advisor.process(document);
+			if (patching) {
+				StringWriter source = new StringWriter();
+				IOUtils.copy(input, source);
+				Document document = XmlHelper.parse(new StringReader(source.toString()), parserFeatures, entityResolver, grammarPool);
+				XmlPatcher.attach(document, source.toString());
+				return document;
 			}
-			XmlHelper.write(output, document, encoding, lineWidth, indentSize);
+			return XmlHelper.parse(input, parserFeatures, entityResolver, grammarPool);
 		} catch (SAXException e) {
 			throw new ParsingException(e);
 		} catch (ParserConfigurationException e) {
@@ -73,6 +93,71 @@ public class XmlActionProcessor implements ActionProcessor {
 		}
 	}
 
+	public void process(Document document, Action action) throws ParsingException, IOException {
+		XmlActionProcessingAdvisor advisor = getAdvisor(action);
+		advisor.process(document);
+	}
+
+	public void write(Document document, Writer output) {
+		try {
+			if (patching && XmlPatcher.write(document, output, encoding)) {
+				return;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		try {
+			getSerializer().serialize(document, output);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * The serializer and its encoders are kept for the next documents written by this processor.
+	 */
+	protected XmlSerializer getSerializer() {
+		if (serializer == null) {
+			serializer = XmlHelper.newSerializer(encoding, lineWidth, indentSize);
+		}
+		return serializer;
+	}
+
+	/**
+	 * @param patching Write documents by patching their source, keeping everything not changed by the actions
+	 *        verbatim, instead of serializing them again. Documents that cannot be patched are serialized.
+	 */
+	public void setPatching(boolean patching) {
+		this.patching = patching;
+	}
+
+	/**
+	 * @param entityResolver Resolver of DTDs and schemas referenced by the documents, null to use the parser default.
+	 */
+	public void setEntityResolver(EntityResolver entityResolver) {
+		this.entityResolver = entityResolver;
+	}
+
+	/**
+	 * @param grammarPool Pool of DTDs and schemas shared with other parses, null to compile them on every parse.
+	 */
+	public void setGrammarPool(XMLGrammarPool grammarPool) {
+		this.grammarPool = grammarPool;
+	}
+
+	/**
+	 * Advisors do not keep state between documents, so the one built for an action is applied to every
+	 * document processed with it. Like the processor itself, they must not be shared between threads.
+	 */
+	protected XmlActionProcessingAdvisor getAdvisor(Action action) throws ParsingException, IOException {
+		XmlActionProcessingAdvisor advisor = advisors.get(action);
+		if (advisor == null) {
+			advisor = getAdvisorFor(action, action);
+			advisors.put(action, advisor);
+		}
+		return advisor;
+	}
+
 	protected XmlActionProcessingAdvisor getAdvisorFor(Action rootAction, Action action) throws ParsingException, IOException {
 		if (action instanceof AddAction) {
 			// Processes the file applying all sub-transformations before
@@ -108,8 +193,8 @@ public class XmlActionProcessor implements ActionProcessor {
 	}
 
 	protected String getProcessedFile(String name, Action action) throws ParsingException, IOException {
-		File file = fileResolver.resolve(name);
-		InputStreamReader reader = new InputStreamReader(new FileInputStream(file), encoding);
+		Resource resource = fileResolver.getResource(name);
+		InputStreamReader reader = new InputStreamReader(resource.openStream(), encoding);
 		StringWriter writer = new StringWriter();
 		try {
 			process(reader, writer, action);
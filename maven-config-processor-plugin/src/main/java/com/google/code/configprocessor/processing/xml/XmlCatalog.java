@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+import javax.xml.parsers.*;
+
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+import com.google.code.configprocessor.io.*;
+
+/**
+ * OASIS XML catalog mapping public and system identifiers of DTDs and schemas to local copies. Supports
+ * <code>public</code>, <code>system</code>, <code>rewriteSystem</code>, <code>systemSuffix</code>,
+ * <code>group</code> and <code>nextCatalog</code> entries, relative URIs are resolved against the catalog
+ * location or <code>xml:base</code>.
+ */
+public class XmlCatalog {
+
+	private static final String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+	private Map<String, String> publicEntries;
+	private Map<String, String> systemEntries;
+	private Map<String, String> rewriteSystemEntries;
+	private Map<String, String> systemSuffixEntries;
+
+	public XmlCatalog() {
+		publicEntries = new HashMap<String, String>();
+		systemEntries = new HashMap<String, String>();
+		rewriteSystemEntries = new HashMap<String, String>();
+		systemSuffixEntries = new HashMap<String, String>();
+	}
+
+	/**
+	 * Adds the entries of a catalog.
+	 * 
+	 * @param resource Catalog to read.
+	 * @throws IOException If the catalog cannot be read or parsed.
+	 */
+	public void load(Resource resource) throws IOException {
+		InputStream is = resource.openStream();
+		try {
+			load(is, getUri(resource));
+		} finally {
+			is.close();
+		}
+	}
+
+	/**
+	 * Adds the entries of a catalog.
+	 * 
+	 * @param is Content of the catalog.
+	 * @param base URI used to resolve relative URIs of the catalog.
+	 * @throws IOException If the catalog cannot be read or parsed.
+	 */
+	public void load(InputStream is, String base) throws IOException {
+		Document document;
+		try {
+			DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setNamespaceAware(true);
+			DocumentBuilder builder = factory.newDocumentBuilder();
+			// Catalogs usually declare the OASIS DTD, which is not needed to read them
+			builder.setEntityResolver(new EntityResolver() {
+
+				public InputSource resolveEntity(String publicId, String systemId) {
+					return new InputSource(new StringReader(""));
+				}
+			});
+			InputSource source = new InputSource(is);
+			source.setSystemId(base);
+			document = builder.parse(source);
+		} catch (ParserConfigurationException e) {
+			throw newIOException("Error creating parser for catalog [" + base + "]", e);
+		} catch (SAXException e) {
+			throw newIOException("Error parsing catalog [" + base + "]", e);
+		}
+		load(document.getDocumentElement(), base);
+	}
+
+	/**
+	 * Looks up an external entity.
+	 * 
+	 * @param publicId Public identifier of the entity, may be null.
+	 * @param systemId System identifier of the entity, may be null.
+	 * @return URI of the local copy of the entity or null if the catalog does not map it.
+	 */
+	public String resolve(String publicId, String systemId) {
+		if (systemId != null) {
+			String uri = systemEntries.get(systemId);
+			if (uri != null) {
+				return uri;
+			}
+
+			String prefix = getLongestMatch(rewriteSystemEntries.keySet(), systemId, true);
+			if (prefix != null) {
+				return rewriteSystemEntries.get(prefix) + systemId.substring(prefix.length());
+			}
+
+			String suffix = getLongestMatch(systemSuffixEntries.keySet(), systemId, false);
+			if (suffix != null) {
+				return systemSuffixEntries.get(suffix);
+			}
+		}
+		if (publicId != null) {
+			return publicEntries.get(publicId);
+		}
+		return null;
+	}
+
+	public boolean isEmpty() {
+		return publicEntries.isEmpty() && systemEntries.isEmpty() && rewriteSystemEntries.isEmpty() && systemSuffixEntries.isEmpty();
+	}
+
+	protected void load(Element parent, String base) throws IOException {
+		base = getBase(parent, base);
+		NodeList children = parent.getChildNodes();
+		for (int i = 0; i < children.getLength(); i++) {
+			if (!(children.item(i) instanceof Element)) {
+				continue;
+			}
+			Element entry = (Element) children.item(i);
+			String name = entry.getLocalName() == null ? entry.getNodeName() : entry.getLocalName();
+			String entryBase = getBase(entry, base);
+			if ("public".equals(name)) {
+				publicEntries.put(entry.getAttribute("publicId"), resolveUri(entryBase, entry.getAttribute("uri")));
+			} else if ("system".equals(name)) {
+				systemEntries.put(entry.getAttribute("systemId"), resolveUri(entryBase, entry.getAttribute("uri")));
+			} else if ("rewriteSystem".equals(name)) {
+				rewriteSystemEntries.put(entry.getAttribute("systemIdStartString"), resolveUri(entryBase, entry.getAttribute("rewritePrefix")));
+			} else if ("systemSuffix".equals(name)) {
+				systemSuffixEntries.put(entry.getAttribute("systemIdSuffix"), resolveUri(entryBase, entry.getAttribute("uri")));
+			} else if ("group".equals(name)) {
+				load(entry, base);
+			} else if ("nextCatalog".equals(name)) {
+				String uri = resolveUri(entryBase, entry.getAttribute("catalog"));
+				InputStream is = new URL(uri).openStream();
+				try {
+					load(is, uri);
+				} finally {
+					is.close();
+				}
+			}
+		}
+	}
+
+	protected String getBase(Element element, String base) throws IOException {
+		if (element.hasAttributeNS(XML_NAMESPACE, "base")) {
+			return resolveUri(base, element.getAttributeNS(XML_NAMESPACE, "base"));
+		}
+		return base;
+	}
+
+	protected String getLongestMatch(Set<String> candidates, String systemId, boolean prefix) {
+		String match = null;
+		for (String candidate : candidates) {
+			boolean matches = prefix ? systemId.startsWith(candidate) : systemId.endsWith(candidate);
+			if (matches && (match == null || candidate.length() > match.length())) {
+				match = candidate;
+			}
+		}
+		return match;
+	}
+
+	protected String resolveUri(String base, String uri) throws IOException {
+		try {
+			if (base == null) {
+				return new URL(uri).toExternalForm();
+			}
+			return new URL(new URL(base), uri).toExternalForm();
+		} catch (MalformedURLException e) {
+			throw newIOException("Invalid URI [" + uri + "] in catalog [" + base + "]", e);
+		}
+	}
+
+	protected IOException newIOException(String message, Exception cause) {
+		IOException e = new IOException(message);
+		e.initCause(cause);
+		return e;
+	}
+
+	/**
+	 * @param resource Resource to locate.
+	 * @return URI that can be used to read the resource and to resolve URIs relative to it.
+	 */
+	public static String getUri(Resource resource) {
+		if (resource.getFile() != null) {
+			return resource.getFile().toURI().toString();
+		} else if (resource instanceof UrlResource) {
+			return ((UrlResource) resource).getUrl().toExternalForm();
+		} else if (resource instanceof ArchiveEntryResource) {
+			ArchiveEntryResource entry = (ArchiveEntryResource) resource;
+			return "jar:" + entry.getIndex().getArchive().toURI() + ArchiveIndex.ENTRY_SEPARATOR + entry.getEntryName();
+		}
+		return resource.getIdentity();
+	}
+}
@@ -20,7 +20,7 @@ import java.util.*;
 
 import javax.xml.parsers.*;
 
-import org.apache.xml.serialize.*;
+import org.apache.xerces.xni.grammars.*;
 import org.w3c.dom.*;
 import org.xml.sax.*;
 
@@ -33,6 +33,8 @@ public class XmlHelper {
 	public static final String CLOSING_NODE_START = "</";
 	public static final String CLOSING_NODE_END = NODE_END;
 
+	public static final String GRAMMAR_POOL_PROPERTY = "http://apache.org/xml/properties/internal/grammar-pool";
+
 	public static final String ROOT_TAG = "root";
 	public static final String PROCESSOR_TAG = "processor";
 	public static final String ROOT_PROCESSOR_START = NODE_START + PROCESSOR_TAG + NODE_END;
@@ -66,8 +68,20 @@ public class XmlHelper {
 	}
 
 	public static Document parse(Reader reader, List<ParserFeature> features) throws SAXException, ParserConfigurationException {
+		return parse(reader, features, null);
+	}
+
+	public static Document parse(Reader reader, List<ParserFeature> features, EntityResolver entityResolver) throws SAXException, ParserConfigurationException {
+		return parse(reader, features, entityResolver, null);
+	}
+
+	public static Document parse(Reader reader, List<ParserFeature> features, EntityResolver entityResolver, XMLGrammarPool grammarPool) throws SAXException, ParserConfigurationException {
 		try {
-			return newDocumentBuilder(features).parse(new InputSource(reader));
+			DocumentBuilder builder = newDocumentBuilder(features, grammarPool);
+			if (entityResolver != null) {
+				builder.setEntityResolver(entityResolver);
+			}
+			return builder.parse(new InputSource(reader));
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
@@ -109,7 +123,7 @@ public class XmlHelper {
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
 		try {
-			write(new OutputStreamWriter(baos, encoding), document, encoding, lineWidth, indentSize);
+			write(baos, document, encoding, lineWidth, indentSize);
 			return new String(baos.toByteArray(), encoding);
 		} catch (UnsupportedEncodingException e) {
 			// Should never happen
@@ -118,25 +132,48 @@ public class XmlHelper {
 	}
 
 	public static void write(Writer writer, Document document, String encoding, int lineWidth, int indentSize) {
-		OutputFormat format = new OutputFormat(document, encoding, true);
-		format.setLineSeparator(XmlActionProcessor.LINE_SEPARATOR);
-		format.setLineWidth(lineWidth);
-		format.setIndent(indentSize);
-		XMLSerializer serializer = new XMLSerializer(writer, format);
 		try {
-			serializer.serialize(document);
+			newSerializer(encoding, lineWidth, indentSize).serialize(document, writer);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static void write(OutputStream output, Document document, String encoding, int lineWidth, int indentSize) {
+		try {
+			newSerializer(encoding, lineWidth, indentSize).serialize(document, output);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
 
+	/**
+	 * Creates a serializer to be reused for several documents written with the same settings.
+	 * 
+	 * @param indentSize Spaces added by each nesting level, zero to write documents compact.
+	 */
+	public static XmlSerializer newSerializer(String encoding, int lineWidth, int indentSize) {
+		return new XmlSerializer(encoding, lineWidth, indentSize, XmlActionProcessor.LINE_SEPARATOR);
+	}
+
 	public static boolean representsNodeElement(String fragment) {
 		return fragment.startsWith(NODE_START);
 	}
 
 	private static DocumentBuilder newDocumentBuilder(List<ParserFeature> features) throws ParserConfigurationException {
+		return newDocumentBuilder(features, null);
+	}
+
+	private static DocumentBuilder newDocumentBuilder(List<ParserFeature> features, XMLGrammarPool grammarPool) throws ParserConfigurationException {
 		DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
 		domFactory.setNamespaceAware(true);
+		if (grammarPool != null) {
+			try {
+				domFactory.setAttribute(GRAMMAR_POOL_PROPERTY, grammarPool);
+			} catch (IllegalArgumentException e) {
+				// Not the bundled Xerces, grammars are not shared
+			}
+		}
 		
 		for (ParserFeature feature : features) {
 			domFactory.setFeature(feature.getName(), feature.getValue());
@@ -126,7 +126,9 @@ public class XmlModifyActionProcessingAdvisor extends AbstractXmlActionProcessin
 		if (value != null) {
 			Matcher matcher = pattern.matcher(value);
 			String newValue = matcher.replaceAll(replace);
-			node.setNodeValue(newValue);
+			if (!newValue.equals(value)) {
+				node.setNodeValue(newValue);
+			}
 		}
 	}
 
@@ -0,0 +1,600 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import org.w3c.dom.*;
+import org.w3c.dom.events.*;
+import org.w3c.dom.events.EventListener;
+
+/**
+ * Writes a processed document by patching its source text: only the elements changed by the actions are
+ * serialized again, everything else is copied verbatim, keeping the original formatting, comments and
+ * entity references. The source offsets of every element are found by a position-tracking scan of the
+ * source and the changes are recorded through DOM mutation events.
+ * <p>
+ * Changes are attributed to the closest element of the source containing them. Its start tag is replaced
+ * if its attributes changed and its content if its text changed, an empty-element tag is replaced whole. A
+ * removed element of the source is cut out of it, an inserted node is written at the source offset of its
+ * neighbouring element, so the siblings of removed and inserted nodes are kept verbatim. Changes that set
+ * the value a node already has are ignored.
+ */
+public class XmlPatcher {
+
+	private static final String USER_DATA_KEY = XmlPatcher.class.getName();
+	private static final String[] MUTATION_EVENTS = { "DOMAttrModified", "DOMCharacterDataModified", "DOMNodeInserted", "DOMNodeRemoved" };
+
+	private String source;
+	private Set<Element> attributesChanged;
+	private Set<Element> contentChanged;
+	private Map<Element, Element> removed;
+	private Map<Node, Insertion> inserted;
+	private boolean unpatchable;
+
+	protected XmlPatcher(String source) {
+		this.source = source;
+		this.attributesChanged = new HashSet<Element>();
+		this.contentChanged = new HashSet<Element>();
+		this.removed = new LinkedHashMap<Element, Element>();
+		this.inserted = new LinkedHashMap<Node, Insertion>();
+	}
+
+	/**
+	 * Starts recording the changes of a document just parsed.
+	 * 
+	 * @param document Document parsed from the source.
+	 * @param source Text the document has been parsed from.
+	 * @return If the document can be patched. It cannot if the DOM does not support mutation events or its
+	 *         elements do not match the ones of the source, e.g. when entities expand to elements.
+	 */
+	public static boolean attach(Document document, String source) {
+		if (!(document instanceof EventTarget) || source.contains("<!ENTITY")) {
+			return false;
+		}
+		List<Range> ranges = scan(source);
+		if (ranges == null) {
+			return false;
+		}
+		List<Element> elements = new ArrayList<Element>(ranges.size());
+		collectElements(document.getDocumentElement(), elements);
+		if (elements.size() != ranges.size()) {
+			return false;
+		}
+		for (int i = 0; i < elements.size(); i++) {
+			if (!elements.get(i).getTagName().equals(ranges.get(i).name)) {
+				return false;
+			}
+		}
+		for (int i = 0; i < elements.size(); i++) {
+			elements.get(i).setUserData(USER_DATA_KEY, ranges.get(i), null);
+		}
+
+		final XmlPatcher patcher = new XmlPatcher(source);
+		EventListener listener = new EventListener() {
+			public void handleEvent(Event event) {
+				patcher.changed(event);
+			}
+		};
+		for (String type : MUTATION_EVENTS) {
+			((EventTarget) document).addEventListener(type, listener, true);
+		}
+		document.setUserData(USER_DATA_KEY, patcher, null);
+		return true;
+	}
+
+	/**
+	 * Writes a document by patching its source if it has been attached.
+	 * 
+	 * @param document Document to write.
+	 * @param writer Writer to write to.
+	 * @param encoding Encoding of the output, characters it cannot represent are written as character references.
+	 * @return If the document has been written, otherwise it has to be serialized.
+	 * @throws IOException If the output cannot be written.
+	 */
+	public static boolean write(Document document, Writer writer, String encoding) throws IOException {
+		Object patcher = document.getUserData(USER_DATA_KEY);
+		if (!(patcher instanceof XmlPatcher)) {
+			return false;
+		}
+		return ((XmlPatcher) patcher).patch(writer, Charset.forName(encoding).newEncoder());
+	}
+
+	protected void changed(Event event) {
+		MutationEvent mutation = (MutationEvent) event;
+		Node target = (Node) mutation.getTarget();
+		if (mutation.getPrevValue() != null && mutation.getPrevValue().equals(mutation.getNewValue())) {
+			return;
+		}
+		boolean attributes = "DOMAttrModified".equals(event.getType());
+		Node node;
+		if (attributes) {
+			node = target;
+		} else if ("DOMCharacterDataModified".equals(event.getType())) {
+			node = target.getParentNode();
+		} else {
+			node = mutation.getRelatedNode();
+		}
+		if (node != null && node.getNodeType() == Node.ATTRIBUTE_NODE) {
+			node = ((Attr) node).getOwnerElement();
+			attributes = true;
+		}
+		if (isInserted(node)) {
+			// Inserted nodes are written as they are when the document is written
+			return;
+		}
+		boolean removal = "DOMNodeRemoved".equals(event.getType());
+		boolean insertion = "DOMNodeInserted".equals(event.getType());
+		Element owner = getRanged(node);
+		int offset = insertion && owner == node ? getInsertionOffset(target, getRange(owner)) : -1;
+		if (owner == null) {
+			unpatchable = true;
+		} else if (removal && owner == node && inserted.containsKey(target)) {
+			inserted.remove(target);
+		} else if (removal && owner == node && getRange(target) != null) {
+			removed.put((Element) target, owner);
+		} else if (offset >= 0) {
+			inserted.put(target, new Insertion(owner, offset));
+		} else if (attributes && owner == node) {
+			attributesChanged.add(owner);
+		} else {
+			contentChanged.add(owner);
+		}
+	}
+
+	/**
+	 * @param node Node just inserted in an element of the source.
+	 * @param parentRange Range of the element.
+	 * @return Offset of the source the node is written at, -1 if its neighbours do not determine it.
+	 */
+	protected int getInsertionOffset(Node node, Range parentRange) {
+		Node previous = node.getPreviousSibling();
+		Node next = node.getNextSibling();
+		if (inserted.containsKey(previous)) {
+			return inserted.get(previous).offset;
+		} else if (isInPlace(previous)) {
+			return getRange(previous).end;
+		} else if (inserted.containsKey(next)) {
+			return inserted.get(next).offset;
+		} else if (isInPlace(next)) {
+			return getRange(next).start;
+		} else if (parentRange.empty) {
+			return -1;
+		} else if (previous == null) {
+			return parentRange.startTagEnd;
+		} else if (next == null) {
+			return parentRange.contentEnd;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return If the node is an element of the source that has not been moved.
+	 */
+	protected boolean isInPlace(Node node) {
+		return node != null && getRange(node) != null && !removed.containsKey(node);
+	}
+
+	/**
+	 * @return If the node is an inserted node or is contained by one.
+	 */
+	protected boolean isInserted(Node node) {
+		for (Node current = node; current != null && !isInPlace(current); current = current.getParentNode()) {
+			if (inserted.containsKey(current)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return If the content of the element or of one of its ancestors is written again.
+	 */
+	protected boolean isRewritten(Element element) {
+		for (Node current = element; current != null; current = current.getParentNode()) {
+			if (contentChanged.contains(current)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	protected boolean patch(Writer writer, CharsetEncoder encoder) throws IOException {
+		if (unpatchable) {
+			return false;
+		}
+		List<Splice> splices = new ArrayList<Splice>();
+		for (Map.Entry<Element, Element> removal : removed.entrySet()) {
+			Range range = getRange(removal.getKey());
+			if (!isRewritten(removal.getValue())) {
+				splices.add(new Splice(range.start, range.end, removal.getKey(), Splice.REMOVE));
+			}
+		}
+		for (Map.Entry<Node, Insertion> insertion : inserted.entrySet()) {
+			Insertion value = insertion.getValue();
+			if (insertion.getKey().getParentNode() == value.parent && !isRewritten(value.parent)) {
+				splices.add(new Splice(value.offset, value.offset, insertion.getKey(), Splice.INSERT));
+			}
+		}
+		for (Element element : contentChanged) {
+			Range range = getRange(element);
+			if (range.empty) {
+				// An empty-element tag has no content range
+				splices.add(new Splice(range.start, range.end, element, Splice.ELEMENT));
+			} else {
+				splices.add(new Splice(range.startTagEnd, range.contentEnd, element, Splice.CONTENT));
+			}
+		}
+		for (Element element : attributesChanged) {
+			if (!contentChanged.contains(element) || !getRange(element).empty) {
+				Range range = getRange(element);
+				splices.add(new Splice(range.start, range.startTagEnd, element, Splice.START_TAG));
+			}
+		}
+		Collections.sort(splices);
+
+		int position = 0;
+		for (Splice splice : splices) {
+			if (splice.start < position) {
+				// Inside an element already replaced
+				continue;
+			}
+			writer.write(source, position, splice.start - position);
+			if (splice.mode == Splice.ELEMENT || splice.mode == Splice.INSERT) {
+				writeNode(splice.node, writer, encoder);
+			} else if (splice.mode == Splice.CONTENT) {
+				writeChildren(splice.node, writer, encoder);
+			} else if (splice.mode == Splice.START_TAG) {
+				writeStartTag((Element) splice.node, getRange(splice.node).empty, writer, encoder);
+			}
+			position = splice.end;
+		}
+		writer.write(source, position, source.length() - position);
+		writer.flush();
+		return true;
+	}
+
+	protected void writeNode(Node node, Writer writer, CharsetEncoder encoder) throws IOException {
+		switch (node.getNodeType()) {
+			case Node.ELEMENT_NODE:
+				Element element = (Element) node;
+				writeStartTag(element, !element.hasChildNodes(), writer, encoder);
+				if (element.hasChildNodes()) {
+					writeChildren(element, writer, encoder);
+					writer.write("</");
+					writer.write(element.getTagName());
+					writer.write('>');
+				}
+				break;
+			case Node.TEXT_NODE:
+				writeEscaped(node.getNodeValue(), false, writer, encoder);
+				break;
+			case Node.CDATA_SECTION_NODE:
+				writer.write("<![CDATA[");
+				writer.write(node.getNodeValue().replace("]]>", "]]]]><![CDATA[>"));
+				writer.write("]]>");
+				break;
+			case Node.COMMENT_NODE:
+				writer.write("<!--");
+				writer.write(node.getNodeValue());
+				writer.write("-->");
+				break;
+			case Node.PROCESSING_INSTRUCTION_NODE:
+				writer.write("<?");
+				writer.write(((ProcessingInstruction) node).getTarget());
+				String data = ((ProcessingInstruction) node).getData();
+				if (data != null && data.length() > 0) {
+					writer.write(' ');
+					writer.write(data);
+				}
+				writer.write("?>");
+				break;
+			case Node.ENTITY_REFERENCE_NODE:
+				writer.write('&');
+				writer.write(node.getNodeName());
+				writer.write(';');
+				break;
+			default:
+				writeChildren(node, writer, encoder);
+		}
+	}
+
+	protected void writeChildren(Node node, Writer writer, CharsetEncoder encoder) throws IOException {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			writeNode(child, writer, encoder);
+		}
+	}
+
+	/**
+	 * Writes a start tag, with the attributes of the source first and in their original order.
+	 */
+	protected void writeStartTag(Element element, boolean empty, Writer writer, CharsetEncoder encoder) throws IOException {
+		writer.write('<');
+		writer.write(element.getTagName());
+		NamedNodeMap attributes = element.getAttributes();
+		Set<String> written = new HashSet<String>();
+		Range range = getRange(element);
+		if (range != null) {
+			for (String name : range.attributes) {
+				Attr attribute = (Attr) attributes.getNamedItem(name);
+				if (attribute != null) {
+					writeAttribute(attribute, writer, encoder);
+					written.add(name);
+				}
+			}
+		}
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Attr attribute = (Attr) attributes.item(i);
+			if (!written.contains(attribute.getName())) {
+				writeAttribute(attribute, writer, encoder);
+			}
+		}
+		writer.write(empty ? "/>" : ">");
+	}
+
+	protected void writeAttribute(Attr attribute, Writer writer, CharsetEncoder encoder) throws IOException {
+		writer.write(' ');
+		writer.write(attribute.getName());
+		writer.write("=\"");
+		writeEscaped(attribute.getValue(), true, writer, encoder);
+		writer.write('"');
+	}
+
+	protected void writeEscaped(String text, boolean attribute, Writer writer, CharsetEncoder encoder) throws IOException {
+		int start = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			String replacement = null;
+			if (c == '&') {
+				replacement = "&amp;";
+			} else if (c == '<') {
+				replacement = "&lt;";
+			} else if (c == '>') {
+				replacement = "&gt;";
+			} else if (attribute && c == '"') {
+				replacement = "&quot;";
+			} else if (attribute && (c == '\n' || c == '\r' || c == '\t')) {
+				replacement = "&#" + (int) c + ";";
+			} else if (c >= 0x80 && (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) && !encoder.canEncode(c)) {
+				replacement = "&#x" + Integer.toHexString(c) + ";";
+			} else if (Character.isHighSurrogate(c) && i + 1 < text.length() && !encoder.canEncode(text.substring(i, i + 2))) {
+				replacement = "&#x" + Integer.toHexString(text.codePointAt(i)) + ";";
+				writer.write(text, start, i - start);
+				writer.write(replacement);
+				start = i + 2;
+				i++;
+				continue;
+			}
+			if (replacement != null) {
+				writer.write(text, start, i - start);
+				writer.write(replacement);
+				start = i + 1;
+			}
+		}
+		writer.write(text, start, text.length() - start);
+	}
+
+	protected static Element getRanged(Node node) {
+		for (Node current = node; current != null; current = current.getParentNode()) {
+			if (current.getNodeType() == Node.ELEMENT_NODE && getRange(current) != null) {
+				return (Element) current;
+			}
+		}
+		return null;
+	}
+
+	protected static Range getRange(Node node) {
+		return (Range) node.getUserData(USER_DATA_KEY);
+	}
+
+	protected static void collectElements(Element element, List<Element> elements) {
+		elements.add(element);
+		for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+			if (child.getNodeType() == Node.ELEMENT_NODE) {
+				collectElements((Element) child, elements);
+			}
+		}
+	}
+
+	/**
+	 * Finds the elements of a document source, in document order.
+	 * 
+	 * @param source Text of the document.
+	 * @return Ranges of the elements, null if the source cannot be scanned.
+	 */
+	protected static List<Range> scan(String source) {
+		List<Range> ranges = new ArrayList<Range>();
+		LinkedList<Range> open = new LinkedList<Range>();
+		int length = source.length();
+		int i = source.indexOf('<');
+		while (i >= 0 && i < length) {
+			if (source.startsWith("<!--", i)) {
+				i = skipPast(source, i + 4, "-->");
+			} else if (source.startsWith("<![CDATA[", i)) {
+				i = skipPast(source, i + 9, "]]>");
+			} else if (source.startsWith("<?", i)) {
+				i = skipPast(source, i + 2, "?>");
+			} else if (source.startsWith("<!", i)) {
+				i = skipDeclaration(source, i + 2);
+			} else if (source.startsWith("</", i)) {
+				if (open.isEmpty()) {
+					return null;
+				}
+				Range range = open.removeLast();
+				range.contentEnd = i;
+				i = skipPast(source, i + 2, ">");
+				range.end = i;
+			} else {
+				Range range = new Range();
+				range.start = i;
+				i = scanStartTag(source, i + 1, range);
+				if (i < 0) {
+					return null;
+				}
+				ranges.add(range);
+				if (range.empty) {
+					range.contentEnd = i;
+					range.end = i;
+				} else {
+					open.add(range);
+				}
+			}
+			if (i < 0) {
+				return null;
+			}
+			i = source.indexOf('<', i);
+		}
+		return open.isEmpty() ? ranges : null;
+	}
+
+	protected static int scanStartTag(String source, int i, Range range) {
+		int length = source.length();
+		int nameStart = i;
+		while (i < length && !isNameEnd(source.charAt(i))) {
+			i++;
+		}
+		range.name = source.substring(nameStart, i);
+		while (i < length) {
+			char c = source.charAt(i);
+			if (c == '>') {
+				range.startTagEnd = i + 1;
+				return i + 1;
+			} else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '>') {
+				range.empty = true;
+				range.startTagEnd = i + 2;
+				return i + 2;
+			} else if (Character.isWhitespace(c)) {
+				i++;
+			} else {
+				int attributeStart = i;
+				while (i < length && source.charAt(i) != '=' && !Character.isWhitespace(source.charAt(i))) {
+					i++;
+				}
+				range.attributes.add(source.substring(attributeStart, i));
+				while (i < length && source.charAt(i) != '"' && source.charAt(i) != '\'') {
+					i++;
+				}
+				if (i >= length) {
+					return -1;
+				}
+				int end = source.indexOf(source.charAt(i), i + 1);
+				if (end < 0) {
+					return -1;
+				}
+				i = end + 1;
+			}
+		}
+		return -1;
+	}
+
+	protected static int skipDeclaration(String source, int i) {
+		int depth = 0;
+		char quote = 0;
+		for (; i < source.length(); i++) {
+			char c = source.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = c;
+			} else if (c == '[') {
+				depth++;
+			} else if (c == ']') {
+				depth--;
+			} else if (c == '>' && depth == 0) {
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	protected static int skipPast(String source, int i, String end) {
+		int index = source.indexOf(end, i);
+		return index < 0 ? -1 : index + end.length();
+	}
+
+	protected static boolean isNameEnd(char c) {
+		return c == '>' || c == '/' || Character.isWhitespace(c);
+	}
+
+	/**
+	 * Offsets of an element in the source.
+	 */
+	protected static class Range {
+		String name;
+		int start;
+		int startTagEnd;
+		int contentEnd;
+		int end;
+		boolean empty;
+		List<String> attributes = new ArrayList<String>();
+	}
+
+	/**
+	 * Offset of the source a node inserted in an element of the source is written at.
+	 */
+	protected static class Insertion {
+		Element parent;
+		int offset;
+
+		Insertion(Element parent, int offset) {
+			this.parent = parent;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * Range of the source replaced by the serialization of an element, its start tag or its content, cut out
+	 * or, if empty, where an inserted node is written.
+	 */
+	protected static class Splice implements Comparable<Splice> {
+		static final int ELEMENT = 0;
+		static final int START_TAG = 1;
+		static final int CONTENT = 2;
+		static final int REMOVE = 3;
+		static final int INSERT = 4;
+
+		int start;
+		int end;
+		Node node;
+		int mode;
+
+		Splice(int start, int end, Node node, int mode) {
+			this.start = start;
+			this.end = end;
+			this.node = node;
+			this.mode = mode;
+		}
+
+		public int compareTo(Splice other) {
+			if (start != other.start) {
+				return start < other.start ? -1 : 1;
+			}
+			if (mode == INSERT && other.mode == INSERT) {
+				// Nodes inserted at the same offset are written in document order
+				return (node.compareDocumentPosition(other.node) & Node.DOCUMENT_POSITION_FOLLOWING) != 0 ? -1 : 1;
+			} else if (mode == INSERT || other.mode == INSERT) {
+				// Nodes are inserted before the splices starting at the same offset
+				return mode == INSERT ? -1 : 1;
+			}
+			// The widest splice of the same start contains the others
+			return other.end - end;
+		}
+	}
+}
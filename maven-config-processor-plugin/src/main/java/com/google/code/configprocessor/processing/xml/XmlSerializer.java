@@ -0,0 +1,767 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.charset.*;
+import java.util.*;
+
+import org.w3c.dom.*;
+
+/**
+ * Serializes documents to a writer or straight to bytes, producing the same output as the Xerces
+ * <code>XMLSerializer</code> this plugin used before: with an indent size greater than zero lines are
+ * indented and attributes wrapped at the line width, otherwise the document is written compact.
+ * <p>
+ * Output is buffered in a single char array; when writing bytes it is encoded into a direct byte buffer
+ * by an encoder kept for the lifetime of the serializer. Instances are meant to be reused for many
+ * documents, but must not be shared between threads.
+ */
+public class XmlSerializer {
+
+	private static final int BUFFER_SIZE = 8192;
+	private static final char COMPACT_LINE_SEPARATOR = '\n';
+
+	private String encoding;
+	private int lineWidth;
+	private int indentSize;
+	private String lineSeparator;
+	private boolean indenting;
+	private boolean unicode;
+	private Charset charset;
+	private CharsetEncoder printableEncoder;
+	private CharsetEncoder encoder;
+
+	private char[] buffer;
+	private int position;
+	private CharBuffer chars;
+	private ByteBuffer bytes;
+	private Writer writer;
+	private WritableByteChannel channel;
+
+	private StringBuilder line;
+	private StringBuilder text;
+	private int spaces;
+	private int thisIndent;
+	private int nextIndent;
+
+	private List<ElementState> states;
+	private int depth;
+	private List<String> preRoot;
+	private boolean started;
+	private String docTypePublicId;
+	private String docTypeSystemId;
+	private String internalSubset;
+
+	/**
+	 * @param encoding Encoding declared by the documents and used to write them as bytes.
+	 * @param lineWidth Maximum width of lines before attributes are wrapped, zero or less not to wrap.
+	 * @param indentSize Spaces added by each nesting level, zero or less to write documents compact.
+	 * @param lineSeparator Separator of indented lines. Compact output always uses a line feed.
+	 */
+	public XmlSerializer(String encoding, int lineWidth, int indentSize, String lineSeparator) {
+		this.encoding = encoding;
+		this.lineWidth = Math.max(lineWidth, 0);
+		this.indentSize = Math.max(indentSize, 0);
+		this.lineSeparator = lineSeparator;
+		this.indenting = this.indentSize > 0;
+		this.charset = Charset.forName(encoding);
+		this.unicode = charset.name().startsWith("UTF-");
+		this.printableEncoder = charset.newEncoder();
+		this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+		this.buffer = new char[BUFFER_SIZE];
+		this.chars = CharBuffer.wrap(buffer);
+		this.line = new StringBuilder(80);
+		this.text = new StringBuilder(20);
+		this.states = new ArrayList<ElementState>();
+		this.states.add(new ElementState());
+		this.preRoot = new ArrayList<String>();
+	}
+
+	/**
+	 * Writes a document as characters. The writer is flushed but not closed.
+	 */
+	public void serialize(Document document, Writer writer) throws IOException {
+		this.writer = writer;
+		try {
+			serialize(document);
+			flushBuffer();
+			writer.flush();
+		} finally {
+			reset();
+		}
+	}
+
+	/**
+	 * Writes a document encoded in the encoding of the serializer. The stream is not closed.
+	 */
+	public void serialize(Document document, OutputStream output) throws IOException {
+		serialize(document, Channels.newChannel(output));
+		output.flush();
+	}
+
+	/**
+	 * Writes a document encoded in the encoding of the serializer. The channel is not closed.
+	 */
+	public void serialize(Document document, WritableByteChannel channel) throws IOException {
+		if (bytes == null) {
+			bytes = ByteBuffer.allocateDirect((int) (BUFFER_SIZE * encoder.averageBytesPerChar()) + 16);
+		}
+		this.channel = channel;
+		try {
+			serialize(document);
+			flushBuffer();
+			finishEncoding();
+		} finally {
+			encoder.reset();
+			bytes.clear();
+			reset();
+		}
+	}
+
+	protected void serialize(Document document) throws IOException {
+		serializeNode(document);
+		serializePreRoot();
+		flush();
+	}
+
+	protected void serializeNode(Node node) throws IOException {
+		switch (node.getNodeType()) {
+			case Node.TEXT_NODE:
+				String value = node.getNodeValue();
+				if (value != null && (!indenting || getElementState().preserveSpace || value.replace('\n', ' ').trim().length() != 0)) {
+					characters(value);
+				}
+				break;
+			case Node.CDATA_SECTION_NODE:
+				if (node.getNodeValue() != null) {
+					getElementState().doCData = true;
+					characters(node.getNodeValue());
+					getElementState().doCData = false;
+				}
+				break;
+			case Node.COMMENT_NODE:
+				if (node.getNodeValue() != null) {
+					comment(node.getNodeValue());
+				}
+				break;
+			case Node.ENTITY_REFERENCE_NODE:
+				getElementState().doCData = false;
+				content();
+				printText("&");
+				printText(node.getNodeName());
+				printText(";");
+				break;
+			case Node.PROCESSING_INSTRUCTION_NODE:
+				processingInstruction(node.getNodeName(), node.getNodeValue());
+				break;
+			case Node.ELEMENT_NODE:
+				serializeElement((Element) node);
+				break;
+			case Node.DOCUMENT_NODE:
+				DocumentType docType = ((Document) node).getDoctype();
+				if (docType != null) {
+					docTypePublicId = docType.getPublicId();
+					docTypeSystemId = docType.getSystemId();
+					internalSubset = docType.getInternalSubset() == null ? "" : docType.getInternalSubset();
+				}
+				serializeChildren(node);
+				break;
+			case Node.DOCUMENT_FRAGMENT_NODE:
+				serializeChildren(node);
+				break;
+			default:
+				break;
+		}
+	}
+
+	protected void serializeChildren(Node node) throws IOException {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			serializeNode(child);
+		}
+	}
+
+	protected void serializeElement(Element element) throws IOException {
+		String tagName = element.getTagName();
+		ElementState state = getElementState();
+
+		if (depth == 0) {
+			if (!started) {
+				startDocument(tagName);
+			}
+		} else {
+			if (state.empty) {
+				printText('>');
+			}
+			if (state.inCData) {
+				printText("]]>");
+				state.inCData = false;
+			}
+			if (indenting && !state.preserveSpace && (state.empty || state.afterElement || state.afterComment)) {
+				breakLine();
+			}
+		}
+
+		boolean preserveSpace = state.preserveSpace;
+		printText('<');
+		printText(tagName);
+		indent();
+
+		NamedNodeMap attributes = element.getAttributes();
+		for (int i = 0; i < attributes.getLength(); i++) {
+			Attr attribute = (Attr) attributes.item(i);
+			String name = attribute.getName();
+			String value = attribute.getValue() == null ? "" : attribute.getValue();
+			if (attribute.getSpecified()) {
+				printSpace();
+				printText(name);
+				printText("=\"");
+				printEscaped(value);
+				printText('"');
+			}
+			if ("xml:space".equals(name)) {
+				preserveSpace = "preserve".equals(value);
+			}
+		}
+
+		if (element.hasChildNodes()) {
+			enterElementState(tagName, preserveSpace);
+			serializeChildren(element);
+			endElement();
+		} else {
+			unindent();
+			printText("/>");
+			state.afterElement = true;
+			state.afterComment = false;
+			state.empty = false;
+			if (depth == 0) {
+				flush();
+			}
+		}
+	}
+
+	protected void endElement() throws IOException {
+		unindent();
+		ElementState state = getElementState();
+		if (state.empty) {
+			printText("/>");
+		} else {
+			if (state.inCData) {
+				printText("]]>");
+			}
+			if (indenting && !state.preserveSpace && (state.afterElement || state.afterComment)) {
+				breakLine();
+			}
+			printText("</");
+			printText(state.rawName);
+			printText('>');
+		}
+		depth--;
+		state = getElementState();
+		state.afterElement = true;
+		state.afterComment = false;
+		state.empty = false;
+		if (depth == 0) {
+			flush();
+		}
+	}
+
+	/**
+	 * Writes the declaration and document type once the root element is reached, followed by the comments
+	 * and processing instructions preceding it.
+	 */
+	protected void startDocument(String rootTagName) throws IOException {
+		printText("<?xml version=\"1.0\" encoding=\"");
+		printText(encoding);
+		printText("\"?>");
+		breakLine();
+
+		if (docTypeSystemId != null) {
+			printText("<!DOCTYPE ");
+			printText(rootTagName);
+			if (docTypePublicId != null) {
+				printText(" PUBLIC ");
+				printDoctypeURL(docTypePublicId);
+				if (indenting) {
+					breakLine();
+					for (int i = 0; i < 18 + rootTagName.length(); i++) {
+						printText(" ");
+					}
+				} else {
+					printText(" ");
+				}
+				printDoctypeURL(docTypeSystemId);
+			} else {
+				printText(" SYSTEM ");
+				printDoctypeURL(docTypeSystemId);
+			}
+			if (internalSubset != null && internalSubset.length() > 0) {
+				printText(" [");
+				printText(internalSubset, true);
+				printText(']');
+			}
+			printText(">");
+			breakLine();
+		} else if (internalSubset != null && internalSubset.length() > 0) {
+			printText("<!DOCTYPE ");
+			printText(rootTagName);
+			printText(" [");
+			printText(internalSubset, true);
+			printText("]>");
+			breakLine();
+		}
+
+		started = true;
+		serializePreRoot();
+	}
+
+	protected void serializePreRoot() throws IOException {
+		for (String markup : preRoot) {
+			printText(markup, true);
+			if (indenting) {
+				breakLine();
+			}
+		}
+		preRoot.clear();
+	}
+
+	protected void characters(String value) throws IOException {
+		ElementState state = content();
+		if (state.inCData || state.doCData) {
+			if (!state.inCData) {
+				printText("<![CDATA[");
+				state.inCData = true;
+			}
+			printCDATAText(value);
+		} else {
+			printText(value, false);
+		}
+	}
+
+	protected void comment(String value) throws IOException {
+		ElementState state = content();
+		int index = value.indexOf("-->");
+		String markup = "<!--" + (index >= 0 ? value.substring(0, index) : value) + "-->";
+		if (depth == 0) {
+			preRoot.add(markup);
+		} else {
+			if (indenting && !state.preserveSpace) {
+				breakLine();
+			}
+			indent();
+			printText(markup, true);
+			unindent();
+		}
+		state.afterComment = true;
+		state.afterElement = false;
+	}
+
+	protected void processingInstruction(String target, String data) throws IOException {
+		ElementState state = content();
+		StringBuilder markup = new StringBuilder("<?");
+		int index = target.indexOf("?>");
+		markup.append(index >= 0 ? target.substring(0, index) : target);
+		if (data != null) {
+			index = data.indexOf("?>");
+			markup.append(' ').append(index >= 0 ? data.substring(0, index) : data);
+		}
+		markup.append("?>");
+		if (depth == 0) {
+			preRoot.add(markup.toString());
+		} else {
+			indent();
+			printText(markup.toString(), true);
+			unindent();
+			if (indenting) {
+				state.afterElement = true;
+			}
+		}
+	}
+
+	/**
+	 * Must be called before writing content to the current element, closes its start tag and any CDATA
+	 * section left open that is not being continued.
+	 */
+	protected ElementState content() throws IOException {
+		ElementState state = getElementState();
+		if (depth > 0) {
+			if (state.inCData && !state.doCData) {
+				printText("]]>");
+				state.inCData = false;
+			}
+			if (state.empty) {
+				printText('>');
+				state.empty = false;
+			}
+			state.afterElement = false;
+			state.afterComment = false;
+		}
+		return state;
+	}
+
+	protected ElementState getElementState() {
+		return states.get(depth);
+	}
+
+	protected void enterElementState(String rawName, boolean preserveSpace) {
+		depth++;
+		if (depth == states.size()) {
+			states.add(new ElementState());
+		}
+		ElementState state = states.get(depth);
+		state.rawName = rawName;
+		state.preserveSpace = preserveSpace;
+		state.empty = true;
+		state.afterElement = false;
+		state.afterComment = false;
+		state.inCData = false;
+		state.doCData = false;
+	}
+
+	/**
+	 * Prints text content, escaping markup characters and the ones the encoding cannot represent, or
+	 * verbatim for comments, processing instructions and the internal subset.
+	 */
+	protected void printText(String value, boolean unescaped) throws IOException {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			if (!isValid(ch)) {
+				if (++i < length) {
+					surrogates(ch, value.charAt(i), true);
+				} else {
+					fatalError(ch);
+				}
+			} else if (unescaped) {
+				printText(ch);
+			} else if (ch == '\r') {
+				printHex(ch);
+			} else if (ch == '<') {
+				printText("&lt;");
+			} else if (ch == '&') {
+				printText("&amp;");
+			} else if (ch == '>') {
+				printText("&gt;");
+			} else if (ch == '\n' || ch == '\t' || (ch >= ' ' && isPrintable(ch))) {
+				printText(ch);
+			} else {
+				printHex(ch);
+			}
+		}
+	}
+
+	/**
+	 * Prints an attribute value.
+	 */
+	protected void printEscaped(String value) throws IOException {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			if (!isValid(ch)) {
+				if (++i < length) {
+					surrogates(ch, value.charAt(i), false);
+				} else {
+					fatalError(ch);
+				}
+			} else if (ch == '\n' || ch == '\r' || ch == '\t') {
+				printHex(ch);
+			} else if (ch == '<') {
+				printText("&lt;");
+			} else if (ch == '&') {
+				printText("&amp;");
+			} else if (ch == '"') {
+				printText("&quot;");
+			} else if (ch >= ' ' && isPrintable(ch)) {
+				printText(ch);
+			} else {
+				printHex(ch);
+			}
+		}
+	}
+
+	/**
+	 * Prints the content of a CDATA section, splitting it around <code>]]&gt;</code> and the characters the
+	 * encoding cannot represent.
+	 */
+	protected void printCDATAText(String value) throws IOException {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char ch = value.charAt(i);
+			if (ch == ']' && i + 2 < length && value.charAt(i + 1) == ']' && value.charAt(i + 2) == '>') {
+				printText("]]]]><![CDATA[>");
+				i += 2;
+			} else if (!isValid(ch)) {
+				if (++i < length) {
+					surrogates(ch, value.charAt(i), true);
+				} else {
+					fatalError(ch);
+				}
+			} else if ((ch >= ' ' && isPrintable(ch) && ch != 0xF7) || ch == '\n' || ch == '\r' || ch == '\t') {
+				printText(ch);
+			} else {
+				printText("]]>&#x");
+				printText(Integer.toHexString(ch));
+				printText(";<![CDATA[");
+			}
+		}
+	}
+
+	/**
+	 * Prints a supplementary character as a character reference, splitting the CDATA section if inside one.
+	 */
+	protected void surrogates(char high, char low, boolean inContent) throws IOException {
+		if (!Character.isHighSurrogate(high)) {
+			fatalError(high);
+		} else if (!Character.isLowSurrogate(low)) {
+			fatalError(low);
+		} else {
+			int codePoint = Character.toCodePoint(high, low);
+			if (inContent && content().inCData) {
+				printText("]]>&#x");
+				printText(Integer.toHexString(codePoint));
+				printText(";<![CDATA[");
+			} else {
+				printHex(codePoint);
+			}
+		}
+	}
+
+	protected void printDoctypeURL(String url) throws IOException {
+		printText('"');
+		for (int i = 0; i < url.length(); i++) {
+			char ch = url.charAt(i);
+			if (ch == '"' || ch < ' ' || ch > 0x7F) {
+				printText('%');
+				printText(Integer.toHexString(ch));
+			} else {
+				printText(ch);
+			}
+		}
+		printText('"');
+	}
+
+	protected void printHex(int ch) throws IOException {
+		printText("&#x");
+		printText(Integer.toHexString(ch));
+		printText(';');
+	}
+
+	protected boolean isPrintable(char ch) {
+		return ch < 0x80 || unicode || printableEncoder.canEncode(ch);
+	}
+
+	protected static boolean isValid(char ch) {
+		return (ch >= 0x20 && ch <= 0xD7FF) || ch == '\n' || ch == '\r' || ch == '\t' || (ch >= 0xE000 && ch <= 0xFFFD);
+	}
+
+	protected void fatalError(char ch) throws IOException {
+		throw new IOException("The character '" + ch + "' is an invalid XML character");
+	}
+
+	// Printing: text is collected until a space or line break, so a line is wrapped before the attribute
+	// that does not fit in it. Compact output goes straight to the buffer.
+
+	protected void printText(String value) throws IOException {
+		if (indenting) {
+			text.append(value);
+		} else {
+			write(value);
+		}
+	}
+
+	protected void printText(char ch) throws IOException {
+		if (indenting) {
+			text.append(ch);
+		} else {
+			write(ch);
+		}
+	}
+
+	protected void printSpace() throws IOException {
+		if (!indenting) {
+			write(' ');
+			return;
+		}
+		if (text.length() > 0) {
+			if (lineWidth > 0 && thisIndent + line.length() + spaces + text.length() > lineWidth) {
+				flushLine();
+				write(lineSeparator);
+			}
+			appendText();
+		}
+		spaces++;
+	}
+
+	protected void breakLine() throws IOException {
+		if (!indenting) {
+			write(COMPACT_LINE_SEPARATOR);
+			return;
+		}
+		if (text.length() > 0) {
+			appendText();
+		}
+		flushLine();
+		write(lineSeparator);
+	}
+
+	protected void flush() throws IOException {
+		if (indenting && (line.length() > 0 || text.length() > 0)) {
+			breakLine();
+		}
+	}
+
+	protected void indent() {
+		nextIndent += indentSize;
+	}
+
+	protected void unindent() {
+		nextIndent = Math.max(nextIndent - indentSize, 0);
+		if (line.length() + spaces + text.length() == 0) {
+			thisIndent = nextIndent;
+		}
+	}
+
+	private void appendText() {
+		for (; spaces > 0; spaces--) {
+			line.append(' ');
+		}
+		line.append(text);
+		text.setLength(0);
+	}
+
+	private void flushLine() throws IOException {
+		if (line.length() > 0) {
+			int indent = thisIndent;
+			if (2 * indent > lineWidth && lineWidth > 0) {
+				indent = lineWidth / 2;
+			}
+			for (; indent > 0; indent--) {
+				write(' ');
+			}
+			thisIndent = nextIndent;
+			spaces = 0;
+			write(line);
+			line.setLength(0);
+		}
+	}
+
+	// Output buffer
+
+	private void write(char ch) throws IOException {
+		if (position == buffer.length) {
+			flushBuffer();
+		}
+		buffer[position++] = ch;
+	}
+
+	private void write(CharSequence value) throws IOException {
+		int length = value.length();
+		int offset = 0;
+		while (offset < length) {
+			if (position == buffer.length) {
+				flushBuffer();
+			}
+			int count = Math.min(length - offset, buffer.length - position);
+			if (value instanceof String) {
+				((String) value).getChars(offset, offset + count, buffer, position);
+			} else {
+				((StringBuilder) value).getChars(offset, offset + count, buffer, position);
+			}
+			position += count;
+			offset += count;
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+		if (writer != null) {
+			writer.write(buffer, 0, position);
+			position = 0;
+			return;
+		}
+		chars.limit(position).position(0);
+		while (encoder.encode(chars, bytes, false).isOverflow()) {
+			drain();
+		}
+		// A high surrogate at the end of the buffer is kept until its pair arrives
+		int remaining = chars.remaining();
+		System.arraycopy(buffer, chars.position(), buffer, 0, remaining);
+		position = remaining;
+	}
+
+	private void finishEncoding() throws IOException {
+		chars.limit(position).position(0);
+		while (encoder.encode(chars, bytes, true).isOverflow()) {
+			drain();
+		}
+		while (encoder.flush(bytes).isOverflow()) {
+			drain();
+		}
+		drain();
+		position = 0;
+	}
+
+	private void drain() throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+
+	private void reset() {
+		writer = null;
+		channel = null;
+		position = 0;
+		line.setLength(0);
+		text.setLength(0);
+		spaces = 0;
+		thisIndent = 0;
+		nextIndent = 0;
+		depth = 0;
+		states.get(0).reset();
+		preRoot.clear();
+		started = false;
+		docTypePublicId = null;
+		docTypeSystemId = null;
+		internalSubset = null;
+	}
+
+	/**
+	 * State of an element being written, the document itself is the state at depth zero.
+	 */
+	protected static class ElementState {
+
+		String rawName;
+		boolean preserveSpace;
+		boolean empty;
+		boolean afterElement;
+		boolean afterComment;
+		boolean inCData;
+		boolean doCData;
+
+		void reset() {
+			rawName = null;
+			preserveSpace = false;
+			empty = false;
+			afterElement = false;
+			afterComment = false;
+			inCData = false;
+			doCData = false;
+		}
+	}
+}
@@ -32,6 +32,14 @@ public class IOUtils {
 		}
 	}
 
+	public static void copy(InputStream input, OutputStream output) throws IOException {
+		byte[] buffer = new byte[8192];
+		int n = 0;
+		while (-1 != (n = input.read(buffer))) {
+			output.write(buffer, 0, n);
+		}
+	}
+
 	public static final void forceMkdirs(File file) throws IOException {
 		if (file.exists() && file.isFile()) {
 			throw new IOException("File [" + file + "] exists and is not a directory. Unable to create directory.");
@@ -20,9 +20,21 @@ import static org.easymock.classextension.EasyMock.*;
 import static org.junit.Assert.*;
 
 import java.io.*;
+import java.util.*;
 
+import org.apache.maven.plugin.logging.*;
+import org.codehaus.plexus.component.configurator.expression.*;
 import org.junit.*;
 
+import com.google.code.configprocessor.cache.*;
+import com.google.code.configprocessor.expression.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.maven.*;
+import com.google.code.configprocessor.pipeline.*;
+import com.google.code.configprocessor.processing.*;
+import com.google.code.configprocessor.util.*;
+
 public class ConfigProcessorTest {
 
 	private ConfigProcessor configProcessor;
@@ -62,4 +74,346 @@ public class ConfigProcessorTest {
 		assertEquals(Transformation.XML_TYPE, configProcessor.getInputType(transformation, new File("test.xml")));
 		assertEquals(Transformation.XML_TYPE, configProcessor.getInputType(transformation, new File("test.something")));
 	}
+
+	@Test
+	public void testChainedTransformations() throws Exception {
+		File directory = File.createTempFile("chain", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File input = write(directory, "input.xml", "<root><a>1</a><b>2</b></root>");
+			List<Transformation> transformations = new ArrayList<Transformation>();
+			transformations.add(newTransformation(input, write(directory, "first.xml", "<processor><modify><name>/root/a/text()</name><value>3</value></modify></processor>")));
+			transformations.add(newTransformation(input, write(directory, "second.xml", "<processor><remove><name>/root/b</name></remove></processor>")));
+
+			final List<String> inputs = new ArrayList<String>();
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true) {
+				@Override
+				protected byte[] transform(ExecutionContext context, List<ActionProcessor> processors, String inputName, Resource input, List<File> outputs, List<String> configNames, List<Action> actions) throws ConfigProcessorException {
+					inputs.add(inputName);
+					return super.transform(context, processors, inputName, input, outputs, configNames, actions);
+				}
+			};
+			execute(transformations);
+
+			assertEquals(Collections.singletonList(input.getPath()), inputs);
+			String output = read(input);
+			assertTrue(output, output.contains("<a>3</a>"));
+			assertFalse(output, output.contains("<b>"));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testChainedNamespacedAddAndModify() throws Exception {
+		File directory = File.createTempFile("chain", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File input = write(directory, "input.xml", "<beans xmlns=\"urn:b\"><bean id=\"a\"/></beans>");
+			List<Transformation> transformations = new ArrayList<Transformation>();
+			transformations.add(newTransformation(input, write(directory, "first.xml", "<processor><add><inside>/b:beans</inside><value><![CDATA[<bean id=\"x\"/>]]></value></add></processor>")));
+			transformations.add(newTransformation(input, write(directory, "second.xml", "<processor><modify><name>/b:beans/b:bean[@id='x']/@id</name><value>y</value></modify></processor>")));
+
+			final List<String> inputs = new ArrayList<String>();
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, Collections.singletonMap("b", "urn:b"), directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true) {
+				@Override
+				protected byte[] transform(ExecutionContext context, List<ActionProcessor> processors, String inputName, Resource input, List<File> outputs, List<String> configNames, List<Action> actions) throws ConfigProcessorException {
+					inputs.add(inputName);
+					return super.transform(context, processors, inputName, input, outputs, configNames, actions);
+				}
+			};
+			execute(transformations);
+
+			assertEquals(Collections.singletonList(input.getPath()), inputs);
+			String output = read(input);
+			assertTrue(output, output.contains("id=\"y\""));
+			assertFalse(output, output.contains("id=\"x\""));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testIntermediateOutput() throws Exception {
+		File directory = File.createTempFile("chain", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File input = write(directory, "input.xml", "<root><a>1</a><b>2</b></root>");
+			File intermediate = new File(directory, "intermediate.xml");
+			File output = new File(directory, "output.xml");
+			List<Transformation> transformations = new ArrayList<Transformation>();
+			transformations.add(newTransformation(input, write(directory, "first.xml", "<processor><modify><name>/root/a/text()</name><value>3</value></modify></processor>")));
+			transformations.get(0).setOutput(intermediate.getPath());
+			transformations.get(0).setIntermediate(true);
+			transformations.add(newTransformation(intermediate, write(directory, "second.xml", "<processor><remove><name>/root/b</name></remove></processor>")));
+			transformations.get(1).setOutput(output.getPath());
+
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true);
+			execute(transformations);
+
+			assertFalse(intermediate.exists());
+			String result = read(output);
+			assertTrue(result, result.contains("<a>3</a>"));
+			assertFalse(result, result.contains("<b>"));
+
+			transformations.get(0).setIntermediate(false);
+			execute(transformations);
+			assertTrue(read(intermediate).contains("<b>2</b>"));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testResultCache() throws Exception {
+		File directory = File.createTempFile("cache", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File config = write(directory, "config.xml", "<processor><modify><name>/root/a/text()</name><value>3</value></modify></processor>");
+			File first = write(directory, "first.xml", "<root><a>1</a></root>");
+			File second = write(directory, "second.xml", "<root><a>1</a></root>");
+			File third = write(directory, "third.xml", "<root><a>2</a></root>");
+			List<Transformation> transformations = new ArrayList<Transformation>();
+			for (File input : new File[] { first, second, third }) {
+				transformations.add(newTransformation(input, config));
+				transformations.get(transformations.size() - 1).setOutput(input.getPath() + ".out");
+			}
+
+			final List<String> inputs = new ArrayList<String>();
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true) {
+				@Override
+				protected byte[] transform(ExecutionContext context, List<ActionProcessor> processors, String inputName, Resource input, List<File> outputs, List<String> configNames, List<Action> actions) throws ConfigProcessorException {
+					inputs.add(inputName);
+					return super.transform(context, processors, inputName, input, outputs, configNames, actions);
+				}
+			};
+			configProcessor.setResultCache(new ResultCache(ResultCache.DEFAULT_MAX_SIZE));
+			execute(transformations);
+
+			assertEquals(Arrays.asList(first.getPath(), third.getPath()), inputs);
+			String result = read(new File(first.getPath() + ".out"));
+			assertTrue(result, result.contains("<a>3</a>"));
+			assertEquals(result, read(new File(second.getPath() + ".out")));
+			assertEquals(result, read(new File(third.getPath() + ".out")));
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testIncrementalBuild() throws Exception {
+		File directory = File.createTempFile("incremental", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File input = write(directory, "input.xml", "<root><a>1</a></root>");
+			File config = write(directory, "config.xml", "<processor><modify><name>/root/a/text()</name><value>3</value></modify></processor>");
+			File output = new File(directory, "output.xml");
+			Transformation transformation = newTransformation(input, config);
+			transformation.setOutput(output.getPath());
+
+			final Set<File> changed = new HashSet<File>();
+			final List<File> refreshed = new ArrayList<File>();
+			ChangeTracker changeTracker = new ChangeTracker() {
+				public boolean isIncremental() {
+					return true;
+				}
+
+				public boolean hasDelta(File file) {
+					return changed.contains(file);
+				}
+
+				public void refresh(File file) {
+					refreshed.add(file);
+				}
+			};
+
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true);
+			configProcessor.setChangeTracker(changeTracker);
+			execute(Collections.singletonList(transformation));
+			assertEquals(Collections.singletonList(output), refreshed);
+
+			refreshed.clear();
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true);
+			configProcessor.setChangeTracker(changeTracker);
+			execute(Collections.singletonList(transformation));
+			assertTrue(refreshed.isEmpty());
+
+			changed.add(config);
+			execute(Collections.singletonList(transformation));
+			assertEquals(Collections.singletonList(output), refreshed);
+			assertTrue(read(output).contains("<a>3</a>"));
+
+			// Inline rules and expression values may change with the pom
+			File pom = write(directory, "pom.xml", "<project/>");
+			configProcessor.setBuildFiles(Collections.singletonList(pom));
+			changed.clear();
+			refreshed.clear();
+			execute(Collections.singletonList(transformation));
+			assertTrue(refreshed.isEmpty());
+
+			changed.add(pom);
+			execute(Collections.singletonList(transformation));
+			assertEquals(Collections.singletonList(output), refreshed);
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testPipelinedWildcard() throws Exception {
+		File directory = File.createTempFile("pipeline", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			List<File> inputs = new ArrayList<File>();
+			for (int i = 0; i < 8; i++) {
+				inputs.add(write(directory, "input" + i + ".xml", "<root><a>" + i + "</a><b>" + i + "</b></root>"));
+			}
+			Transformation transformation = new Transformation();
+			transformation.setInput("input*.xml");
+			transformation.setConfig(write(directory, "rules.cfg", "<processor><modify><name>/root/a/text()</name><value>x</value></modify></processor>").getPath());
+
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true);
+			configProcessor.setProcessingThreads(3);
+			configProcessor.setIoThreads(2);
+			execute(Collections.singletonList(transformation));
+
+			for (int i = 0; i < inputs.size(); i++) {
+				String result = read(inputs.get(i));
+				assertTrue(result, result.contains("<a>x</a>"));
+				assertTrue(result, result.contains("<b>" + i + "</b>"));
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testOutputArchive() throws Exception {
+		File directory = File.createTempFile("archive", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File input = write(directory, "input.xml", "<root><a>1</a></root>");
+			write(directory, "other.xml", "<root><a>2</a></root>");
+			File base = new File(directory, "base.zip");
+			ArchiveWriter baseWriter = new ArchiveWriter(base, null);
+			baseWriter.putEntry("input.xml", "<old/>".getBytes("UTF-8"));
+			baseWriter.putEntry("index.html", "<html/>".getBytes("UTF-8"));
+			baseWriter.close();
+
+			Transformation transformation = new Transformation();
+			transformation.setInput("*.xml");
+			transformation.setConfig(write(directory, "rules.cfg", "<processor><modify><name>/root/a/text()</name><value>x</value></modify></processor>").getPath());
+
+			File archive = new File(directory, "output.zip");
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true);
+			configProcessor.setOutputArchive(archive, base);
+			execute(Collections.singletonList(transformation));
+
+			assertEquals("<root><a>1</a></root>", read(input));
+			RawZipFile result = new RawZipFile(archive);
+			try {
+				assertEquals(3, result.getEntries().size());
+				assertEquals("input.xml", result.getEntries().get(0).getName());
+				assertEquals("index.html", result.getEntries().get(1).getName());
+				assertTrue(new String(result.read(result.getEntry("input.xml")), "UTF-8").contains("<a>x</a>"));
+				assertTrue(new String(result.read(result.getEntry("other.xml")), "UTF-8").contains("<a>x</a>"));
+			} finally {
+				result.close();
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	@Test
+	public void testArchiveEntries() throws Exception {
+		File directory = File.createTempFile("archive-entries", "");
+		directory.delete();
+		directory.mkdirs();
+		try {
+			File war = new File(directory, "app.war");
+			ArchiveWriter warWriter = new ArchiveWriter(war, null);
+			warWriter.putEntry("WEB-INF/web.xml", "<root><a>1</a><b>1</b></root>".getBytes("UTF-8"));
+			warWriter.putEntry("WEB-INF/lib/lib.jar", new byte[8192]);
+			warWriter.close();
+			RawZipFile original = new RawZipFile(war);
+			byte[] lib = original.readRaw(original.getEntry("WEB-INF/lib/lib.jar"));
+			original.close();
+
+			Transformation first = new Transformation();
+			first.setInput(war.getPath() + "!/WEB-INF/*.xml");
+			first.setConfig(write(directory, "first.cfg", "<processor><modify><name>/root/a/text()</name><value>x</value></modify></processor>").getPath());
+			Transformation second = new Transformation();
+			second.setInput(war.getPath() + "!/WEB-INF/web.xml");
+			second.setConfig(write(directory, "second.cfg", "<processor><modify><name>/root/b/text()</name><value>y</value></modify></processor>").getPath());
+
+			configProcessor = new ConfigProcessor("UTF-8", 80, 0, null, directory, null, false, new LogMaven(new SystemStreamLog()), new DefaultFileResolver(), Collections.<ParserFeature>emptyList(), true);
+			execute(Arrays.asList(first, second));
+
+			RawZipFile result = new RawZipFile(war);
+			try {
+				assertEquals(2, result.getEntries().size());
+				String webXml = new String(result.read(result.getEntry("WEB-INF/web.xml")), "UTF-8");
+				assertTrue(webXml, webXml.contains("<a>x</a>"));
+				assertTrue(webXml, webXml.contains("<b>y</b>"));
+				assertArrayEquals(lib, result.readRaw(result.getEntry("WEB-INF/lib/lib.jar")));
+			} finally {
+				result.close();
+			}
+		} finally {
+			delete(directory);
+		}
+	}
+
+	protected void execute(List<Transformation> transformations) throws Exception {
+		configProcessor.init();
+		configProcessor.execute(transformations, new ExpressionResolverFactory() {
+			public ExpressionResolver getExpressionResolver(Transformation transformation) {
+				return new MavenExpressionResolver(new DefaultExpressionEvaluator());
+			}
+		});
+	}
+
+	protected void delete(File directory) {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		directory.delete();
+	}
+
+	protected Transformation newTransformation(File input, File config) {
+		Transformation transformation = new Transformation();
+		transformation.setInput(input.getPath());
+		transformation.setConfig(config.getPath());
+		return transformation;
+	}
+
+	protected File write(File directory, String name, String content) throws IOException {
+		File file = new File(directory, name);
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	protected String read(File file) throws IOException {
+		InputStream is = new FileInputStream(file);
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			IOUtils.copy(is, baos);
+			return baos.toString("UTF-8");
+		} finally {
+			is.close();
+		}
+	}
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+import java.util.*;
+
+import org.apache.maven.plugin.logging.*;
+import org.junit.*;
+
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.maven.*;
+
+public class ResultCacheTest {
+
+	private File directory;
+	private LogAdapter log;
+
+	@Before
+	public void setup() throws Exception {
+		directory = File.createTempFile("result-cache", "");
+		directory.delete();
+		log = new LogMaven(new SystemStreamLog());
+	}
+
+	@After
+	public void cleanup() {
+		delete(directory);
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		ResultCache cache = new ResultCache(10);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[4]);
+		assertNotNull(cache.get("a"));
+		cache.put("c", new byte[4]);
+
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertEquals(8, cache.getSize());
+	}
+
+	@Test
+	public void testIgnoresResultsBiggerThanMaxSize() {
+		ResultCache cache = new ResultCache(10);
+		cache.put("a", new byte[4]);
+		cache.put("b", new byte[11]);
+
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertEquals(4, cache.getSize());
+	}
+
+	@Test
+	public void testResultsAreReusedFromDirectory() {
+		new ResultCache(10, directory, 1000, log).put("ab", new byte[] { 1, 2, 3 });
+
+		ResultCache cache = new ResultCache(10, directory, 1000, log);
+		assertArrayEquals(new byte[] { 1, 2, 3 }, cache.get("ab"));
+		assertEquals(3, cache.getSize());
+		assertNull(cache.get("cd"));
+	}
+
+	@Test
+	public void testCorruptResultIsMiss() throws Exception {
+		ResultCache cache = new ResultCache(10, directory, 1000, log);
+		cache.put("ab", new byte[] { 1, 2, 3 });
+		RandomAccessFile file = new RandomAccessFile(cache.getFile("ab"), "rw");
+		try {
+			file.seek(file.length() - 1);
+			file.write(4);
+		} finally {
+			file.close();
+		}
+
+		assertNull(new ResultCache(10, directory, 1000, log).get("ab"));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsedFromDirectory() {
+		ResultCache cache = new ResultCache(0, directory, 60, log);
+		cache.put("aa", new byte[10]);
+		cache.put("bb", new byte[10]);
+		cache.getFile("aa").setLastModified(System.currentTimeMillis() - 2000);
+		cache.getFile("bb").setLastModified(System.currentTimeMillis() - 1000);
+		assertNotNull(cache.get("aa"));
+		cache.put("cc", new byte[10]);
+
+		assertTrue(cache.getFile("aa").isFile());
+		assertFalse(cache.getFile("bb").isFile());
+		assertTrue(cache.getFile("cc").isFile());
+	}
+
+	@Test
+	public void testKeyDelimitsParts() {
+		assertFalse(new ResultKey().add("ab").add("c").getValue().equals(new ResultKey().add("a").add("bc").getValue()));
+		assertFalse(new ResultKey().add((String) null).getValue().equals(new ResultKey().add("").getValue()));
+		ByteBuffer content = ByteBuffer.wrap(new byte[] { 1, 2 });
+		assertEquals(new ResultKey().add(content).getValue(), new ResultKey().add(content).getValue());
+		assertEquals(2, content.remaining());
+	}
+
+	protected void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.zip.*;
+
+import org.junit.*;
+
+public class ArchiveFileResolverTest {
+
+	private File archive;
+	private ArchiveFileResolver resolver;
+
+	@Before
+	public void setup() throws Exception {
+		archive = File.createTempFile("archive-file-resolver", ".zip");
+		archive.deleteOnExit();
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(archive));
+		try {
+			zos.putNextEntry(new ZipEntry("includes/"));
+			zos.putNextEntry(new ZipEntry("includes/rules.xml"));
+			zos.write("<processor/>".getBytes("UTF-8"));
+			zos.closeEntry();
+		} finally {
+			zos.close();
+		}
+		resolver = new ArchiveFileResolver(new DefaultFileResolver());
+	}
+
+	@After
+	public void tearDown() {
+		archive.delete();
+	}
+
+	@Test
+	public void readsEntry() throws Exception {
+		Resource resource = resolver.getResource(archive.getPath() + "!/includes/rules.xml");
+		assertEquals(archive.getAbsolutePath() + "!/includes/rules.xml", resource.getIdentity());
+		assertEquals("<processor/>", read(resource));
+	}
+
+	@Test
+	public void indexesArchiveOnce() throws Exception {
+		Resource first = resolver.getResource(archive.getPath() + "!/includes/rules.xml");
+		Resource second = resolver.getResource(archive.getPath() + "!//includes/rules.xml");
+		assertSame(((ArchiveEntryResource) first).getIndex(), ((ArchiveEntryResource) second).getIndex());
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingEntry() throws Exception {
+		resolver.getResource(archive.getPath() + "!/includes/missing.xml");
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void entryIsNotAFile() throws Exception {
+		resolver.resolve(archive.getPath() + "!/includes/rules.xml");
+	}
+
+	@Test
+	public void delegatesPlainFiles() throws Exception {
+		Resource resource = resolver.getResource(archive.getPath());
+		assertEquals(archive.getAbsolutePath(), resource.getIdentity());
+	}
+
+	protected String read(Resource resource) throws IOException {
+		InputStream is = resource.openStream();
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			int n;
+			byte[] buffer = new byte[1024];
+			while ((n = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, n);
+			}
+			return new String(baos.toByteArray(), "UTF-8");
+		} finally {
+			is.close();
+		}
+	}
+}
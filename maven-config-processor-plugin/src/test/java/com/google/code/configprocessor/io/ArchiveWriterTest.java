@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+import java.util.zip.*;
+
+import org.junit.*;
+
+public class ArchiveWriterTest {
+
+	private File base;
+	private File archive;
+
+	@Before
+	public void setup() throws Exception {
+		base = File.createTempFile("archive-writer-base", ".jar");
+		archive = File.createTempFile("archive-writer", ".jar");
+		archive.delete();
+		Manifest manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		JarOutputStream jos = new JarOutputStream(new FileOutputStream(base), manifest);
+		try {
+			jos.putNextEntry(new ZipEntry("WEB-INF/"));
+			jos.putNextEntry(new ZipEntry("WEB-INF/web.xml"));
+			jos.write("<web-app/>".getBytes("UTF-8"));
+			jos.putNextEntry(new ZipEntry("WEB-INF/lib.jar"));
+			jos.write(new byte[4096]);
+			jos.closeEntry();
+		} finally {
+			jos.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		base.delete();
+		archive.delete();
+	}
+
+	@Test
+	public void replacesEntriesAndCopiesOthersRaw() throws Exception {
+		ArchiveWriter writer = new ArchiveWriter(archive, base);
+		writer.putEntry("WEB-INF/web.xml", "<web-app version=\"2.5\"/>".getBytes("UTF-8"));
+		writer.putEntry("WEB-INF/classes/app.properties", "a=b".getBytes("UTF-8"));
+		writer.close();
+
+		List<String> names = new ArrayList<String>();
+		JarInputStream jis = new JarInputStream(new FileInputStream(archive));
+		try {
+			assertNotNull(jis.getManifest());
+			ZipEntry entry;
+			while ((entry = jis.getNextEntry()) != null) {
+				names.add(entry.getName());
+			}
+		} finally {
+			jis.close();
+		}
+		assertEquals(Arrays.asList("WEB-INF/", "WEB-INF/web.xml", "WEB-INF/lib.jar", "WEB-INF/classes/app.properties"), names);
+
+		RawZipFile written = new RawZipFile(archive);
+		RawZipFile original = new RawZipFile(base);
+		try {
+			assertEquals("<web-app version=\"2.5\"/>", new String(written.read(written.getEntry("WEB-INF/web.xml")), "UTF-8"));
+			assertEquals("a=b", new String(written.read(written.getEntry("WEB-INF/classes/app.properties")), "UTF-8"));
+			assertArrayEquals(original.readRaw(original.getEntry("WEB-INF/lib.jar")), written.readRaw(written.getEntry("WEB-INF/lib.jar")));
+			assertEquals(4096, written.read(written.getEntry("WEB-INF/lib.jar")).length);
+		} finally {
+			written.close();
+			original.close();
+		}
+
+		ZipFile zip = new ZipFile(archive);
+		try {
+			assertEquals(5, zip.size());
+		} finally {
+			zip.close();
+		}
+	}
+
+	@Test
+	public void replacesBaseArchiveInPlace() throws Exception {
+		ArchiveWriter writer = new ArchiveWriter(base, base);
+		writer.putEntry("WEB-INF/web.xml", "<web-app/>".getBytes("UTF-8"));
+		writer.close();
+
+		RawZipFile written = new RawZipFile(base);
+		try {
+			assertEquals(4, written.getEntries().size());
+		} finally {
+			written.close();
+		}
+	}
+}
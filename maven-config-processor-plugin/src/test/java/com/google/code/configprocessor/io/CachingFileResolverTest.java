@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static org.easymock.EasyMock.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.junit.*;
+
+public class CachingFileResolverTest {
+
+	private File file;
+
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("caching-file-resolver", ".xml");
+		file.deleteOnExit();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void resolvesOnlyOnce() throws Exception {
+		FileResolver delegate = createStrictMock(FileResolver.class);
+		expect(delegate.resolve("config.xml")).andReturn(file);
+		replay(delegate);
+
+		CachingFileResolver resolver = new CachingFileResolver(delegate);
+		assertEquals(file, resolver.resolve("config.xml"));
+		assertEquals(file, resolver.resolve("config.xml"));
+
+		verify(delegate);
+	}
+
+	@Test
+	public void remembersFailures() throws Exception {
+		FileResolver delegate = createStrictMock(FileResolver.class);
+		expect(delegate.resolve("missing.xml")).andThrow(new FileNotFoundException("missing.xml"));
+		replay(delegate);
+
+		CachingFileResolver resolver = new CachingFileResolver(delegate);
+		for (int i = 0; i < 2; i++) {
+			try {
+				resolver.resolve("missing.xml");
+				fail("Should not resolve missing file");
+			} catch (FileNotFoundException e) {
+				// Expected
+			}
+		}
+
+		verify(delegate);
+	}
+
+	@Test
+	public void resolvesAgainAfterFailuresAreForgotten() throws Exception {
+		FileResolver delegate = createStrictMock(FileResolver.class);
+		FileNotFoundException failure = new FileNotFoundException("generated.xml");
+		expect(delegate.resolve("generated.xml")).andThrow(failure);
+		expect(delegate.resolve("generated.xml")).andReturn(file);
+		replay(delegate);
+
+		CachingFileResolver resolver = new CachingFileResolver(delegate);
+		try {
+			resolver.resolve("generated.xml");
+			fail("Should not resolve missing file");
+		} catch (FileNotFoundException e) {
+			assertNotSame(failure, e);
+			assertSame(failure, e.getCause());
+		}
+		resolver.forgetFailures();
+		assertEquals(file, resolver.resolve("generated.xml"));
+
+		verify(delegate);
+	}
+
+	@Test
+	public void resolvesAgainWhenModified() throws Exception {
+		FileResolver delegate = createStrictMock(FileResolver.class);
+		expect(delegate.resolve("config.xml")).andReturn(file).times(2);
+		replay(delegate);
+
+		CachingFileResolver resolver = new CachingFileResolver(delegate);
+		resolver.resolve("config.xml");
+		assertTrue(file.setLastModified(file.lastModified() - 10000));
+		resolver.resolve("config.xml");
+
+		verify(delegate);
+	}
+
+	@Test
+	public void resolvesAgainWhenDeleted() throws Exception {
+		FileResolver delegate = createStrictMock(FileResolver.class);
+		expect(delegate.resolve("config.xml")).andReturn(file);
+		expect(delegate.resolve("config.xml")).andThrow(new FileNotFoundException("config.xml"));
+		replay(delegate);
+
+		CachingFileResolver resolver = new CachingFileResolver(delegate);
+		resolver.resolve("config.xml");
+		assertTrue(file.delete());
+		try {
+			resolver.resolve("config.xml");
+			fail("Should not resolve deleted file");
+		} catch (FileNotFoundException e) {
+			// Expected
+		}
+
+		verify(delegate);
+	}
+}
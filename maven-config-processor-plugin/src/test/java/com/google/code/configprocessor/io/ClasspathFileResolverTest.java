@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.nio.*;
+
+import org.junit.*;
+
+public class ClasspathFileResolverTest {
+
+	private ClasspathFileResolver resolver;
+
+	@Before
+	public void setup() {
+		resolver = new ClasspathFileResolver();
+	}
+
+	@Test
+	public void resolvesPackagedResourceWithoutFile() throws Exception {
+		Resource resource = resolver.getResource("/org/junit/Test.class");
+		assertTrue(resource instanceof UrlResource);
+		assertNull(resource.getFile());
+		ByteBuffer buffer = resource.getBuffer();
+		assertEquals(0xCA, buffer.get(0) & 0xFF);
+		assertEquals(0xFE, buffer.get(1) & 0xFF);
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void packagedResourceIsNotAFile() throws Exception {
+		resolver.resolve("/org/junit/Test.class");
+	}
+
+	@Test
+	public void resolvesFileResource() throws Exception {
+		Resource resource = resolver.getResource("/com/google/code/configprocessor/io/ClasspathFileResolverTest.class");
+		assertTrue(resource instanceof FileResource);
+		assertTrue(resource.getFile().exists());
+		assertEquals(resource.getFile().length(), resource.getBuffer().remaining());
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void missingResource() throws Exception {
+		resolver.getResource("/missing-resource.xml");
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class InputScannerTest {
+
+	private File directory;
+
+	@Before
+	public void setup() throws Exception {
+		directory = File.createTempFile("input-scanner", "");
+		directory.delete();
+		create("src/a.xml");
+		create("src/sub/b.XML");
+		create("src/c.properties");
+		create("target/d.xml");
+		create(".git/e.xml");
+	}
+
+	@After
+	public void tearDown() {
+		delete(directory);
+	}
+
+	@Test
+	public void matchesAllPatternsInOneWalk() throws Exception {
+		final List<String> walked = new ArrayList<String>();
+		InputScanner scanner = new InputScanner(directory, Collections.singletonList("target/")) {
+			@Override
+			protected void scan(File dir, String prefix, Map<String, Set<File>> pending) {
+				walked.add(prefix);
+				super.scan(dir, prefix, pending);
+			}
+		};
+		scanner.scan(Arrays.asList("**/*.xml", "src/*.properties"));
+
+		assertEquals(Arrays.asList(file("src/a.xml"), file("src/sub/b.XML")), scanner.getMatchingFiles("**/*.xml"));
+		assertEquals(Arrays.asList(file("src/c.properties")), scanner.getMatchingFiles("src/*.properties"));
+		assertEquals(Arrays.asList("", "src" + File.separator, "src" + File.separator + "sub" + File.separator), walked);
+	}
+
+	@Test
+	public void prunesDirectoriesNotMatchingIncludes() throws Exception {
+		final List<String> walked = new ArrayList<String>();
+		InputScanner scanner = new InputScanner(directory, null) {
+			@Override
+			protected void scan(File dir, String prefix, Map<String, Set<File>> pending) {
+				walked.add(prefix);
+				super.scan(dir, prefix, pending);
+			}
+		};
+
+		assertEquals(Arrays.asList(file("target/d.xml")), scanner.getMatchingFiles("target/*.xml"));
+		assertEquals(Arrays.asList("", "target" + File.separator), walked);
+	}
+
+	@Test
+	public void includesFilesAddedAfterScan() throws Exception {
+		InputScanner scanner = new InputScanner(directory, null);
+		scanner.scan(Collections.singleton("src/*.xml"));
+		File added = create("src/f.xml");
+		scanner.added(added);
+		scanner.added(create("src/g.properties"));
+		scanner.added(create(".git/h.xml"));
+
+		assertEquals(Arrays.asList(file("src/a.xml"), added), scanner.getMatchingFiles("src/*.xml"));
+	}
+
+	protected File file(String path) {
+		return new File(directory, path.replace('/', File.separatorChar));
+	}
+
+	protected File create(String path) throws IOException {
+		File file = file(path);
+		file.getParentFile().mkdirs();
+		new FileOutputStream(file).close();
+		return file;
+	}
+
+	protected void delete(File file) {
+		File[] files = file.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
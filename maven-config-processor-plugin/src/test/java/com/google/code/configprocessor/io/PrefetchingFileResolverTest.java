@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.io;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+
+public class PrefetchingFileResolverTest {
+
+	private File file;
+	private PrefetchingFileResolver resolver;
+
+	@Before
+	public void setup() throws Exception {
+		file = File.createTempFile("prefetching-file-resolver", ".xml");
+		write(file, "<root/>");
+		resolver = new PrefetchingFileResolver(new DefaultFileResolver(), 2, 1024);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void servesPrefetchedContent() throws Exception {
+		Map<String, IOException> failures = resolver.prefetch(Arrays.asList(file.getPath()));
+		assertTrue(failures.isEmpty());
+		assertEquals(7, resolver.getSize());
+
+		Resource resource = resolver.getPrefetched(file.getPath());
+		assertNotNull(resource);
+		assertEquals(file.getAbsolutePath(), resource.getIdentity());
+		assertEquals("<root/>", read(resolver.getResource(file.getPath())));
+	}
+
+	@Test
+	public void reportsFailures() {
+		String missing = file.getPath() + ".missing";
+		Map<String, IOException> failures = resolver.prefetch(Arrays.asList(file.getPath(), missing));
+		assertEquals(1, failures.size());
+		assertTrue(failures.get(missing) instanceof FileNotFoundException);
+	}
+
+	@Test
+	public void respectsMaxSize() throws Exception {
+		resolver = new PrefetchingFileResolver(new DefaultFileResolver(), 2, 4);
+		resolver.prefetch(Arrays.asList(file.getPath()));
+		assertEquals(0, resolver.getSize());
+		assertNull(resolver.getPrefetched(file.getPath()));
+		assertEquals("<root/>", read(resolver.getResource(file.getPath())));
+	}
+
+	@Test
+	public void discardsEvictedContent() throws Exception {
+		resolver.prefetch(Arrays.asList(file.getPath()));
+		resolver.evict(file);
+		assertNull(resolver.getPrefetched(file.getPath()));
+		assertEquals(0, resolver.getSize());
+	}
+
+	@Test
+	public void discardsModifiedContent() throws Exception {
+		resolver.prefetch(Arrays.asList(file.getPath()));
+		write(file, "<modified/>");
+		assertNull(resolver.getPrefetched(file.getPath()));
+		assertEquals("<modified/>", read(resolver.getResource(file.getPath())));
+	}
+
+	protected void write(File target, String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(target), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	protected String read(Resource resource) throws IOException {
+		Reader reader = new InputStreamReader(resource.openStream(), "UTF-8");
+		try {
+			StringBuilder sb = new StringBuilder();
+			char[] buffer = new char[256];
+			int n;
+			while ((n = reader.read(buffer)) != -1) {
+				sb.append(buffer, 0, n);
+			}
+			return sb.toString();
+		} finally {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.parsing;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+
+import org.codehaus.plexus.configuration.*;
+import org.codehaus.plexus.configuration.xml.*;
+import org.codehaus.plexus.util.xml.*;
+import org.junit.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.processing.*;
+
+public class PlexusConfigurationParserTest {
+
+	private static final String CONFIGURATION = "/com/google/code/configprocessor/data/xml-processing-configuration.xml";
+
+	@Test
+	public void parsingSameAsRuleFile() throws Exception {
+		PlexusConfiguration rules = build(CONFIGURATION);
+		NestedAction action = new PlexusConfigurationParser().parse(rules);
+
+		InputStream is = getClass().getResourceAsStream(CONFIGURATION);
+		NestedAction expected;
+		try {
+			expected = new ProcessingConfigurationParser().parse(new InputStreamReader(is, "UTF-8"));
+		} finally {
+			is.close();
+		}
+		assertEquals(expected, action);
+		assertFalse(((AddAction) action.getActions().get(7)).isIgnoreRoot());
+		assertTrue(((AddAction) action.getActions().get(9)).isFirst());
+	}
+
+	@Test(expected = ParsingException.class)
+	public void parsingUnknownElement() throws Exception {
+		new PlexusConfigurationParser().parse(build(new StringReader("<rules><modify><nmae>/a</nmae></modify></rules>")));
+	}
+
+	@Test
+	public void identifier() throws Exception {
+		PlexusConfiguration rules = build(new StringReader("<rules><modify><name>/root/a</name><value>1</value></modify><remove><name> /root/b </name></remove></rules>"));
+		assertEquals("modify [/root/a], remove [/root/b]", new PlexusConfigurationParser().getIdentifier(rules));
+	}
+
+	protected PlexusConfiguration build(String resource) throws Exception {
+		InputStream is = getClass().getResourceAsStream(resource);
+		try {
+			return build(new InputStreamReader(is, "UTF-8"));
+		} finally {
+			is.close();
+		}
+	}
+
+	protected PlexusConfiguration build(Reader reader) throws Exception {
+		return new XmlPlexusConfiguration(Xpp3DomBuilder.build(reader));
+	}
+}
@@ -109,6 +109,49 @@ public class ProcessingConfigurationParserTest {
 		parser.parse(getClass().getResourceAsStream("/com/google/code/configprocessor/data/xml-target-config.xml"), Charset.forName("UTF-8"));
 	}
 	
+	@Test
+	public void parsingSameAsXStream() throws Exception {
+		InputStream is = getClass().getResourceAsStream("/com/google/code/configprocessor/data/xml-processing-configuration.xml");
+		String content;
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = is.read(buffer)) != -1) {
+				baos.write(buffer, 0, n);
+			}
+			content = new String(baos.toByteArray(), "UTF-8");
+		} finally {
+			is.close();
+		}
+
+		ProcessingConfigurationParser parser = new ProcessingConfigurationParser();
+		NestedAction expected = (NestedAction) parser.getXStream().fromXML(content);
+		NestedAction action = parser.parse(new StringReader(content));
+		assertEquals(expected, action);
+		assertEquals(((AddAction) expected.getActions().get(7)).isIgnoreRoot(), ((AddAction) action.getActions().get(7)).isIgnoreRoot());
+		assertEquals(((AddAction) expected.getActions().get(9)).isFirst(), ((AddAction) action.getActions().get(9)).isFirst());
+	}
+
+	@Test
+	public void parsingStrict() throws Exception {
+		ProcessingConfigurationParser parser = new ProcessingConfigurationParser();
+		NestedAction action = parser.parse(new StringReader("<processor><strict>true</strict><remove><name>/a</name><strict>false</strict></remove></processor>"));
+		assertTrue(action.isStrict());
+		assertFalse(((RemoveAction) action.getActions().get(0)).isStrict());
+	}
+
+	@Test
+	public void parsingUnknownElement() throws Exception {
+		ProcessingConfigurationParser parser = new ProcessingConfigurationParser();
+		try {
+			parser.parse(new StringReader("<processor>\n  <modify>\n    <nmae>/a</nmae>\n  </modify>\n</processor>"));
+			fail("Unknown element must not be accepted");
+		} catch (ParsingException e) {
+			assertEquals("Unknown element [nmae] in [modify] at line [3], column [11]", e.getMessage());
+		}
+	}
+
 	@Test
 	@Ignore
 	public void generationExample() {
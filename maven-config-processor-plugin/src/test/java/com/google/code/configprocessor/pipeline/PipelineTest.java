@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.pipeline;
+
+import static org.junit.Assert.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.*;
+
+import org.apache.maven.plugin.logging.*;
+import org.junit.*;
+
+import com.google.code.configprocessor.maven.*;
+
+public class PipelineTest {
+
+	@Test
+	public void testRunsEveryStageInOrder() throws Exception {
+		final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+		Pipeline pipeline = new Pipeline(2, 2, 1, new LogMaven(new SystemStreamLog()));
+		try {
+			for (int i = 0; i < 10; i++) {
+				final int id = i;
+				pipeline.submit(new Pipeline.Job() {
+					public long getMemoryEstimate() {
+						return 0;
+					}
+
+					public void read() {
+						events.add(id + ":read");
+					}
+
+					public void transform() {
+						assertTrue(events.contains(id + ":read"));
+						events.add(id + ":transform");
+					}
+
+					public void write() {
+						assertTrue(events.contains(id + ":transform"));
+						events.add(id + ":write");
+					}
+				});
+			}
+			pipeline.await();
+		} finally {
+			pipeline.shutdown();
+		}
+		assertEquals(30, events.size());
+		assertTrue(pipeline.getMaxDepth(0) <= 1);
+	}
+
+	@Test
+	public void testAdmitsJobsWithinMemoryBudget() throws Exception {
+		final AtomicInteger running = new AtomicInteger();
+		final AtomicInteger maxRunning = new AtomicInteger();
+		final AtomicBoolean oversizedAlone = new AtomicBoolean(true);
+		MemoryBudget budget = new MemoryBudget(10);
+		Pipeline pipeline = new Pipeline(4, 4, 4, budget, new LogMaven(new SystemStreamLog()));
+		try {
+			for (int i = 0; i < 12; i++) {
+				final long estimate = i == 6 ? 100 : 4;
+				pipeline.submit(new Pipeline.Job() {
+					public long getMemoryEstimate() {
+						return estimate;
+					}
+
+					public void read() throws InterruptedException {
+						int current = running.incrementAndGet();
+						if (estimate > 10 && current > 1) {
+							oversizedAlone.set(false);
+						}
+						int max;
+						while (current > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, current)) {
+							// Retry
+						}
+						Thread.sleep(5);
+					}
+
+					public void transform() throws InterruptedException {
+						Thread.sleep(5);
+					}
+
+					public void write() {
+						running.decrementAndGet();
+					}
+				});
+			}
+			pipeline.await();
+		} finally {
+			pipeline.shutdown();
+		}
+		assertEquals(2, maxRunning.get());
+		assertTrue(oversizedAlone.get());
+		assertEquals(10, budget.getAvailable());
+	}
+
+	@Test
+	public void testReportsFirstFailure() throws Exception {
+		Pipeline pipeline = new Pipeline(1, 1, 2, new LogMaven(new SystemStreamLog()));
+		final IllegalStateException failure = new IllegalStateException("transform");
+		try {
+			pipeline.submit(new Pipeline.Job() {
+				public long getMemoryEstimate() {
+					return 0;
+				}
+
+				public void read() {
+				}
+
+				public void transform() {
+					throw failure;
+				}
+
+				public void write() {
+					fail("Failed job must not be written");
+				}
+			});
+			pipeline.await();
+			fail("Failure not reported");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		} finally {
+			pipeline.shutdown();
+		}
+	}
+}
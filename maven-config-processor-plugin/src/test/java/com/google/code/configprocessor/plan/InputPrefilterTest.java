@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import static org.junit.Assert.*;
+
+import java.nio.*;
+import java.util.*;
+
+import org.junit.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.processing.*;
+
+public class InputPrefilterTest {
+
+	private PlanCompiler compiler;
+
+	@Before
+	public void setup() {
+		compiler = new PlanCompiler();
+	}
+
+	@Test
+	public void xpathTokens() throws Exception {
+		Map<String, Boolean> tokens = compiler.getTokens(rules(new RemoveAction("/root/ns:property[@name='a]b']/@value | //other"), new ModifyAction("child::x/text()", "1")), Transformation.XML_TYPE);
+		assertEquals(new HashSet<String>(Arrays.asList("property", "other", "x", "<!DOCTYPE", "XInclude")), tokens.keySet());
+	}
+
+	@Test
+	public void unboundedRules() throws Exception {
+		assertNull(compiler.getTokens(rules(new RemoveAction("//*/@*")), Transformation.XML_TYPE));
+		assertNull(compiler.getTokens(rules(new RemoveAction("/root/${name}")), Transformation.XML_TYPE));
+		assertNull(compiler.getTokens(rules(new RemoveAction("id('a')")), Transformation.XML_TYPE));
+		assertNull(compiler.getTokens(rules(findReplace("a.*b", null)), Transformation.PROPERTIES_TYPE));
+
+		AddAction add = new AddAction("name", "value");
+		add.setLast(true);
+		assertNull(compiler.getTokens(rules(add), Transformation.PROPERTIES_TYPE));
+	}
+
+	@Test
+	public void scanXml() throws Exception {
+		InputPrefilter prefilter = InputPrefilter.create(compiler.getTokens(rules(new ModifyAction("/root/property/@value", "1")), Transformation.XML_TYPE), "UTF-8");
+		assertTrue(prefilter.mayChange(buffer("<root><property value=\"0\"/></root>")));
+		assertFalse(prefilter.mayChange(buffer("<root><other value=\"0\"/></root>")));
+		assertTrue(prefilter.mayChange(buffer("<!DOCTYPE root SYSTEM \"root.dtd\"><root/>")));
+	}
+
+	@Test
+	public void scanFindIgnoringCase() throws Exception {
+		InputPrefilter prefilter = InputPrefilter.create(compiler.getTokens(rules(findReplace("old  host", null)), Transformation.PROPERTIES_TYPE), "ISO-8859-1");
+		assertTrue(prefilter.mayChange(buffer("url=http://OLD HOST/")));
+		assertFalse(prefilter.mayChange(buffer("url=http://new/")));
+		assertTrue(prefilter.mayChange(buffer("url=http://ne\\\nw/")));
+
+		prefilter = InputPrefilter.create(compiler.getTokens(rules(findReplace("host", "LITERAL")), Transformation.PROPERTIES_TYPE), "ISO-8859-1");
+		assertFalse(prefilter.mayChange(buffer("url=http://HOST/")));
+	}
+
+	@Test
+	public void unsupportedEncoding() throws Exception {
+		assertNull(InputPrefilter.create(compiler.getTokens(rules(new RemoveAction("a")), Transformation.PROPERTIES_TYPE), "UTF-16"));
+	}
+
+	protected ModifyAction findReplace(String find, String flags) {
+		ModifyAction action = new ModifyAction();
+		action.setFind(find);
+		action.setReplace("new");
+		action.setFlags(flags);
+		return action;
+	}
+
+	protected NestedAction rules(Action... actions) {
+		NestedAction rules = new NestedAction();
+		for (Action action : actions) {
+			rules.addAction(action);
+		}
+		return rules;
+	}
+
+	protected ByteBuffer buffer(String content) throws Exception {
+		return ByteBuffer.wrap(content.getBytes("ISO-8859-1"));
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import org.apache.maven.plugin.logging.*;
+import org.junit.*;
+
+import com.google.code.configprocessor.log.*;
+import com.google.code.configprocessor.maven.*;
+import com.google.code.configprocessor.processing.*;
+
+public class PlanCacheTest {
+
+	private static final String IDENTITY = "/rules/test-rules.xml";
+
+	private File directory;
+	private LogAdapter log;
+
+	@Before
+	public void setup() throws Exception {
+		directory = File.createTempFile("plans", "");
+		directory.delete();
+		log = new LogMaven(new SystemStreamLog());
+	}
+
+	@After
+	public void cleanup() {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	@Test
+	public void compileCollectsPlaceholders() throws Exception {
+		CompiledPlan plan = compile("a");
+		assertEquals(new TreeSet<String>(Arrays.asList("name", "value")), plan.getPlaceholders());
+	}
+
+	@Test(expected = ActionValidationException.class)
+	public void compileInvalidPattern() throws Exception {
+		ModifyAction action = new ModifyAction();
+		action.setFind("(unclosed");
+		action.setReplace("b");
+		NestedAction rules = new NestedAction();
+		rules.addAction(action);
+		new PlanCompiler().compile(rules, "a");
+	}
+
+	@Test
+	public void readFromDisk() throws Exception {
+		CompiledPlan plan = compile(PlanCompiler.hash("a"));
+		new PlanCache(directory, log).put(IDENTITY, plan);
+
+		CompiledPlan read = new PlanCache(directory, log).get(IDENTITY, plan.getSourceHash());
+		assertNotNull(read);
+		assertEquals(plan.getAction(), read.getAction());
+		assertEquals(plan.getPlaceholders(), read.getPlaceholders());
+	}
+
+	@Test
+	public void sharedPlansReused() throws Exception {
+		ConcurrentMap<String, CompiledPlan> plans = new ConcurrentHashMap<String, CompiledPlan>();
+		CompiledPlan plan = compile(PlanCompiler.hash("a"));
+		new PlanCache(null, plans, log).put(IDENTITY, plan);
+
+		assertSame(plan, new PlanCache(null, plans, log).get("/other/test-rules.xml", plan.getSourceHash()));
+	}
+
+	@Test
+	public void outdatedPlanIgnored() throws Exception {
+		new PlanCache(directory, log).put(IDENTITY, compile(PlanCompiler.hash("a")));
+		assertNull(new PlanCache(directory, log).get(IDENTITY, PlanCompiler.hash("b")));
+	}
+
+	@Test
+	public void corruptPlanIgnored() throws Exception {
+		CompiledPlan plan = compile(PlanCompiler.hash("a"));
+		new PlanCache(directory, log).put(IDENTITY, plan);
+
+		File[] files = directory.listFiles();
+		assertEquals(1, files.length);
+		RandomAccessFile file = new RandomAccessFile(files[0], "rw");
+		try {
+			file.seek(file.length() - 1);
+			int last = file.read();
+			file.seek(file.length() - 1);
+			file.write(last ^ 0xFF);
+		} finally {
+			file.close();
+		}
+		assertNull(new PlanCache(directory, log).get(IDENTITY, plan.getSourceHash()));
+	}
+
+	protected CompiledPlan compile(String sourceHash) throws Exception {
+		ModifyAction modify = new ModifyAction();
+		modify.setFind("a+");
+		modify.setReplace("b");
+		NestedAction rules = new NestedAction();
+		rules.addAction(new ModifyAction("${name}", "${value}"));
+		rules.addAction(modify);
+		rules.addAction(new RemoveAction("b"));
+		return new PlanCompiler().compile(rules, sourceHash);
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.plan;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.maven.plugin.logging.*;
+import org.codehaus.plexus.component.configurator.expression.*;
+import org.junit.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.maven.*;
+import com.google.code.configprocessor.processing.*;
+import com.google.code.configprocessor.processing.xml.*;
+
+public class PlanOptimizerTest {
+
+	private static final String XML = "<root><a x=\"1\">text</a><b x=\"2\"/><c>value</c></root>";
+
+	private PlanOptimizer optimizer;
+
+	@Before
+	public void setup() {
+		optimizer = new PlanOptimizer(new LogMaven(new SystemStreamLog()));
+	}
+
+	@Test
+	public void dropModifyOverwrittenByRemove() throws Exception {
+		NestedAction rules = rules(new ModifyAction("/root/a/@x", "3"), new ModifyAction("/root/c/text()", "v"), new RemoveAction("/root/a/@x"));
+		NestedAction optimized = optimizer.optimize(rules, Transformation.XML_TYPE);
+
+		assertEquals(rules(new ModifyAction("/root/c/text()", "v"), new RemoveAction("/root/a/@x")).getActions(), optimized.getActions());
+		assertEquals(3, rules.getActions().size());
+		assertEquals(process(rules), process(optimized));
+	}
+
+	@Test
+	public void dropRepeatedPropertyModify() throws Exception {
+		NestedAction rules = rules(new ModifyAction("a", "1"), new RemoveAction("b"), new ModifyAction("a", "2"));
+		NestedAction optimized = optimizer.optimize(rules, Transformation.PROPERTIES_TYPE);
+		assertEquals(rules(new RemoveAction("b"), new ModifyAction("a", "2")).getActions(), optimized.getActions());
+	}
+
+	@Test
+	public void keepModifyOfElement() throws Exception {
+		NestedAction rules = rules(new ModifyAction("/root/a", "<b/>"), new RemoveAction("/root/a"));
+		assertSame(rules, optimizer.optimize(rules, Transformation.XML_TYPE));
+	}
+
+	@Test
+	public void keepModifyObservedByPredicate() throws Exception {
+		NestedAction rules = rules(new ModifyAction("/root/a/@x", "2"), new RemoveAction("/root/*[@x='2']"), new ModifyAction("/root/a/@x", "3"));
+		assertSame(rules, optimizer.optimize(rules, Transformation.XML_TYPE));
+	}
+
+	@Test
+	public void keepStrictModifyBeforeLenientAction() throws Exception {
+		RemoveAction remove = new RemoveAction("/root/a/@x");
+		remove.setStrict(false);
+		NestedAction rules = rules(new ModifyAction("/root/a/@x", "3"), remove);
+		assertSame(rules, optimizer.optimize(rules, Transformation.XML_TYPE));
+
+		rules.setStrict(true);
+		assertEquals(1, optimizer.optimize(rules, Transformation.XML_TYPE).getActions().size());
+	}
+
+	@Test
+	public void hoistRemove() throws Exception {
+		ModifyAction findReplace = new ModifyAction();
+		findReplace.setFind("[0-9]");
+		findReplace.setReplace("n");
+		NestedAction rules = rules(new ModifyAction("/root/c/text()", "v"), findReplace, new RemoveAction("/root/b"));
+		NestedAction optimized = optimizer.optimize(rules, Transformation.XML_TYPE);
+
+		assertEquals(rules(new ModifyAction("/root/c/text()", "v"), new RemoveAction("/root/b"), findReplace).getActions(), optimized.getActions());
+		assertEquals(process(rules), process(optimized));
+	}
+
+	protected NestedAction rules(Action... actions) {
+		NestedAction rules = new NestedAction();
+		for (Action action : actions) {
+			rules.addAction(action);
+		}
+		return rules;
+	}
+
+	protected String process(NestedAction rules) throws Exception {
+		XmlActionProcessor processor = new XmlActionProcessor("UTF-8", 80, 1, new ClasspathFileResolver(), new MavenExpressionResolver(new DefaultExpressionEvaluator()),
+				Collections.<String, String>emptyMap(), Collections.<ParserFeature>emptyList(), true);
+		StringWriter output = new StringWriter();
+		processor.process(new StringReader(XML), output, rules);
+		return output.toString();
+	}
+}
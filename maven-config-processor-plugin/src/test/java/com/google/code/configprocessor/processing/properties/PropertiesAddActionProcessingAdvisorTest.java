@@ -16,6 +16,9 @@
 package com.google.code.configprocessor.processing.properties;
 
 import static com.google.code.configprocessor.processing.properties.PropertiesActionProcessor.*;
+import static org.junit.Assert.*;
+
+import java.io.*;
 
 import org.junit.*;
 
@@ -119,4 +122,21 @@ public class PropertiesAddActionProcessingAdvisorTest extends AbstractProperties
 		executeTest(action, expected);
 	}
 
+	@Test
+	public void processAppendFileWithReusedProcessor() throws Exception {
+		AddAction action = new AddAction();
+		action.setFile(APPENDED_PROPERTIES_PATH);
+		action.setLast(true);
+
+		setup();
+		ActionProcessor reused = processor;
+		reused.process(new InputStreamReader(input), new OutputStreamWriter(output), action);
+		String expected = getOutput();
+		assertTrue(expected.endsWith("appended=1" + LINE_SEPARATOR));
+
+		setup();
+		reused.process(new InputStreamReader(input), new OutputStreamWriter(output), action);
+		assertEquals(expected, getOutput());
+	}
+
 }
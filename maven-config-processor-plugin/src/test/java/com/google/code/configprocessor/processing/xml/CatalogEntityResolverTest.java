@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.maven.plugin.logging.*;
+import org.junit.*;
+import org.w3c.dom.*;
+import org.xml.sax.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.maven.*;
+
+public class CatalogEntityResolverTest {
+
+	private static final String PUBLIC_ID = "-//Test//DTD Config 1.0//EN";
+	private static final String SYSTEM_ID = "http://config-processor.invalid/dtd/config.dtd";
+
+	private File directory;
+
+	@Before
+	public void setup() throws Exception {
+		directory = File.createTempFile("catalog-entity-resolver", "");
+		directory.delete();
+		directory.mkdirs();
+		write(new File(directory, "dtd/config.dtd"), "<!ENTITY greeting \"hello\">");
+		write(new File(directory, "catalog.xml"), "<!DOCTYPE catalog PUBLIC \"-//OASIS//DTD XML Catalogs V1.1//EN\" \"http://www.oasis-open.org/committees/entity/release/1.1/catalog.dtd\">"
+				+ "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\">"
+				+ "<public publicId=\"" + PUBLIC_ID + "\" uri=\"dtd/config.dtd\"/>"
+				+ "<rewriteSystem systemIdStartString=\"http://config-processor.invalid/\" rewritePrefix=\"./\"/>"
+				+ "<systemSuffix systemIdSuffix=\"/other.dtd\" uri=\"dtd/config.dtd\"/>"
+				+ "</catalog>");
+	}
+
+	@After
+	public void tearDown() {
+		delete(directory);
+	}
+
+	@Test
+	public void resolvesCatalogEntries() throws Exception {
+		XmlCatalog catalog = new XmlCatalog();
+		catalog.load(new FileResource(new File(directory, "catalog.xml")));
+		String expected = new File(directory, "dtd/config.dtd").toURI().toString();
+		assertEquals(expected, catalog.resolve(PUBLIC_ID, null));
+		assertEquals(expected, catalog.resolve(null, SYSTEM_ID));
+		assertEquals(expected, catalog.resolve(null, "http://example.invalid/other.dtd"));
+		assertNull(catalog.resolve(null, "http://example.invalid/missing.dtd"));
+	}
+
+	@Test
+	public void parsesDocumentWithLocalDtd() throws Exception {
+		CatalogEntityResolver resolver = CatalogEntityResolver.load(Arrays.asList("catalog.xml"), new DefaultDirectoryFileResolver(), true, new LogMaven(new SystemStreamLog()));
+		String xml = "<!DOCTYPE root PUBLIC \"" + PUBLIC_ID + "\" \"" + SYSTEM_ID + "\"><root>&greeting;</root>";
+		Document document = XmlHelper.parse(new StringReader(xml), Collections.<ParserFeature> emptyList(), resolver);
+		assertEquals("hello", document.getDocumentElement().getTextContent());
+
+		// Served from memory once read
+		new File(directory, "dtd/config.dtd").delete();
+		document = XmlHelper.parse(new StringReader(xml), Collections.<ParserFeature> emptyList(), resolver);
+		assertEquals("hello", document.getDocumentElement().getTextContent());
+	}
+
+	@Test(expected = SAXException.class)
+	public void failsOfflineForUnmappedEntity() throws Exception {
+		CatalogEntityResolver resolver = CatalogEntityResolver.load(Arrays.asList("catalog.xml"), new DefaultDirectoryFileResolver(), true, new LogMaven(new SystemStreamLog()));
+		String xml = "<!DOCTYPE root SYSTEM \"http://example.invalid/missing.dtd\"><root/>";
+		XmlHelper.parse(new StringReader(xml), Collections.<ParserFeature> emptyList(), resolver);
+	}
+
+	protected void write(File file, String content) throws IOException {
+		file.getParentFile().mkdirs();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	protected void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	protected class DefaultDirectoryFileResolver extends DefaultFileResolver {
+
+		@Override
+		public File resolve(String name) throws IOException {
+			return super.resolve(new File(directory, name).getPath());
+		}
+	}
+}
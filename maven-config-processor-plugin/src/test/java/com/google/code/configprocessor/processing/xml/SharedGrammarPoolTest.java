@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.maven.plugin.logging.*;
+import org.junit.*;
+import org.w3c.dom.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.maven.*;
+
+public class SharedGrammarPoolTest {
+
+	private File dtd;
+
+	@Before
+	public void setup() throws Exception {
+		dtd = File.createTempFile("shared-grammar-pool", ".dtd");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(dtd), "UTF-8");
+		try {
+			writer.write("<!ELEMENT root (#PCDATA)><!ATTLIST root version CDATA \"1.0\">");
+		} finally {
+			writer.close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		dtd.delete();
+	}
+
+	@Test
+	public void reusesGrammar() throws Exception {
+		SharedGrammarPool grammarPool = new SharedGrammarPool(new LogMaven(new SystemStreamLog()));
+		String xml = "<!DOCTYPE root SYSTEM \"" + dtd.toURI() + "\"><root/>";
+
+		Document first = XmlHelper.parse(new StringReader(xml), Collections.<ParserFeature> emptyList(), null, grammarPool);
+		assertEquals(0, grammarPool.getHits());
+		assertEquals("1.0", first.getDocumentElement().getAttribute("version"));
+
+		Document second = XmlHelper.parse(new StringReader(xml), Collections.<ParserFeature> emptyList(), null, grammarPool);
+		assertEquals(1, grammarPool.getHits());
+		assertEquals("1.0", second.getDocumentElement().getAttribute("version"));
+	}
+}
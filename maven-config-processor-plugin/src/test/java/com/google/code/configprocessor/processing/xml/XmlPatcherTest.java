@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.codehaus.plexus.component.configurator.expression.*;
+import org.junit.*;
+
+import com.google.code.configprocessor.*;
+import com.google.code.configprocessor.io.*;
+import com.google.code.configprocessor.maven.*;
+import com.google.code.configprocessor.processing.*;
+
+public class XmlPatcherTest {
+
+	private static final String SOURCE = "<?xml version='1.0'?>\n<root>\n\t<!-- comment -->\n  <a  z=\"1\"   b='2'>text &amp; more</a>\n<c x=\"1\"/><d></d>\n</root>\n";
+
+	private XmlActionProcessor processor;
+
+	@Before
+	public void setup() {
+		processor = new XmlActionProcessor("UTF-8", 80, 4, new DefaultFileResolver(), new MavenExpressionResolver(new DefaultExpressionEvaluator()), null, Collections.<ParserFeature>emptyList(), true);
+		processor.setPatching(true);
+	}
+
+	@Test
+	public void copiesUnchangedDocumentVerbatim() throws Exception {
+		assertEquals(SOURCE, process(SOURCE, null));
+	}
+
+	@Test
+	public void replacesOnlyChangedStartTag() throws Exception {
+		assertEquals(SOURCE.replace("<c x=\"1\"/>", "<c x=\"2\"/>"), process(SOURCE, new ModifyAction("/root/c/@x", "2")));
+		assertEquals(SOURCE.replace("<a  z=\"1\"   b='2'>", "<a z=\"1\" b=\"&lt;3&quot;\">"), process(SOURCE, new ModifyAction("/root/a/@b", "<3\"")));
+	}
+
+	@Test
+	public void replacesOnlyChangedContent() throws Exception {
+		assertEquals(SOURCE.replace("text &amp; more", "v &lt; w"), process(SOURCE, new ModifyAction("/root/a/text()", "v < w")));
+	}
+
+	@Test
+	public void replacesOnlyReplacedElement() throws Exception {
+		assertEquals(SOURCE.replace("<d></d>", "<d>x</d>"), process(SOURCE, new ModifyAction("/root/d", "<d>x</d>")));
+	}
+
+	@Test
+	public void keepsSiblingsOfRemovedElementVerbatim() throws Exception {
+		assertEquals(SOURCE.replace("<c x=\"1\"/>", ""), process(SOURCE, new RemoveAction("/root/c")));
+	}
+
+	@Test
+	public void keepsSiblingsOfInsertedElementVerbatim() throws Exception {
+		String source = SOURCE.replace("text &amp; more", "text &#233;");
+		assertEquals(source.replace("<c x=\"1\"/>", "<c x=\"1\"/><e/>"), process(source, new AddAction(null, "<e/>", "/root/c", null)));
+	}
+
+	@Test
+	public void ignoresFindReplaceNotChangingValues() throws Exception {
+		ModifyAction action = new ModifyAction();
+		action.setName("/root");
+		action.setFind("missing");
+		action.setReplace("x");
+		assertEquals(SOURCE, process(SOURCE, action));
+	}
+
+	@Test
+	public void serializesDocumentsWithEntityDeclarations() throws Exception {
+		String source = "<!DOCTYPE root [<!ENTITY e \"<x/>\">]>\n<root>&e;</root>";
+		String result = process(source, new ModifyAction("/root/x", "<y/>"));
+		assertTrue(result, result.startsWith("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"));
+		assertTrue(result, result.contains("<y/>"));
+	}
+
+	protected String process(String source, Action action) throws Exception {
+		StringWriter writer = new StringWriter();
+		processor.process(new StringReader(source), writer, action);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2009 Leandro de Oliveira Aparecido <lehphyro@gmail.com>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.code.configprocessor.processing.xml;
+
+import static org.junit.Assert.*;
+
+import java.io.*;
+import java.util.*;
+
+import org.junit.*;
+import org.w3c.dom.*;
+
+import com.google.code.configprocessor.*;
+
+public class XmlSerializerTest {
+
+	private static final String LS = XmlActionProcessor.LINE_SEPARATOR;
+	private static final String SOURCE = "<!-- header --><root><a first=\"1\" second=\"a &lt; &quot;b&quot;\" third=\"3\">x &amp; y</a>\n  <b/><c><![CDATA[<z>]]></c></root>";
+
+	@Test
+	public void indentsAndWrapsAttributes() throws Exception {
+		String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + LS
+				+ "<!-- header -->" + LS
+				+ "<root>" + LS
+				+ "  <a first=\"1\"" + LS
+				+ "    second=\"a &lt; &quot;b&quot;\" third=\"3\">x &amp; y</a>" + LS
+				+ "  <b/>" + LS
+				+ "  <c><![CDATA[<z>]]></c>" + LS
+				+ "</root>" + LS;
+		assertEquals(expected, serialize(new XmlSerializer("UTF-8", 30, 2, LS), parse(SOURCE)));
+	}
+
+	@Test
+	public void writesCompactWithoutIndentSize() throws Exception {
+		String expected = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<!-- header --><root><a first=\"1\" second=\"a &lt; &quot;b&quot;\" third=\"3\">x &amp; y</a>\n  <b/><c><![CDATA[<z>]]></c></root>";
+		assertEquals(expected, serialize(new XmlSerializer("UTF-8", 30, 0, LS), parse(SOURCE)));
+	}
+
+	@Test
+	public void escapesCharactersNotInEncoding() throws Exception {
+		XmlSerializer serializer = new XmlSerializer("ISO-8859-1", 80, 0, LS);
+		Document document = parse("<root a=\"\u00e9\u4e2d\">\u00e9\u4e2d\ud83d\ude00</root>");
+		String expected = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>\n<root a=\"\u00e9&#x4e2d;\">\u00e9&#x4e2d;&#x1f600;</root>";
+
+		assertEquals(expected, serialize(serializer, document));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		serializer.serialize(document, bytes);
+		assertEquals(expected, new String(bytes.toByteArray(), "ISO-8859-1"));
+	}
+
+	@Test
+	public void reusesSerializerForSeveralDocuments() throws Exception {
+		XmlSerializer serializer = new XmlSerializer("UTF-8", 80, 4, LS);
+		String first = serialize(serializer, parse(SOURCE));
+		serialize(serializer, parse("<other><x/></other>"));
+		assertEquals(first, serialize(serializer, parse(SOURCE)));
+	}
+
+	@Test(expected = IOException.class)
+	public void rejectsInvalidCharacters() throws Exception {
+		Document document = parse("<root/>");
+		document.getDocumentElement().setAttribute("a", "\u0001");
+		serialize(new XmlSerializer("UTF-8", 80, 4, LS), document);
+	}
+
+	protected Document parse(String text) throws Exception {
+		return XmlHelper.parse(new StringReader(text), Collections.<ParserFeature>emptyList());
+	}
+
+	protected String serialize(XmlSerializer serializer, Document document) throws IOException {
+		StringWriter writer = new StringWriter();
+		serializer.serialize(document, writer);
+		return writer.toString();
+	}
+}